@@ -0,0 +1,175 @@
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark of the default load control against {@link QuizLoadControl} on the bundled samples:
+ * the time from preparing a sample to its audio being ready to play, and the peak size of the
+ * player's buffer and of the Java heap while the sample loads. The results are written to the
+ * log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LoadControlBenchmark {
+
+    private static final String TAG = LoadControlBenchmark.class.getSimpleName();
+    private static final String[] SAMPLE_URIS = {
+            "asset:///toccata_fugue.mp3",
+            "asset:///hungarian_dance.mp3",
+            "asset:///string_quartet_14.mp3"};
+    private static final int ROUNDS = 3;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    // How long to watch the buffer fill up after playback starts.
+    private static final long LOAD_WINDOW_MS = 5000;
+    private static final long POLL_INTERVAL_MS = 20;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Test
+    public void defaultVersusQuizLoadControl() throws Exception {
+        for (String uri : SAMPLE_URIS) {
+            Result defaults = new Result();
+            Result quiz = new Result();
+            for (int round = 0; round < ROUNDS; round++) {
+                measure(Uri.parse(uri), new DefaultLoadControl(), defaults);
+                measure(Uri.parse(uri), new QuizLoadControl(), quiz);
+            }
+            Log.i(TAG, uri + " default: " + defaults.format());
+            Log.i(TAG, uri + " quiz:    " + quiz.format());
+        }
+    }
+
+    /**
+     * Plays a sample with a load control until the load window is over.
+     */
+    private void measure(final Uri uri, final LoadControl loadControl, Result result)
+            throws InterruptedException {
+        Runtime.getRuntime().gc();
+        final ReadyListener listener = new ReadyListener();
+        final SimpleExoPlayer[] player = new SimpleExoPlayer[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                player[0] = ExoPlayerFactory.newSimpleInstance(mContext,
+                        new DefaultTrackSelector(), loadControl);
+                player[0].addListener(listener);
+                listener.start();
+                player[0].prepare(new ExtractorMediaSource(uri,
+                        MediaCache.buildDataSourceFactory(mContext),
+                        new DefaultExtractorsFactory(), null, null));
+                player[0].setPlayWhenReady(true);
+            }
+        });
+
+        long bufferPeak = 0;
+        long heapPeak = 0;
+        long windowEnd = SystemClock.elapsedRealtime() + LOAD_WINDOW_MS;
+        while (SystemClock.elapsedRealtime() < windowEnd) {
+            bufferPeak = Math.max(bufferPeak,
+                    loadControl.getAllocator().getTotalBytesAllocated());
+            heapPeak = Math.max(heapPeak,
+                    Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        result.add(listener.await(), bufferPeak, heapPeak);
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                player[0].stop();
+                player[0].release();
+            }
+        });
+    }
+
+    private static class Result {
+        private long mReadyMs;
+        private long mBufferPeak;
+        private long mHeapPeak;
+        private int mCount;
+
+        void add(long readyMs, long bufferPeak, long heapPeak) {
+            mReadyMs += readyMs;
+            mBufferPeak = Math.max(mBufferPeak, bufferPeak);
+            mHeapPeak = Math.max(mHeapPeak, heapPeak);
+            mCount++;
+        }
+
+        String format() {
+            return mReadyMs / mCount + " ms to audio, " + mBufferPeak / 1024
+                    + " KB peak buffer, " + mHeapPeak / 1024 + " KB peak heap";
+        }
+    }
+
+    private static class ReadyListener implements ExoPlayer.EventListener {
+        private final CountDownLatch mReady = new CountDownLatch(1);
+        private long mStartedAt;
+        private long mElapsed;
+
+        void start() {
+            mStartedAt = SystemClock.elapsedRealtime();
+        }
+
+        long await() throws InterruptedException {
+            assertTrue("Player never became ready", mReady.await(TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS));
+            return mElapsed;
+        }
+
+        @Override
+        public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+            if (playWhenReady && playbackState == ExoPlayer.STATE_READY
+                    && mReady.getCount() > 0) {
+                mElapsed = SystemClock.elapsedRealtime() - mStartedAt;
+                mReady.countDown();
+            }
+        }
+
+        @Override
+        public void onTimelineChanged(Timeline timeline, Object manifest) {
+        }
+
+        @Override
+        public void onTracksChanged(TrackGroupArray trackGroups,
+                                    TrackSelectionArray trackSelections) {
+        }
+
+        @Override
+        public void onLoadingChanged(boolean isLoading) {
+        }
+
+        @Override
+        public void onPlayerError(ExoPlaybackException error) {
+        }
+
+        @Override
+        public void onPositionDiscontinuity() {
+        }
+    }
+}
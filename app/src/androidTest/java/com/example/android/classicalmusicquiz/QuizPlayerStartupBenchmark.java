@@ -0,0 +1,185 @@
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark of the time from a question being shown to its audio being ready to play, with a
+ * new player for every question as the quiz used to do, and with the persistent
+ * {@link QuizPlayer}. The persistent player alternates between moving on to a queued sample and
+ * preparing a new playlist, so its average covers both. The results are written to the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QuizPlayerStartupBenchmark {
+
+    private static final String TAG = QuizPlayerStartupBenchmark.class.getSimpleName();
+    private static final String[] SAMPLE_URIS = {
+            "asset:///toccata_fugue.mp3",
+            "asset:///hungarian_dance.mp3",
+            "asset:///string_quartet_14.mp3"};
+    private static final int ROUNDS = 5;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @After
+    public void releasePlayer() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                QuizPlayer.getInstance(mContext).release();
+            }
+        });
+    }
+
+    @Test
+    public void questionShownToAudioReady() throws Exception {
+        long newPlayerTotal = 0;
+        long persistentPlayerTotal = 0;
+        int questions = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < SAMPLE_URIS.length; i++) {
+                int next = (i + 1) % SAMPLE_URIS.length;
+                newPlayerTotal += timeNewPlayer(Uri.parse(SAMPLE_URIS[i]));
+                persistentPlayerTotal += timePersistentPlayer(sample(i), sample(next));
+                questions++;
+            }
+        }
+
+        Log.i(TAG, "New player per question: " + newPlayerTotal / questions + " ms on average");
+        Log.i(TAG, "Persistent player: " + persistentPlayerTotal / questions + " ms on average");
+    }
+
+    /**
+     * Times a question the way the quiz used to play it, with a new player.
+     */
+    private long timeNewPlayer(final Uri uri) throws InterruptedException {
+        final ReadyListener listener = new ReadyListener();
+        final SimpleExoPlayer[] player = new SimpleExoPlayer[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                listener.start();
+                player[0] = ExoPlayerFactory.newSimpleInstance(mContext,
+                        new DefaultTrackSelector(), new DefaultLoadControl());
+                player[0].addListener(listener);
+                player[0].prepare(new ExtractorMediaSource(uri,
+                        MediaCache.buildDataSourceFactory(mContext),
+                        new DefaultExtractorsFactory(), null, null));
+                player[0].setPlayWhenReady(true);
+            }
+        });
+        long elapsed = listener.await();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                player[0].stop();
+                player[0].release();
+            }
+        });
+        return elapsed;
+    }
+
+    /**
+     * Times a question played by the persistent player, queueing up the next question.
+     */
+    private long timePersistentPlayer(final Sample sample, final Sample nextSample)
+            throws InterruptedException {
+        final ReadyListener listener = new ReadyListener();
+        final QuizPlayer quizPlayer = QuizPlayer.getInstance(mContext);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                listener.start();
+                quizPlayer.getPlayer().addListener(listener);
+                quizPlayer.play(sample, nextSample);
+            }
+        });
+        long elapsed = listener.await();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // Pause, keeping the playlist so the next sample can still be moved on to.
+                quizPlayer.getPlayer().removeListener(listener);
+                quizPlayer.getPlayer().setPlayWhenReady(false);
+            }
+        });
+        return elapsed;
+    }
+
+    private static Sample sample(int index) {
+        return new Sample(index, null, null, null, SAMPLE_URIS[index], null);
+    }
+
+    private static class ReadyListener implements ExoPlayer.EventListener {
+        private final CountDownLatch mReady = new CountDownLatch(1);
+        private long mStartedAt;
+        private long mElapsed;
+
+        void start() {
+            mStartedAt = SystemClock.elapsedRealtime();
+        }
+
+        long await() throws InterruptedException {
+            assertTrue("Player never became ready", mReady.await(TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS));
+            return mElapsed;
+        }
+
+        @Override
+        public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+            if (playWhenReady && playbackState == ExoPlayer.STATE_READY
+                    && mReady.getCount() > 0) {
+                mElapsed = SystemClock.elapsedRealtime() - mStartedAt;
+                mReady.countDown();
+            }
+        }
+
+        @Override
+        public void onTimelineChanged(Timeline timeline, Object manifest) {
+        }
+
+        @Override
+        public void onTracksChanged(TrackGroupArray trackGroups,
+                                    TrackSelectionArray trackSelections) {
+        }
+
+        @Override
+        public void onLoadingChanged(boolean isLoading) {
+        }
+
+        @Override
+        public void onPlayerError(ExoPlaybackException error) {
+        }
+
+        @Override
+        public void onPositionDiscontinuity() {
+        }
+    }
+}
@@ -0,0 +1,542 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only history of every answer given, with statistics that are kept up to date as
+ * answers are recorded, so they can be queried in constant time however long the history is.
+ *
+ * Answers are appended to a log file in batches, on a background thread. Each batch also writes
+ * a snapshot of the statistics along with the length of the log it covers, so loading the
+ * history only has to read the snapshot and replay the answers appended after it. The layout of
+ * both files is big-endian:
+ *
+ * <pre>
+ * log:       int magic ("AHST"), int version, then per answer: int sample ID,
+ *            int chosen sample ID, int response time in ms, long timestamp in ms
+ * snapshot:  int magic ("AHSS"), int version, long log length, int answer count,
+ *            int correct count, long total response time, int sample count, then per sample:
+ *            int sample ID, int answer count, int miss count
+ * </pre>
+ */
+class AnswerHistory {
+
+    static final int LOG_MAGIC = 0x41485354;
+    static final int SNAPSHOT_MAGIC = 0x41485353;
+    static final int VERSION = 1;
+    static final int LOG_HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 20;
+    private static final int SNAPSHOT_LOG_LENGTH_OFFSET = 8;
+
+    // The number of answers recorded before they are written without waiting for a flush.
+    static final int BATCH_SIZE = 32;
+
+    private static final String LOG_FILE = "answer_history.log";
+    private static final String SNAPSHOT_FILE = "answer_history.snapshot";
+
+    private static AnswerHistory sInstance;
+
+    private final File mLogFile;
+    private final File mSnapshotFile;
+    private final Executor mExecutor;
+
+    // The index the composers are numbered by. Replaced when the catalog changes.
+    private DistractorIndex mIndex;
+
+    // Statistics, over every recorded answer.
+    private int mAnswerCount;
+    private int mCorrectCount;
+    private long mTotalResponseMillis;
+    private final HashMap<Integer, int[]> mSampleCounts = new HashMap<>();
+    private int[] mComposerAnswerCounts;
+    private int[] mComposerCorrectCounts;
+
+    // Answers that haven't been written yet.
+    private ByteArrayOutputStream mPending = new ByteArrayOutputStream();
+    private DataOutputStream mPendingOut = new DataOutputStream(mPending);
+    private int mPendingCount;
+    private boolean mWritePending;
+    private boolean mWriting;
+
+    private final Runnable mWrite = new Runnable() {
+        @Override
+        public void run() {
+            byte[] records;
+            byte[] snapshot;
+            synchronized (AnswerHistory.this) {
+                // The statistics cover exactly the answers written so far plus this batch.
+                records = mPending.toByteArray();
+                mPending = new ByteArrayOutputStream();
+                mPendingOut = new DataOutputStream(mPending);
+                mPendingCount = 0;
+                snapshot = buildSnapshot();
+                mWritePending = false;
+                mWriting = true;
+            }
+            try {
+                long logLength = appendToLog(records);
+                ByteBuffer.wrap(snapshot).putLong(SNAPSHOT_LOG_LENGTH_OFFSET, logLength);
+                writeSnapshot(snapshot);
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                synchronized (AnswerHistory.this) {
+                    mWriting = false;
+                    AnswerHistory.this.notifyAll();
+                }
+            }
+        }
+    };
+
+    /**
+     * Opens the history, loading the statistics from the snapshot and the answers logged since.
+     * @param directory The directory the history is kept in.
+     * @param index The index of the catalog, to find the composers of the samples.
+     * @param executor The executor to write the answers on.
+     */
+    AnswerHistory(File directory, DistractorIndex index, Executor executor) {
+        mLogFile = new File(directory, LOG_FILE);
+        mSnapshotFile = new File(directory, SNAPSHOT_FILE);
+        mIndex = index;
+        mExecutor = executor;
+        mComposerAnswerCounts = new int[index.getComposerCount()];
+        mComposerCorrectCounts = new int[index.getComposerCount()];
+        load();
+    }
+
+    /**
+     * Gets the history, loading it the first time it is called.
+     * @param context The application context.
+     * @return The answer history.
+     */
+    static synchronized AnswerHistory getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AnswerHistory(context.getApplicationContext().getFilesDir(),
+                    SampleCatalog.getInstance(context).getDistractorIndex(),
+                    Executors.newSingleThreadExecutor());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Renumbers the composer statistics by a new version of the catalog, if the history has
+     * been loaded. Called when the catalog changes while the app is running.
+     * @param catalog The new catalog.
+     */
+    static synchronized void onCatalogChanged(SampleCatalog catalog) {
+        if (sInstance != null) {
+            sInstance.setIndex(catalog.getDistractorIndex());
+        }
+    }
+
+    /**
+     * Numbers the composers by another index. The composer statistics are counted again from
+     * the per-sample counts, so samples that joined the catalog count for their composers too.
+     * @param index The index of the catalog.
+     */
+    synchronized void setIndex(DistractorIndex index) {
+        if (index == mIndex) {
+            return;
+        }
+        mIndex = index;
+        mComposerAnswerCounts = new int[index.getComposerCount()];
+        mComposerCorrectCounts = new int[index.getComposerCount()];
+        for (Map.Entry<Integer, int[]> entry : mSampleCounts.entrySet()) {
+            countComposer(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * Records an answer. It is counted in the statistics straight away, and written along with
+     * the rest of its batch.
+     * @param sampleID The ID of the correct answer.
+     * @param chosenSampleID The ID of the sample the user picked.
+     * @param responseMillis How long the user took to answer, in milliseconds.
+     * @param timestamp When the user answered, in milliseconds since the epoch.
+     */
+    synchronized void record(int sampleID, int chosenSampleID, int responseMillis,
+                             long timestamp) {
+        try {
+            mPendingOut.writeInt(sampleID);
+            mPendingOut.writeInt(chosenSampleID);
+            mPendingOut.writeInt(responseMillis);
+            mPendingOut.writeLong(timestamp);
+        } catch (IOException e) {
+            // Writing to a byte array doesn't fail.
+            throw new IllegalStateException(e);
+        }
+        count(sampleID, chosenSampleID, responseMillis);
+        if (++mPendingCount >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the answers recorded so far in the background.
+     */
+    synchronized void flush() {
+        if (mPendingCount > 0 && !mWritePending) {
+            mWritePending = true;
+            mExecutor.execute(mWrite);
+        }
+    }
+
+    /**
+     * Waits until the answers flushed so far have been written.
+     * @throws InterruptedException Exception thrown if the thread is interrupted while waiting.
+     */
+    synchronized void awaitFlush() throws InterruptedException {
+        while (mWritePending || mWriting) {
+            wait();
+        }
+    }
+
+    // Queries
+
+    synchronized int getAnswerCount() {
+        return mAnswerCount;
+    }
+
+    synchronized int getCorrectCount() {
+        return mCorrectCount;
+    }
+
+    /**
+     * @return The share of correct answers, or 0 if there are none.
+     */
+    synchronized float getAccuracy() {
+        return mAnswerCount > 0 ? mCorrectCount / (float) mAnswerCount : 0;
+    }
+
+    /**
+     * @return The average time taken to answer, in milliseconds, or 0 if there are no answers.
+     */
+    synchronized long getAverageResponseMillis() {
+        return mAnswerCount > 0 ? mTotalResponseMillis / mAnswerCount : 0;
+    }
+
+    /**
+     * @param sampleID The sample ID.
+     * @return The number of times the sample was the answer to a question.
+     */
+    synchronized int getAnswerCount(int sampleID) {
+        int[] counts = mSampleCounts.get(sampleID);
+        return counts != null ? counts[0] : 0;
+    }
+
+    /**
+     * @param sampleID The sample ID.
+     * @return The share of wrong answers when the sample was the answer, or 0 if it never was.
+     */
+    synchronized float getMissRate(int sampleID) {
+        int[] counts = mSampleCounts.get(sampleID);
+        return counts != null && counts[0] > 0 ? counts[1] / (float) counts[0] : 0;
+    }
+
+    /**
+     * @param composer The composer, as numbered by the {@link DistractorIndex}.
+     * @return The number of questions the composer was the answer to.
+     */
+    synchronized int getComposerAnswerCount(int composer) {
+        return mComposerAnswerCounts[composer];
+    }
+
+    /**
+     * @param composer The composer, as numbered by the {@link DistractorIndex}.
+     * @return The share of correct answers when the composer was the answer, or 0 if never.
+     */
+    synchronized float getComposerAccuracy(int composer) {
+        int answers = mComposerAnswerCounts[composer];
+        return answers > 0 ? mComposerCorrectCounts[composer] / (float) answers : 0;
+    }
+
+    /**
+     * Finds the composer the user gets wrong the most.
+     * @param minAnswers The number of times a composer must have been the answer to count.
+     * @return The composer with the lowest accuracy, or -1 if no composer counts.
+     */
+    synchronized int getHardestComposer(int minAnswers) {
+        int hardest = -1;
+        float lowestAccuracy = 2;
+        for (int composer = 0; composer < mComposerAnswerCounts.length; composer++) {
+            if (mComposerAnswerCounts[composer] >= Math.max(minAnswers, 1)) {
+                float accuracy = getComposerAccuracy(composer);
+                if (accuracy < lowestAccuracy) {
+                    lowestAccuracy = accuracy;
+                    hardest = composer;
+                }
+            }
+        }
+        return hardest;
+    }
+
+    /**
+     * @param composer The composer, as numbered by the index the history counts by.
+     * @return The IDs of the composer's samples.
+     */
+    synchronized int[] getComposerSampleIDs(int composer) {
+        return mIndex.getSampleIDs(composer);
+    }
+
+    private void count(int sampleID, int chosenSampleID, int responseMillis) {
+        boolean correct = QuizUtils.userCorrect(sampleID, chosenSampleID);
+        mAnswerCount++;
+        mTotalResponseMillis += responseMillis;
+        if (correct) {
+            mCorrectCount++;
+        }
+
+        int[] counts = mSampleCounts.get(sampleID);
+        if (counts == null) {
+            counts = new int[2];
+            mSampleCounts.put(sampleID, counts);
+        }
+        counts[0]++;
+        if (!correct) {
+            counts[1]++;
+        }
+
+        countComposer(sampleID, 1, correct ? 0 : 1);
+    }
+
+    private void addSampleCounts(int sampleID, int answers, int misses) {
+        mSampleCounts.put(sampleID, new int[]{answers, misses});
+        countComposer(sampleID, answers, misses);
+    }
+
+    private void countComposer(int sampleID, int answers, int misses) {
+        int composer = mIndex.getComposer(sampleID);
+        if (composer >= 0) {
+            mComposerAnswerCounts[composer] += answers;
+            mComposerCorrectCounts[composer] += answers - misses;
+        }
+    }
+
+    /**
+     * Loads the statistics from the snapshot, then replays the answers logged after it. If the
+     * snapshot can't be used, the whole log is replayed instead. An incomplete answer at the end
+     * of the log, left by a write that didn't finish, is dropped.
+     */
+    private synchronized void load() {
+        long replayFrom = readSnapshot();
+        if (replayFrom < 0) {
+            clearCounts();
+            replayFrom = LOG_HEADER_SIZE;
+        }
+        try {
+            replayLog(replayFrom);
+        } catch (IOException e) {
+            e.printStackTrace();
+            clearCounts();
+        }
+    }
+
+    private void clearCounts() {
+        mAnswerCount = 0;
+        mCorrectCount = 0;
+        mTotalResponseMillis = 0;
+        mSampleCounts.clear();
+        Arrays.fill(mComposerAnswerCounts, 0);
+        Arrays.fill(mComposerCorrectCounts, 0);
+    }
+
+    /**
+     * @return The length of the log covered by the snapshot, or -1 if there's no usable one.
+     */
+    private long readSnapshot() {
+        if (!mSnapshotFile.exists()) {
+            return -1;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mSnapshotFile)));
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != VERSION) {
+                return -1;
+            }
+            long logLength = in.readLong();
+            if (logLength < LOG_HEADER_SIZE || logLength > mLogFile.length()) {
+                return -1;
+            }
+            mAnswerCount = in.readInt();
+            mCorrectCount = in.readInt();
+            mTotalResponseMillis = in.readLong();
+            int sampleCount = in.readInt();
+            for (int i = 0; i < sampleCount; i++) {
+                addSampleCounts(in.readInt(), in.readInt(), in.readInt());
+            }
+            return logLength;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Counts the complete answers in the log from an offset.
+     */
+    private void replayLog(long offset) throws IOException {
+        if (!mLogFile.exists() || mLogFile.length() < LOG_HEADER_SIZE) {
+            return;
+        }
+        long completeLength = completeLogLength(mLogFile.length());
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(mLogFile)));
+        try {
+            if (in.readInt() != LOG_MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an answer history log");
+            }
+            skipFully(in, offset - LOG_HEADER_SIZE);
+            for (long position = offset; position < completeLength; position += RECORD_SIZE) {
+                int sampleID = in.readInt();
+                int chosenSampleID = in.readInt();
+                int responseMillis = in.readInt();
+                in.readLong();
+                count(sampleID, chosenSampleID, responseMillis);
+            }
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * @return The length of a log up to its last complete answer.
+     */
+    private static long completeLogLength(long length) {
+        return LOG_HEADER_SIZE + (length - LOG_HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    /**
+     * Appends answers to the log, creating it if needed. An incomplete answer left at the end of
+     * the log by a write that didn't finish is cut off first.
+     * @return The length of the log after the answers were appended.
+     */
+    private long appendToLog(byte[] records) throws IOException {
+        long logLength = mLogFile.length();
+        if (logLength < LOG_HEADER_SIZE) {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(mLogFile));
+            try {
+                out.writeInt(LOG_MAGIC);
+                out.writeInt(VERSION);
+            } finally {
+                out.close();
+            }
+            logLength = LOG_HEADER_SIZE;
+        } else if (completeLogLength(logLength) != logLength) {
+            logLength = completeLogLength(logLength);
+            RandomAccessFile file = new RandomAccessFile(mLogFile, "rw");
+            try {
+                file.setLength(logLength);
+            } finally {
+                file.close();
+            }
+        }
+
+        FileOutputStream out = new FileOutputStream(mLogFile, true);
+        try {
+            out.write(records);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        return logLength + records.length;
+    }
+
+    /**
+     * Serializes the statistics, leaving the log length to be filled in once it is known.
+     */
+    private byte[] buildSnapshot() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0);
+            out.writeInt(mAnswerCount);
+            out.writeInt(mCorrectCount);
+            out.writeLong(mTotalResponseMillis);
+            out.writeInt(mSampleCounts.size());
+            for (Map.Entry<Integer, int[]> entry : mSampleCounts.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue()[0]);
+                out.writeInt(entry.getValue()[1]);
+            }
+        } catch (IOException e) {
+            // Writing to a byte array doesn't fail.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replaces the snapshot, writing it to a temporary file first so that a crash leaves either
+     * the old or the new snapshot.
+     */
+    private void writeSnapshot(byte[] snapshot) throws IOException {
+        File temp = new File(mSnapshotFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(snapshot);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mSnapshotFile)) {
+            throw new IOException("Couldn't replace " + mSnapshotFile);
+        }
+    }
+
+    private static void skipFully(DataInputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            count -= skipped;
+        }
+    }
+
+    private static void closeQuietly(DataInputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
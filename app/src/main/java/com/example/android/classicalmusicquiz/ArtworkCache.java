@@ -0,0 +1,160 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of the composer portraits shown when an answer is revealed. Portraits are
+ * decoded down to the size they are displayed at and kept in an LRU cache bounded by bytes, by
+ * portrait and size. The question mark placeholder is cached the same way, so it is decoded again
+ * once the size it is displayed at is known.
+ *
+ * Evicted portraits aren't decoded into again: the player view may still be showing one, and it
+ * would be overwritten by the next portrait.
+ */
+class ArtworkCache {
+
+    // The share of the app's memory class the cache may hold.
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+    private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private static ArtworkCache sInstance;
+
+    private final Context mContext;
+    private final LruCache<String, Bitmap> mCache;
+
+    private ArtworkCache(Context context) {
+        mContext = context.getApplicationContext();
+
+        ActivityManager activityManager =
+                (ActivityManager) mContext.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * BYTES_PER_MEGABYTE
+                / MEMORY_CLASS_DIVISOR;
+
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Gets the artwork cache.
+     * @param context The application context.
+     * @return The artwork cache.
+     */
+    static synchronized ArtworkCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArtworkCache(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Gets portrait of the composer for a sample, decoding it if it isn't cached yet.
+     * @param sample The sample, as looked up in the game's catalog, or null.
+     * @param reqWidth The width the portrait is displayed at, or 0 if it isn't known yet.
+     * @param reqHeight The height the portrait is displayed at, or 0 if it isn't known yet.
+     * @return The portrait Bitmap, or null if the sample or its portrait can't be found.
+     */
+    Bitmap getComposerArt(Sample sample, int reqWidth, int reqHeight) {
+        if (sample == null || sample.getAlbumArtID() == null) {
+            return null;
+        }
+
+        String albumArtID = sample.getAlbumArtID();
+        int resID = mContext.getResources().getIdentifier(albumArtID, "drawable",
+                mContext.getPackageName());
+        if (resID == 0) {
+            return null;
+        }
+        return get(albumArtID, resID, reqWidth, reqHeight);
+    }
+
+    /**
+     * Gets the question mark shown until the question is answered, decoding it if it isn't
+     * cached yet at this size.
+     * @param reqWidth The width the image is displayed at, or 0 if it isn't known yet.
+     * @param reqHeight The height the image is displayed at, or 0 if it isn't known yet.
+     * @return The question mark Bitmap.
+     */
+    Bitmap getPlaceholder(int reqWidth, int reqHeight) {
+        return get("question_mark", R.drawable.question_mark, reqWidth, reqHeight);
+    }
+
+    /**
+     * Gets a drawable resource from the cache, decoding it if it isn't cached yet. The same
+     * image is decoded to a different size for each size it is displayed at.
+     */
+    private Bitmap get(String name, int resID, int reqWidth, int reqHeight) {
+        String key = name + '@' + reqWidth + 'x' + reqHeight;
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap == null) {
+            bitmap = decode(resID, reqWidth, reqHeight);
+            if (bitmap != null) {
+                mCache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes a drawable resource, downsampled to the size it is displayed at.
+     */
+    private Bitmap decode(int resID, int reqWidth, int reqHeight) {
+        Resources resources = mContext.getResources();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+
+        // Don't scale up to the screen density, the portrait is sized to the view instead.
+        options.inScaled = false;
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resID, options);
+
+        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeResource(resources, resID, options);
+    }
+
+    /**
+     * Calculates the largest power of two sample size that keeps the decoded image at least as
+     * big as the size it is displayed at. If the size isn't known, the screen size is used.
+     */
+    private int calculateInSampleSize(BitmapFactory.Options options, int reqWidth,
+                                      int reqHeight) {
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            DisplayMetrics metrics = mContext.getResources().getDisplayMetrics();
+            reqWidth = metrics.widthPixels;
+            reqHeight = metrics.heightPixels;
+        }
+
+        int inSampleSize = 1;
+        int halfWidth = options.outWidth / 2;
+        int halfHeight = options.outHeight / 2;
+        while (halfWidth / inSampleSize >= reqWidth && halfHeight / inSampleSize >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
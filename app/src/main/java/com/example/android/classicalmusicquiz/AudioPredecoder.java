@@ -0,0 +1,216 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the first seconds of the excerpts of upcoming samples into the {@link PcmBufferPool},
+ * so that {@link QuizPlayer} can start them from PCM audio, without waiting for the MP3 to be
+ * extracted and for a decoder to warm up. Only local samples are decoded; remote ones are read
+ * through the {@link MediaCache}.
+ *
+ * Pre-decoding is turned on by the predecode_audio bool resource, and needs MediaCodec, so API
+ * level 16.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class AudioPredecoder {
+
+    // Room for three samples: the one playing, the next one and one being decoded.
+    private static final int POOL_BUFFERS = 3;
+
+    // Sized for 48 kHz stereo, the most MP3 decodes to.
+    private static final int BYTES_PER_SECOND = 48000 * 2 * 2;
+
+    private static final long TIMEOUT_US = 10000;
+
+    private static AudioPredecoder sInstance;
+
+    private final Context mContext;
+    private final PcmBufferPool mPool;
+
+    private AudioPredecoder(Context context, PcmBufferPool pool) {
+        mContext = context.getApplicationContext();
+        mPool = pool;
+    }
+
+    /**
+     * Gets the pre-decoder, allocating its pool the first time it is called.
+     * @param context The application context.
+     * @return The pre-decoder, or null if pre-decoding is turned off or not supported.
+     */
+    static synchronized AudioPredecoder getInstance(Context context) {
+        if (sInstance == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                && context.getResources().getBoolean(R.bool.predecode_audio)) {
+            int seconds = context.getResources().getInteger(R.integer.predecode_seconds);
+            sInstance = new AudioPredecoder(context,
+                    new PcmBufferPool(POOL_BUFFERS, seconds * BYTES_PER_SECOND));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return The pool the audio is decoded into.
+     */
+    PcmBufferPool getPool() {
+        return mPool;
+    }
+
+    /**
+     * Decodes the start of a sample's excerpt into the pool, unless it is there already.
+     * @param sample The sample.
+     * @return true if the start of the sample is in the pool.
+     */
+    boolean predecode(Sample sample) {
+        String key = PcmBufferPool.keyOf(sample);
+        if (mPool.contains(key)) {
+            return true;
+        }
+        Uri uri = Uri.parse(sample.getUri());
+        if (MediaCache.isCached(uri)) {
+            return false;
+        }
+
+        ByteBuffer buffer = mPool.obtainBuffer();
+        if (buffer == null) {
+            return false;
+        }
+        try {
+            int[] format = decode(uri, sample.getClipStartMs() * 1000,
+                    sample.getClipEndMs() == Sample.END_OF_SAMPLE
+                            ? Long.MAX_VALUE : sample.getClipEndMs() * 1000, buffer);
+            if (buffer.position() > 0) {
+                mPool.put(key, buffer, format[0], format[1]);
+                return true;
+            }
+        } catch (IOException | IllegalStateException e) {
+            e.printStackTrace();
+        }
+        mPool.recycle(buffer);
+        return false;
+    }
+
+    /**
+     * Decodes audio from a start time until the end time or until the buffer is full, whichever
+     * comes first. Only whole frames are written to the buffer.
+     * @return The sample rate and the channel count of the decoded audio.
+     */
+    private int[] decode(Uri uri, long startUs, long endUs, ByteBuffer buffer)
+            throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            if ("asset".equals(uri.getScheme())) {
+                AssetFileDescriptor descriptor =
+                        mContext.getAssets().openFd(uri.getPath().substring(1));
+                try {
+                    extractor.setDataSource(descriptor.getFileDescriptor(),
+                            descriptor.getStartOffset(), descriptor.getLength());
+                } finally {
+                    descriptor.close();
+                }
+            } else {
+                extractor.setDataSource(mContext, uri, null);
+            }
+
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount() && format == null; i++) {
+                if (extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME)
+                        .startsWith("audio/")) {
+                    format = extractor.getTrackFormat(i);
+                    extractor.selectTrack(i);
+                }
+            }
+            if (format == null) {
+                throw new IOException("No audio track in " + uri);
+            }
+            if (startUs > 0) {
+                extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+            }
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+
+            ByteBuffer[] inputBuffers = codec.getInputBuffers();
+            ByteBuffer[] outputBuffers = codec.getOutputBuffers();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            boolean outputDone = false;
+            while (!outputDone && !Thread.currentThread().isInterrupted()) {
+                // Feed the decoder.
+                if (!inputDone) {
+                    int input = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (input >= 0) {
+                        int size = extractor.readSampleData(inputBuffers[input], 0);
+                        if (size < 0 || extractor.getSampleTime() >= endUs) {
+                            codec.queueInputBuffer(input, 0, 0, 0,
+                                    MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(input, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                // Copy out what it decoded, skipping what comes before the start.
+                int output = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (output >= 0) {
+                    if (info.size > 0 && info.presentationTimeUs >= startUs) {
+                        int frameSize = 2 * channelCount;
+                        int length = Math.min(info.size,
+                                buffer.remaining() / frameSize * frameSize);
+                        ByteBuffer decoded = outputBuffers[output];
+                        decoded.limit(info.offset + length);
+                        decoded.position(info.offset);
+                        buffer.put(decoded);
+                        outputDone = length < info.size;
+                    }
+                    codec.releaseOutputBuffer(output, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        outputDone = true;
+                    }
+                } else if (output == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    outputBuffers = codec.getOutputBuffers();
+                } else if (output == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                }
+            }
+            return new int[]{sampleRate, channelCount};
+        } finally {
+            if (codec != null) {
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Reader for the precompiled sample catalog that the compileSampleCatalog Gradle task generates
+ * from the sample manifest. All the multi-byte values are big-endian, and the layout is:
+ *
+ * <pre>
+ * header:        int magic ("SCAT"), int version, int entry count, int manifest CRC32,
+ *                int string table offset, int string table length
+ * records:       per entry, in manifest order: int id, the string table offsets of the
+ *                name, uri, composer, albumArtID and era (-1 when the value is missing), and
+ *                int clip start and end in milliseconds (0 and -1 when the sample isn't clipped)
+ * string table:  per string: unsigned short UTF-8 length, followed by the UTF-8 bytes
+ * </pre>
+ *
+ * Records are read straight out of the buffer, so looking up IDs doesn't allocate; samples are
+ * only decoded when they are asked for. Equal strings share one string table entry, so its
+ * offset can be used as a key for the string without decoding it.
+ */
+class BinarySampleCatalog {
+
+    static final int MAGIC = 0x53434154;
+    static final int VERSION = 3;
+
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_SIZE = 32;
+
+    private static final int NAME_FIELD = 4;
+    private static final int URI_FIELD = 8;
+    private static final int COMPOSER_FIELD = 12;
+    private static final int ALBUM_ART_FIELD = 16;
+    private static final int ERA_FIELD = 20;
+    private static final int CLIP_START_FIELD = 24;
+    private static final int CLIP_END_FIELD = 28;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer mBuffer;
+    private final int mSize;
+    private final int mSourceHash;
+    private final int mStringTableOffset;
+    private byte[] mStringBuffer = new byte[64];
+
+    private BinarySampleCatalog(ByteBuffer buffer, int size, int sourceHash,
+                                int stringTableOffset) {
+        mBuffer = buffer;
+        mSize = size;
+        mSourceHash = sourceHash;
+        mStringTableOffset = stringTableOffset;
+    }
+
+    /**
+     * Wraps a buffer holding a compiled catalog, checking its header.
+     * @param buffer The buffer with the compiled catalog, positioned at its first byte.
+     * @return The catalog reader.
+     * @throws IOException Exception thrown if the buffer doesn't hold a supported catalog.
+     */
+    static BinarySampleCatalog wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer catalog = buffer.slice();
+        if (catalog.capacity() < HEADER_SIZE || catalog.getInt(0) != MAGIC) {
+            throw new IOException("Not a compiled sample catalog");
+        }
+        int version = catalog.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported sample catalog version " + version);
+        }
+
+        int size = catalog.getInt(8);
+        int stringTableOffset = catalog.getInt(16);
+        int stringTableLength = catalog.getInt(20);
+        if (size < 0 || stringTableOffset != HEADER_SIZE + size * RECORD_SIZE
+                || stringTableOffset + stringTableLength > catalog.capacity()) {
+            throw new IOException("Corrupt sample catalog");
+        }
+        return new BinarySampleCatalog(catalog, size, catalog.getInt(12), stringTableOffset);
+    }
+
+    /**
+     * @return The number of samples in the catalog.
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return The CRC32 of the manifest the catalog was compiled from.
+     */
+    int getSourceHash() {
+        return mSourceHash;
+    }
+
+    /**
+     * Gets the ID of a sample without decoding the rest of it.
+     * @param position The position of the sample in the manifest.
+     * @return The sample ID.
+     */
+    int getSampleID(int position) {
+        return mBuffer.getInt(recordOffset(position));
+    }
+
+    /**
+     * Decodes a single sample.
+     * @param position The position of the sample in the manifest.
+     * @return The sample object.
+     */
+    synchronized Sample readSample(int position) {
+        int record = recordOffset(position);
+        return new Sample(mBuffer.getInt(record),
+                readString(mBuffer.getInt(record + COMPOSER_FIELD)),
+                readString(mBuffer.getInt(record + ERA_FIELD)),
+                readString(mBuffer.getInt(record + NAME_FIELD)),
+                readString(mBuffer.getInt(record + URI_FIELD)),
+                readString(mBuffer.getInt(record + ALBUM_ART_FIELD)),
+                mBuffer.getInt(record + CLIP_START_FIELD),
+                mBuffer.getInt(record + CLIP_END_FIELD));
+    }
+
+    /**
+     * Gets a key for the composer of a sample without decoding it. Samples by the same composer
+     * have the same key.
+     * @param position The position of the sample in the manifest.
+     * @return The composer key, or -1 if the sample has no composer.
+     */
+    int getComposerKey(int position) {
+        return mBuffer.getInt(recordOffset(position) + COMPOSER_FIELD);
+    }
+
+    /**
+     * Gets a key for the era of a sample without decoding it. Samples from the same era have
+     * the same key.
+     * @param position The position of the sample in the manifest.
+     * @return The era key, or -1 if the sample has no era.
+     */
+    int getEraKey(int position) {
+        return mBuffer.getInt(recordOffset(position) + ERA_FIELD);
+    }
+
+    /**
+     * Decodes the composer or era that a key from {@link #getComposerKey(int)} or
+     * {@link #getEraKey(int)} stands for.
+     * @param key The composer or era key.
+     * @return The composer or era, or null if the key is -1.
+     */
+    synchronized String readKey(int key) {
+        return readString(key);
+    }
+
+    private int recordOffset(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + mSize);
+        }
+        return HEADER_SIZE + position * RECORD_SIZE;
+    }
+
+    private String readString(int offset) {
+        if (offset < 0) {
+            return null;
+        }
+        int start = mStringTableOffset + offset;
+        int length = mBuffer.getShort(start) & 0xFFFF;
+        if (mStringBuffer.length < length) {
+            mStringBuffer = new byte[Math.max(length, mStringBuffer.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            mStringBuffer[i] = mBuffer.get(start + 2 + i);
+        }
+        return new String(mStringBuffer, 0, length, UTF_8);
+    }
+}
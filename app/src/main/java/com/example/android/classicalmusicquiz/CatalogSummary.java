@@ -0,0 +1,241 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+/**
+ * Summary of the sample catalog: the number of entries, the composers, the CRC32 of the
+ * manifest it was built from and the version of the app that built it. Screens that only need
+ * these, like the high score screen, read the summary instead of loading the catalog.
+ *
+ * The summary is built from the catalog once and saved in the files dir. It is used for as long
+ * as the manifest's CRC32, which is read from the binary catalog's header, the manifests in
+ * storage and the app version stay the same, and is rebuilt when any of them changes.
+ */
+class CatalogSummary {
+
+    private static final int MAGIC = 0x4353554D;
+    private static final int VERSION = 1;
+
+    private static final String SUMMARY_FILE = "catalog_summary";
+
+    private static CatalogSummary sInstance;
+
+    private final int mEntryCount;
+    private final int mContentHash;
+    private final int mBuildVersion;
+    private final String[] mComposers;
+
+    /**
+     * Creates a summary.
+     * @param entryCount The number of samples in the catalog.
+     * @param contentHash The CRC32 of the manifest the catalog was built from.
+     * @param buildVersion The version code of the app that built the summary.
+     * @param composers The composers of the samples, each once, in manifest order.
+     */
+    CatalogSummary(int entryCount, int contentHash, int buildVersion, String[] composers) {
+        mEntryCount = entryCount;
+        mContentHash = contentHash;
+        mBuildVersion = buildVersion;
+        mComposers = composers;
+    }
+
+    /**
+     * Summarizes the samples of a catalog.
+     * @param samples The samples, in manifest order.
+     * @param contentHash The CRC32 of the manifest the catalog was built from.
+     * @param buildVersion The version code of the app.
+     * @return The summary.
+     */
+    static CatalogSummary fromSamples(Sample[] samples, int contentHash, int buildVersion) {
+        LinkedHashSet<String> composers = new LinkedHashSet<>();
+        for (Sample sample : samples) {
+            if (sample != null && sample.getComposer() != null) {
+                composers.add(sample.getComposer());
+            }
+        }
+        return new CatalogSummary(samples.length, contentHash, buildVersion,
+                composers.toArray(new String[composers.size()]));
+    }
+
+    /**
+     * Gets the summary of the catalog in the assets. The first time, it is read from the files
+     * dir if it is still up to date, which only takes reading the binary catalog's header;
+     * otherwise the catalog is loaded to build it again.
+     * @param context The application context.
+     * @return The catalog summary.
+     * @throws IOException Exception thrown if the catalog can't be read.
+     */
+    static synchronized CatalogSummary getInstance(Context context) throws IOException {
+        if (sInstance != null) {
+            return sInstance;
+        }
+
+        Context appContext = context.getApplicationContext();
+        int contentHash = SampleCatalog.readContentHash(appContext);
+
+        File summaryFile = new File(appContext.getFilesDir(), SUMMARY_FILE);
+        if (summaryFile.exists()) {
+            try {
+                InputStream in = new BufferedInputStream(new FileInputStream(summaryFile));
+                try {
+                    CatalogSummary summary = read(in);
+                    if (summary.matches(contentHash, BuildConfig.VERSION_CODE)) {
+                        sInstance = summary;
+                        return sInstance;
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // The catalog or the app changed, build the summary again.
+        sInstance = summarize(appContext, contentHash);
+        try {
+            sInstance.save(summaryFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Drops the summary, so it is read or built again the next time it is asked for. Called
+     * when the catalog changes while the app is running.
+     */
+    static synchronized void invalidate() {
+        sInstance = null;
+    }
+
+    private static CatalogSummary summarize(Context context, int contentHash)
+            throws IOException {
+        SampleCatalog catalog = SampleCatalog.preload(context);
+        return fromSamples(catalog.getSamples(catalog.getSampleIDs()), contentHash,
+                BuildConfig.VERSION_CODE);
+    }
+
+    /**
+     * @param contentHash The CRC32 of the current manifest.
+     * @param buildVersion The version code of the running app.
+     * @return true if the summary was built from the same manifest by the same app version.
+     */
+    boolean matches(int contentHash, int buildVersion) {
+        return mContentHash == contentHash && mBuildVersion == buildVersion;
+    }
+
+    /**
+     * Writes the summary. The layout is big-endian: int magic ("CSUM"), int version, int entry
+     * count, int content hash, int build version, int composer count, then each composer as
+     * modified UTF-8.
+     * @param out The stream to write to.
+     * @throws IOException Exception thrown if the stream can't be written.
+     */
+    void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(mEntryCount);
+        data.writeInt(mContentHash);
+        data.writeInt(mBuildVersion);
+        data.writeInt(mComposers.length);
+        for (String composer : mComposers) {
+            data.writeUTF(composer);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a summary written by {@link #write(OutputStream)}.
+     * @param in The stream to read from.
+     * @return The summary.
+     * @throws IOException Exception thrown if the stream doesn't hold a summary.
+     */
+    static CatalogSummary read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not a catalog summary");
+        }
+        int entryCount = data.readInt();
+        int contentHash = data.readInt();
+        int buildVersion = data.readInt();
+        int composerCount = data.readInt();
+        if (composerCount < 0 || composerCount > entryCount) {
+            throw new IOException("Corrupt catalog summary");
+        }
+        String[] composers = new String[composerCount];
+        for (int i = 0; i < composerCount; i++) {
+            composers[i] = data.readUTF();
+        }
+        return new CatalogSummary(entryCount, contentHash, buildVersion, composers);
+    }
+
+    /**
+     * Replaces the saved summary, writing it to a temporary file first so that a crash leaves
+     * either the old or the new summary.
+     */
+    private void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            write(new BufferedOutputStream(out));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Couldn't replace " + file);
+        }
+    }
+
+    // Getters
+
+    int getEntryCount() {
+        return mEntryCount;
+    }
+
+    int getContentHash() {
+        return mContentHash;
+    }
+
+    int getBuildVersion() {
+        return mBuildVersion;
+    }
+
+    /**
+     * @return The composers of the samples, each once, in manifest order.
+     */
+    String[] getComposers() {
+        return Arrays.copyOf(mComposers, mComposers.length);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.FileObserver;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Layers the sample manifests in the app's storage over the bundled catalog, and keeps them
+ * applied as they change, so samples can be added, removed or changed without a new build.
+ * Manifests are the *.exolist.json files in the catalogs directory of the app's external files
+ * dir, or of its internal files dir if there's no external storage.
+ *
+ * When a manifest is written, moved or deleted, only that manifest is parsed again, and only
+ * the samples that differ from its previous version are applied to the catalog, as a new
+ * catalog (see {@link SampleCatalog#withManifest(String, List)}). Games that are already being
+ * played keep the catalog they started with.
+ */
+class CatalogWatcher extends FileObserver {
+
+    private static final String TAG = CatalogWatcher.class.getSimpleName();
+
+    private static final String CATALOG_DIR = "catalogs";
+
+    // Manifests are reloaded once they are written, or moved in or out. Writing to a temporary
+    // file and renaming it over the manifest avoids reading it half-written.
+    private static final int EVENTS = CLOSE_WRITE | MOVED_TO | MOVED_FROM | DELETE;
+
+    private static final FileFilter MANIFEST_FILTER = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && file.getName().endsWith(SampleCatalog.MANIFEST_SUFFIX);
+        }
+    };
+
+    private static CatalogWatcher sInstance;
+
+    private final File mDirectory;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    // The manifests waiting to be reloaded, so a burst of events reloads each of them once.
+    private final HashSet<String> mPending = new HashSet<>();
+
+    // The size and modification time of each manifest when it was last read, so events that
+    // didn't change it don't parse it again.
+    private final HashMap<String, String> mStamps = new HashMap<>();
+
+    private CatalogWatcher(File directory) {
+        super(directory.getPath(), EVENTS);
+        mDirectory = directory;
+    }
+
+    /**
+     * Gets the watcher. It is kept for as long as the process lives, as it stops watching once
+     * it is garbage collected.
+     * @param context The application context.
+     * @return The catalog watcher.
+     */
+    static synchronized CatalogWatcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new CatalogWatcher(getDirectory(context));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Gets the manifests in storage, sorted by name.
+     * @param context The application context.
+     * @return The manifest files.
+     */
+    static File[] listManifests(Context context) {
+        File[] manifests = getDirectory(context).listFiles(MANIFEST_FILTER);
+        if (manifests == null) {
+            return new File[0];
+        }
+        Arrays.sort(manifests);
+        return manifests;
+    }
+
+    /**
+     * Gets a stamp that changes whenever a manifest is written.
+     * @param manifest The manifest file.
+     * @return Its size and modification time.
+     */
+    static String stampOf(File manifest) {
+        return manifest.length() + "@" + manifest.lastModified();
+    }
+
+    private static File getDirectory(Context context) {
+        Context appContext = context.getApplicationContext();
+        File directory = appContext.getExternalFilesDir(CATALOG_DIR);
+        if (directory == null) {
+            directory = new File(appContext.getFilesDir(), CATALOG_DIR);
+        }
+        return directory;
+    }
+
+    /**
+     * Starts watching the manifests, and layers the ones that are already there over the
+     * bundled catalog. A manifest that can't be parsed is left out until it is written again.
+     * @param catalog The bundled catalog.
+     * @return The catalog with the manifests in storage layered over it.
+     */
+    SampleCatalog start(SampleCatalog catalog) {
+        mDirectory.mkdirs();
+
+        // Start watching first, so a manifest written while the others are read isn't missed.
+        startWatching();
+        File[] manifests = mDirectory.listFiles(MANIFEST_FILTER);
+        if (manifests != null) {
+            Arrays.sort(manifests);
+            for (File manifest : manifests) {
+                try {
+                    catalog = catalog.withManifest(uriOf(manifest), read(manifest));
+                } catch (IOException | IllegalStateException e) {
+                    Log.w(TAG, "Skipping manifest " + manifest.getName(), e);
+                }
+            }
+        }
+        return catalog;
+    }
+
+    @Override
+    public void onEvent(int event, final String path) {
+        if (path == null || !path.endsWith(SampleCatalog.MANIFEST_SUFFIX)) {
+            return;
+        }
+        synchronized (mPending) {
+            if (!mPending.add(path)) {
+                return;
+            }
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mPending) {
+                    mPending.remove(path);
+                }
+                reload(new File(mDirectory, path));
+            }
+        });
+    }
+
+    /**
+     * Applies the current version of a manifest to the catalog, or takes it out of the catalog
+     * if it is gone. Runs on the watcher's thread.
+     * @param manifest The manifest file.
+     */
+    private void reload(File manifest) {
+        SampleCatalog catalog;
+        if (manifest.isFile()) {
+            synchronized (mStamps) {
+                if (stampOf(manifest).equals(mStamps.get(manifest.getName()))) {
+                    return;
+                }
+            }
+            try {
+                catalog = SampleCatalog.applyManifest(uriOf(manifest), read(manifest));
+            } catch (IOException | IllegalStateException e) {
+                // Keep the previous version until the manifest is written again.
+                Log.w(TAG, "Can't read manifest " + manifest.getName(), e);
+                return;
+            }
+        } else {
+            synchronized (mStamps) {
+                mStamps.remove(manifest.getName());
+            }
+            catalog = SampleCatalog.removeManifest(uriOf(manifest));
+        }
+
+        if (catalog != null) {
+            Log.d(TAG, "Applied " + manifest.getName() + ", " + catalog.size() + " samples");
+            CatalogSummary.invalidate();
+            ReviewScheduler.onCatalogChanged(catalog);
+            AnswerHistory.onCatalogChanged(catalog);
+
+            // Index the new catalog here rather than when the next game starts.
+            catalog.getDistractorIndex();
+        }
+    }
+
+    private List<Sample> read(File manifest) throws IOException {
+        // Take the stamp before reading, so a write that happens while reading is seen as a
+        // change the next time.
+        String stamp = stampOf(manifest);
+        List<Sample> samples = SampleCatalog.readManifest(new FileInputStream(manifest));
+        synchronized (mStamps) {
+            mStamps.put(manifest.getName(), stamp);
+        }
+        return samples;
+    }
+
+    private static String uriOf(File manifest) {
+        return Uri.fromFile(manifest).toString();
+    }
+}
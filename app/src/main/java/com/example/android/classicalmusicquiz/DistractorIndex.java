@@ -0,0 +1,228 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Index of the catalog by composer and era, built once so that a {@link DistractorStrategy} can
+ * pick the wrong answers to a question without scanning the catalog. Composers and eras are
+ * numbered from 0 in the order they first appear in the catalog.
+ */
+class DistractorIndex {
+
+    // How many random composers are tried before falling back to a scan of the candidates.
+    private static final int MAX_PICK_ATTEMPTS = 8;
+
+    private final int[] mSortedSampleIDs;
+    private final int[] mComposerBySortedSample;
+    private final int[][] mSampleIDsByComposer;
+    private final int[] mEraByComposer;
+    private final int[][] mComposersByEra;
+
+    /**
+     * Builds the index. Composers and eras are given as keys, so they can be read without
+     * decoding the strings: samples by the same composer must have the same composer key, and
+     * samples from the same era the same era key.
+     * @param sampleIDs The IDs of the samples.
+     * @param composerKeys The composer key of each sample, or -1 if it has no composer.
+     * @param eraKeys The era key of each sample, or -1 if it has no era.
+     */
+    DistractorIndex(int[] sampleIDs, int[] composerKeys, int[] eraKeys) {
+        int size = sampleIDs.length;
+
+        // Number the composers and eras, counting the samples of each composer.
+        HashMap<Integer, Integer> composersByKey = new HashMap<>();
+        HashMap<Integer, Integer> erasByKey = new HashMap<>();
+        int[] composerBySample = new int[size];
+        int[] sampleCounts = new int[size];
+        int[] eraByComposer = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (composerKeys[i] < 0) {
+                composerBySample[i] = -1;
+                continue;
+            }
+            Integer composer = composersByKey.get(composerKeys[i]);
+            if (composer == null) {
+                composer = composersByKey.size();
+                composersByKey.put(composerKeys[i], composer);
+                eraByComposer[composer] = -1;
+            }
+            composerBySample[i] = composer;
+            sampleCounts[composer]++;
+
+            // A composer belongs to the era of their first sample that has one.
+            if (eraByComposer[composer] < 0 && eraKeys[i] >= 0) {
+                Integer era = erasByKey.get(eraKeys[i]);
+                if (era == null) {
+                    era = erasByKey.size();
+                    erasByKey.put(eraKeys[i], era);
+                }
+                eraByComposer[composer] = era;
+            }
+        }
+        int composerCount = composersByKey.size();
+        mEraByComposer = Arrays.copyOf(eraByComposer, composerCount);
+
+        // Group the samples by composer.
+        mSampleIDsByComposer = new int[composerCount][];
+        for (int composer = 0; composer < composerCount; composer++) {
+            mSampleIDsByComposer[composer] = new int[sampleCounts[composer]];
+            sampleCounts[composer] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            int composer = composerBySample[i];
+            if (composer >= 0) {
+                mSampleIDsByComposer[composer][sampleCounts[composer]++] = sampleIDs[i];
+            }
+        }
+
+        // Group the composers by era.
+        int[] composerCounts = new int[erasByKey.size()];
+        for (int era : mEraByComposer) {
+            if (era >= 0) {
+                composerCounts[era]++;
+            }
+        }
+        mComposersByEra = new int[composerCounts.length][];
+        for (int era = 0; era < composerCounts.length; era++) {
+            mComposersByEra[era] = new int[composerCounts[era]];
+            composerCounts[era] = 0;
+        }
+        for (int composer = 0; composer < composerCount; composer++) {
+            int era = mEraByComposer[composer];
+            if (era >= 0) {
+                mComposersByEra[era][composerCounts[era]++] = composer;
+            }
+        }
+
+        // Sort the sample IDs so a sample's composer can be found by binary search.
+        long[] idsAndComposers = new long[size];
+        for (int i = 0; i < size; i++) {
+            idsAndComposers[i] = ((long) sampleIDs[i] << 32) | (composerBySample[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(idsAndComposers);
+        mSortedSampleIDs = new int[size];
+        mComposerBySortedSample = new int[size];
+        for (int i = 0; i < size; i++) {
+            mSortedSampleIDs[i] = (int) (idsAndComposers[i] >> 32);
+            mComposerBySortedSample[i] = (int) idsAndComposers[i];
+        }
+    }
+
+    /**
+     * @return The number of composers in the catalog.
+     */
+    int getComposerCount() {
+        return mSampleIDsByComposer.length;
+    }
+
+    /**
+     * @param sampleID The sample ID.
+     * @return The composer of the sample, or -1 if the sample is unknown or has no composer.
+     */
+    int getComposer(int sampleID) {
+        int position = Arrays.binarySearch(mSortedSampleIDs, sampleID);
+        return position >= 0 ? mComposerBySortedSample[position] : -1;
+    }
+
+    /**
+     * @param composer The composer.
+     * @return The era of the composer, or -1 if it is unknown.
+     */
+    int getEra(int composer) {
+        return mEraByComposer[composer];
+    }
+
+    /**
+     * @param era The era.
+     * @return The composers of the era. The array belongs to the index and must not be changed.
+     */
+    int[] getComposers(int era) {
+        return mComposersByEra[era];
+    }
+
+    /**
+     * @param composer The composer.
+     * @return The IDs of the composer's samples. The array belongs to the index and must not be
+     * changed.
+     */
+    int[] getSampleIDs(int composer) {
+        return mSampleIDsByComposer[composer];
+    }
+
+    /**
+     * Picks one of a composer's samples at random.
+     * @param composer The composer.
+     * @param random The random number generator to pick with.
+     * @return The sample ID.
+     */
+    int pickSample(int composer, Random random) {
+        int[] sampleIDs = mSampleIDsByComposer[composer];
+        return sampleIDs[random.nextInt(sampleIDs.length)];
+    }
+
+    /**
+     * Picks a composer at random among candidates, leaving out some composers and optionally a
+     * whole era. A few random candidates are tried first, so the cost doesn't depend on the size
+     * of the catalog; only if they are all left out are the candidates scanned.
+     * @param candidates The composers to pick from, or null to pick from all composers.
+     * @param excludedEra An era whose composers are left out, or -1 to leave out none.
+     * @param excludedComposers The composers to leave out.
+     * @param excludedCount The number of composers to leave out, from the start of the array.
+     * @param random The random number generator to pick with.
+     * @return The composer, or -1 if none of the candidates can be picked.
+     */
+    int pickComposer(int[] candidates, int excludedEra, int[] excludedComposers,
+                     int excludedCount, Random random) {
+        int candidateCount = candidates != null ? candidates.length : getComposerCount();
+        if (candidateCount == 0) {
+            return -1;
+        }
+        for (int attempt = 0; attempt < MAX_PICK_ATTEMPTS; attempt++) {
+            int i = random.nextInt(candidateCount);
+            int composer = candidates != null ? candidates[i] : i;
+            if (isPickable(composer, excludedEra, excludedComposers, excludedCount)) {
+                return composer;
+            }
+        }
+        int start = random.nextInt(candidateCount);
+        for (int offset = 0; offset < candidateCount; offset++) {
+            int i = (start + offset) % candidateCount;
+            int composer = candidates != null ? candidates[i] : i;
+            if (isPickable(composer, excludedEra, excludedComposers, excludedCount)) {
+                return composer;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isPickable(int composer, int excludedEra, int[] excludedComposers,
+                               int excludedCount) {
+        if (excludedEra >= 0 && mEraByComposer[composer] == excludedEra) {
+            return false;
+        }
+        for (int i = 0; i < excludedCount; i++) {
+            if (excludedComposers[i] == composer) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.Random;
+
+/**
+ * Picks the wrong answers to a question. Implementations use a {@link DistractorIndex} built
+ * once for the catalog, so that picking doesn't depend on the size of the catalog.
+ */
+interface DistractorStrategy {
+
+    /**
+     * Picks samples by distinct composers, none of them the composer of the answer.
+     * @param index The index of the catalog.
+     * @param answerSampleID The ID of the correct answer.
+     * @param count The number of distractors to pick. Fewer are picked if the catalog doesn't
+     *              have enough composers.
+     * @param difficulty How hard the distractors should be to tell apart from the answer, from
+     *                   0 (easiest) to 1 (hardest).
+     * @param random The random number generator to pick with.
+     * @return The IDs of the distractor samples.
+     */
+    int[] pickDistractors(DistractorIndex index, int answerSampleID, int count, float difficulty,
+                          Random random);
+}
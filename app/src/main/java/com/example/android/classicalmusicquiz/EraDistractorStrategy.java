@@ -0,0 +1,64 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks distractors by how close their composer is to the answer's composer: hard distractors
+ * are by composers of the same era, and easy ones by composers of other eras. The difficulty is
+ * the chance of each distractor being a hard one. When there aren't enough composers of the
+ * wanted kind, any other composer is picked instead.
+ */
+class EraDistractorStrategy implements DistractorStrategy {
+
+    @Override
+    public int[] pickDistractors(DistractorIndex index, int answerSampleID, int count,
+                                 float difficulty, Random random) {
+        int answerComposer = index.getComposer(answerSampleID);
+        int answerEra = answerComposer >= 0 ? index.getEra(answerComposer) : -1;
+
+        // The answer's composer is left out along with the ones already picked.
+        int[] composers = new int[count + 1];
+        composers[0] = answerComposer;
+        int picked = answerComposer >= 0 ? 1 : 0;
+
+        int[] distractors = new int[count];
+        int distractorCount = 0;
+        while (distractorCount < count) {
+            int composer = -1;
+            if (answerEra >= 0) {
+                if (random.nextFloat() < difficulty) {
+                    composer = index.pickComposer(index.getComposers(answerEra), -1,
+                            composers, picked, random);
+                } else {
+                    composer = index.pickComposer(null, answerEra, composers, picked, random);
+                }
+            }
+            if (composer < 0) {
+                composer = index.pickComposer(null, -1, composers, picked, random);
+            }
+            if (composer < 0) {
+                break;
+            }
+            composers[picked++] = composer;
+            distractors[distractorCount++] = index.pickSample(composer, random);
+        }
+        return Arrays.copyOf(distractors, distractorCount);
+    }
+}
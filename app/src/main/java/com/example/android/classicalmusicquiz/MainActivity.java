@@ -16,40 +16,132 @@
 
 package com.example.android.classicalmusicquiz;
 
+import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.util.Log;
 import android.view.View;
 import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
 
+    private static final String TAG = MainActivity.class.getSimpleName();
     private static final String GAME_FINISHED = "game_finished";
+    private static final String GAME_SAMPLE_COUNT = "game_sample_count";
+    private static final int MIN_ANSWERS_FOR_HARDEST = 3;
+
+    // Loads the catalog's size and the answer statistics, which need the catalog, off the main
+    // thread.
+    private static final ExecutorService sStatsExecutor = Executors.newSingleThreadExecutor();
 
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        // Trace where the launch time goes in debug builds.
+        if (BuildConfig.DEBUG) {
+            Tracer.enable();
+        }
+        long start = Tracer.begin();
         setContentView(R.layout.activity_main);
+        Tracer.end("main.inflate", start);
 
-        TextView highScoreTextView = (TextView) findViewById(R.id.highscoreText);
+        // Show the high score, and the score of the game that just finished if there is one, once
+        // the max score is known.
+        showScores((TextView) findViewById(R.id.highscoreText));
 
-        // Get the high and max score.
-        int highScore = QuizUtils.getHighScore(this);
-        int maxScore = Sample.getAllSampleIDs(this).size() - 1;
+        // Show the statistics of all the answers so far, once they are loaded.
+        showAnswerStats((TextView) findViewById(R.id.statsText));
 
+        // Let the user pick sample packs, if there are any. Only the packs' headers are read.
+        start = Tracer.begin();
+        if (SamplePacks.getInstance(this).getPacks().length > 0) {
+            findViewById(R.id.packsButton).setVisibility(View.VISIBLE);
+        }
+        Tracer.end("main.packs", start);
+    }
+
+
+    /**
+     * Shows the high score and, if the game is over, the game finished UI. The max score is the
+     * size of the catalog, which is read from the catalog summary. The summary is cached, but
+     * after the catalog changes it has to be rebuilt by parsing the whole catalog, so it is
+     * loaded in the background first.
+     * @param highScoreTextView The TextView to show the high score in.
+     */
+    private void showScores(final TextView highScoreTextView) {
+        long start = Tracer.begin();
+        final int highScore = QuizUtils.getHighScore(this);
+        final Integer yourScore = getIntent().hasExtra(GAME_FINISHED)
+                ? QuizUtils.getCurrentScore(this) : null;
+        Tracer.end("main.prefs", start);
+
+        final Context context = getApplicationContext();
+        sStatsExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = Tracer.begin();
+                int entryCount = 0;
+                boolean loaded = true;
+                try {
+                    entryCount = CatalogSummary.getInstance(context).getEntryCount();
+                } catch (IOException e) {
+                    Log.e(TAG, "Can't read the sample catalog", e);
+                    loaded = false;
+                } finally {
+                    Tracer.end("main.catalog", start);
+                }
+                final int maxScore = entryCount - 1;
+                final boolean catalogLoaded = loaded;
+                highScoreTextView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!catalogLoaded) {
+                            Toast.makeText(MainActivity.this, R.string.sample_list_load_error,
+                                    Toast.LENGTH_LONG).show();
+                        }
+                        bindScores(highScoreTextView, highScore, maxScore, yourScore);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Sets the high score text and, if the game is over, shows the game finished UI.
+     * @param highScoreTextView The TextView to show the high score in.
+     * @param highScore The high score.
+     * @param maxScore The max score of a game played with the whole catalog.
+     * @param yourScore The score of the game that just finished, or null if there is none.
+     */
+    private void bindScores(TextView highScoreTextView, int highScore, int maxScore,
+                            Integer yourScore) {
         // Set the high score text.
         String highScoreText = getString(R.string.high_score, highScore, maxScore);
         highScoreTextView.setText(highScoreText);
 
         // If the game is over, show the game finished UI.
-        if(getIntent().hasExtra(GAME_FINISHED)){
+        if (yourScore != null) {
             TextView gameFinishedTextView = (TextView) findViewById(R.id.gameResult);
             TextView yourScoreTextView = (TextView) findViewById(R.id.resultScore);
 
-            Integer yourScore = QuizUtils.getCurrentScore(this);
-            String yourScoreText = getString(R.string.score_result, yourScore, maxScore);
+            // The game may have been played with sample packs rather than the whole catalog.
+            int gameMaxScore = getIntent().getIntExtra(GAME_SAMPLE_COUNT, maxScore + 1) - 1;
+            String yourScoreText = getString(R.string.score_result, yourScore, gameMaxScore);
             yourScoreTextView.setText(yourScoreText);
 
             gameFinishedTextView.setVisibility(View.VISIBLE);
@@ -58,6 +150,116 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
+    /**
+     * Shows the share of correct answers and the composer the user gets wrong the most. The
+     * statistics are kept up to date by the {@link AnswerHistory}, so the history isn't read,
+     * but they are numbered by the catalog's composers, so the catalog is loaded in the
+     * background first. That also warms it up for the next game.
+     * @param statsTextView The TextView to show the statistics in.
+     */
+    private void showAnswerStats(final TextView statsTextView) {
+        final Context context = getApplicationContext();
+        sStatsExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = Tracer.begin();
+                final String stats;
+                try {
+                    stats = buildAnswerStats(context);
+                } catch (IllegalStateException e) {
+                    Log.e(TAG, "Can't load the answer statistics", e);
+                    return;
+                } finally {
+                    Tracer.end("stats.load", start);
+                }
+                if (stats != null) {
+                    statsTextView.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            statsTextView.setText(stats);
+                            statsTextView.setVisibility(View.VISIBLE);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the text of the answer statistics. Runs in the background, as it loads the catalog.
+     * @param context The application context.
+     * @return The statistics, or null if there are no answers yet.
+     */
+    private static String buildAnswerStats(Context context) {
+        AnswerHistory history = AnswerHistory.getInstance(context);
+        if (history.getAnswerCount() == 0) {
+            return null;
+        }
+        String stats = context.getString(R.string.answer_stats, history.getAnswerCount(),
+                Math.round(history.getAccuracy() * 100));
+
+        // The composers are numbered by the index the history counts by, which the catalog
+        // watcher swaps when the catalog changes, so it is held still until the name is known.
+        SampleCatalog catalog = SampleCatalog.getInstance(context);
+        synchronized (history) {
+            int hardestComposer = history.getHardestComposer(MIN_ANSWERS_FOR_HARDEST);
+            if (hardestComposer >= 0) {
+                Sample sample = catalog.getSample(
+                        history.getComposerSampleIDs(hardestComposer)[0]);
+                if (sample != null) {
+                    stats += "\n" + context.getString(R.string.hardest_composer,
+                            sample.getComposer(),
+                            Math.round(history.getComposerAccuracy(hardestComposer) * 100));
+                }
+            }
+        }
+        return stats;
+    }
+
+
+    /**
+     * The OnClick method for the Sample Packs button, which lets the user pick the packs the
+     * next games are played with.
+     * @param view The Sample Packs button.
+     */
+    public void choosePacks(View view) {
+        final SamplePacks.Pack[] packs = SamplePacks.getInstance(this).getPacks();
+        List<String> selected = Arrays.asList(SamplePacks.getSelectedPacks(this));
+        CharSequence[] labels = new CharSequence[packs.length];
+        final boolean[] checked = new boolean[packs.length];
+        for (int i = 0; i < packs.length; i++) {
+            labels[i] = getString(R.string.pack_label, packs[i].name, packs[i].sampleCount,
+                    TextUtils.join(", ", packs[i].composers));
+            checked[i] = selected.contains(packs[i].name);
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.sample_packs)
+                .setMultiChoiceItems(labels, checked,
+                        new DialogInterface.OnMultiChoiceClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which,
+                                                boolean isChecked) {
+                                checked[which] = isChecked;
+                            }
+                        })
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        ArrayList<String> names = new ArrayList<>();
+                        for (int i = 0; i < packs.length; i++) {
+                            if (checked[i]) {
+                                names.add(packs[i].name);
+                            }
+                        }
+                        SamplePacks.setSelectedPacks(MainActivity.this,
+                                names.toArray(new String[names.size()]));
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
     /**
      * The OnClick method for the New Game button that starts a new game.
      * @param view The New Game button.
@@ -0,0 +1,245 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Process-wide on-disk cache of remote sample audio, shared by the player and the prefetcher, so
+ * that audio prefetched for the next question, or played in an earlier game, is played back from
+ * the cache instead of being downloaded again.
+ *
+ * Only http and https samples go through the cache. Asset and file samples are already on the
+ * device, so they are read directly rather than copied into the cache, where they would evict
+ * remote audio. When the cache is full, the least recently read audio is evicted. Its size is set
+ * by the media_cache_megabytes integer resource.
+ */
+class MediaCache {
+
+    private static final String CACHE_DIRECTORY = "media";
+    private static final long MAX_CACHE_FILE_BYTES = 2 * 1024 * 1024;
+
+    private static Cache sCache;
+    private static final Stats sStats = new Stats();
+
+    /**
+     * Cache hit metrics, counted per read of a remote sample from open to close.
+     */
+    static class Stats {
+        private long mRequests;
+        private long mHits;
+        private long mCachedBytes;
+        private long mUpstreamBytes;
+
+        synchronized void record(long cachedBytes, long upstreamBytes) {
+            mRequests++;
+            if (upstreamBytes == 0) {
+                mHits++;
+            }
+            mCachedBytes += cachedBytes;
+            mUpstreamBytes += upstreamBytes;
+        }
+
+        /**
+         * @return The number of reads of remote samples.
+         */
+        synchronized long getRequestCount() {
+            return mRequests;
+        }
+
+        /**
+         * @return The number of reads of remote samples that were served from the cache alone.
+         */
+        synchronized long getHitCount() {
+            return mHits;
+        }
+
+        /**
+         * @return The number of bytes read from the cache.
+         */
+        synchronized long getCachedBytes() {
+            return mCachedBytes;
+        }
+
+        /**
+         * @return The number of bytes downloaded because they weren't in the cache.
+         */
+        synchronized long getUpstreamBytes() {
+            return mUpstreamBytes;
+        }
+
+        /**
+         * @return The fraction of the bytes read that came from the cache, or 0 if none were read.
+         */
+        synchronized double getByteHitRate() {
+            long total = mCachedBytes + mUpstreamBytes;
+            return total != 0 ? (double) mCachedBytes / total : 0;
+        }
+    }
+
+    /**
+     * Gets the media cache, creating it the first time it is called.
+     * @param context The application context.
+     * @return The media cache.
+     */
+    static synchronized Cache getCache(Context context) {
+        if (sCache == null) {
+            File directory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+            long maxBytes = context.getResources().getInteger(R.integer.media_cache_megabytes)
+                    * 1024L * 1024L;
+            sCache = new SimpleCache(directory, new LeastRecentlyUsedCacheEvictor(maxBytes));
+        }
+        return sCache;
+    }
+
+    /**
+     * @return The hit metrics of the media cache since the process started.
+     */
+    static Stats getStats() {
+        return sStats;
+    }
+
+    /**
+     * @param uri The URI of a sample.
+     * @return true if the sample is read through the cache, which only remote samples are.
+     */
+    static boolean isCached(Uri uri) {
+        String scheme = uri.getScheme();
+        return "http".equals(scheme) || "https".equals(scheme);
+    }
+
+    /**
+     * Builds a DataSource.Factory for sources that read remote samples through the media cache.
+     * @param context The application context.
+     * @return The DataSource.Factory.
+     */
+    static DataSource.Factory buildDataSourceFactory(Context context) {
+        Context appContext = context.getApplicationContext();
+        return buildDataSourceFactory(appContext, getCache(appContext), sStats);
+    }
+
+    /**
+     * Builds a DataSource.Factory for sources that read remote samples through a cache.
+     * @param context The application context.
+     * @param cache The cache to read remote samples through.
+     * @param stats The metrics to count the reads of remote samples in.
+     * @return The DataSource.Factory.
+     */
+    static DataSource.Factory buildDataSourceFactory(final Context context, final Cache cache,
+                                                     final Stats stats) {
+        final String userAgent = Util.getUserAgent(context, "ClassicalMusicQuiz");
+        return new DataSource.Factory() {
+            @Override
+            public DataSource createDataSource() {
+                return new RoutingDataSource(context, userAgent, cache, stats);
+            }
+        };
+    }
+
+    /**
+     * Reads remote samples through the cache and every other sample directly, counting the bytes
+     * each remote read gets from the cache and from the network.
+     */
+    private static class RoutingDataSource implements DataSource,
+            CacheDataSource.EventListener, TransferListener<DataSource> {
+
+        private final Stats mStats;
+        private final DataSource mDirectDataSource;
+        private final DataSource mCacheDataSource;
+        private DataSource mCurrentDataSource;
+        private long mCachedBytes;
+        private long mUpstreamBytes;
+
+        RoutingDataSource(Context context, String userAgent, Cache cache, Stats stats) {
+            mStats = stats;
+            mDirectDataSource = new DefaultDataSource(context, null, userAgent, false);
+            mCacheDataSource = new CacheDataSource(cache,
+                    new DefaultHttpDataSource(userAgent, null, this), new FileDataSource(),
+                    new CacheDataSink(cache, MAX_CACHE_FILE_BYTES),
+                    CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR, this);
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            mCurrentDataSource = isCached(dataSpec.uri) ? mCacheDataSource : mDirectDataSource;
+            return mCurrentDataSource.open(dataSpec);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) throws IOException {
+            return mCurrentDataSource.read(buffer, offset, readLength);
+        }
+
+        @Override
+        public Uri getUri() {
+            return mCurrentDataSource != null ? mCurrentDataSource.getUri() : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mCurrentDataSource == null) {
+                return;
+            }
+            try {
+                mCurrentDataSource.close();
+            } finally {
+                // The cache data source reports the bytes it read from the cache when closed.
+                if (mCurrentDataSource == mCacheDataSource) {
+                    mStats.record(mCachedBytes, mUpstreamBytes);
+                }
+                mCurrentDataSource = null;
+                mCachedBytes = 0;
+                mUpstreamBytes = 0;
+            }
+        }
+
+        @Override
+        public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+            mCachedBytes += cachedBytesRead;
+        }
+
+        @Override
+        public void onTransferStart(DataSource source, DataSpec dataSpec) {
+        }
+
+        @Override
+        public void onBytesTransferred(DataSource source, int bytesTransferred) {
+            mUpstreamBytes += bytesTransferred;
+        }
+
+        @Override
+        public void onTransferEnd(DataSource source) {
+        }
+    }
+}
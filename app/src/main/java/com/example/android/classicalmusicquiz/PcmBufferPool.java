@@ -0,0 +1,201 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Fixed pool of direct buffers holding the decoded PCM audio of the start of upcoming samples.
+ * The buffers are allocated once, off the Java heap, and reused: when every buffer is taken, the
+ * least recently used entry that isn't being played is evicted to make room. The pool never
+ * grows, so it takes at most its buffer count times its buffer size.
+ *
+ * An entry is pinned with {@link #acquire(String)} while it is being played, and can't be
+ * evicted until it is released with {@link #release(Entry)}.
+ */
+class PcmBufferPool {
+
+    private final int mBufferBytes;
+    private final ArrayDeque<ByteBuffer> mFreeBuffers = new ArrayDeque<>();
+
+    // In access order, so the first unpinned entry is the least recently used one.
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Decoded 16-bit PCM audio of the start of a sample.
+     */
+    static class Entry {
+        final String key;
+        final int sampleRate;
+        final int channelCount;
+        private final ByteBuffer mBuffer;
+        private int mPins;
+        private boolean mReplaced;
+
+        Entry(String key, ByteBuffer buffer, int sampleRate, int channelCount) {
+            this.key = key;
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            mBuffer = buffer;
+        }
+
+        /**
+         * @return A read-only view of the PCM data, from its start to its end.
+         */
+        ByteBuffer getData() {
+            return mBuffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * @return The number of bytes of PCM data.
+         */
+        int getSize() {
+            return mBuffer.limit();
+        }
+
+        /**
+         * @return The duration of the PCM data, in microseconds.
+         */
+        long getDurationUs() {
+            return mBuffer.limit() / (2L * channelCount) * 1000000L / sampleRate;
+        }
+    }
+
+    /**
+     * Creates a pool and allocates all its buffers.
+     * @param bufferCount The number of buffers.
+     * @param bufferBytes The size of each buffer, in bytes.
+     */
+    PcmBufferPool(int bufferCount, int bufferBytes) {
+        mBufferBytes = bufferBytes;
+        for (int i = 0; i < bufferCount; i++) {
+            mFreeBuffers.add(ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * Takes a buffer to decode into, evicting the least recently used entry that isn't pinned
+     * if there are no free buffers. The buffer is cleared. Hand it back with
+     * {@link #put(String, ByteBuffer, int, int)}, or {@link #recycle(ByteBuffer)} if decoding
+     * fails.
+     * @return The buffer, or null if every buffer is pinned or being decoded into.
+     */
+    synchronized ByteBuffer obtainBuffer() {
+        if (mFreeBuffers.isEmpty()) {
+            Iterator<Entry> entries = mEntries.values().iterator();
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (entry.mPins == 0) {
+                    entries.remove();
+                    mFreeBuffers.add(entry.mBuffer);
+                    break;
+                }
+            }
+        }
+        ByteBuffer buffer = mFreeBuffers.poll();
+        if (buffer != null) {
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    /**
+     * Stores decoded audio in the pool, replacing any entry with the same key.
+     * @param key The key of the audio, see {@link #keyOf(Sample)}.
+     * @param buffer The buffer from {@link #obtainBuffer()}, holding PCM data up to its position.
+     * @param sampleRate The sample rate of the PCM data.
+     * @param channelCount The number of channels of the PCM data.
+     */
+    synchronized void put(String key, ByteBuffer buffer, int sampleRate, int channelCount) {
+        buffer.flip();
+        Entry previous = mEntries.put(key, new Entry(key, buffer, sampleRate, channelCount));
+        if (previous != null) {
+            // Whoever still plays the previous entry keeps its buffer until it is released.
+            previous.mReplaced = true;
+            if (previous.mPins == 0) {
+                mFreeBuffers.add(previous.mBuffer);
+            }
+        }
+    }
+
+    /**
+     * Hands back a buffer that no audio was stored in.
+     * @param buffer The buffer from {@link #obtainBuffer()}.
+     */
+    synchronized void recycle(ByteBuffer buffer) {
+        mFreeBuffers.add(buffer);
+    }
+
+    /**
+     * @param key The key of the audio.
+     * @return true if the audio is in the pool.
+     */
+    synchronized boolean contains(String key) {
+        return mEntries.containsKey(key);
+    }
+
+    /**
+     * Pins audio in the pool, so it isn't evicted while it is played.
+     * @param key The key of the audio.
+     * @return The entry, or null if the audio isn't in the pool.
+     */
+    synchronized Entry acquire(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry != null) {
+            entry.mPins++;
+        }
+        return entry;
+    }
+
+    /**
+     * Unpins audio pinned by {@link #acquire(String)}.
+     * @param entry The entry.
+     */
+    synchronized void release(Entry entry) {
+        entry.mPins--;
+        if (entry.mPins == 0 && entry.mReplaced) {
+            // The entry was replaced while it was played.
+            mFreeBuffers.add(entry.mBuffer);
+        }
+    }
+
+    /**
+     * @return The size of each buffer, in bytes.
+     */
+    int getBufferBytes() {
+        return mBufferBytes;
+    }
+
+    /**
+     * @return The number of entries in the pool.
+     */
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @param sample The sample.
+     * @return The key of the decoded start of the sample's excerpt.
+     */
+    static String keyOf(Sample sample) {
+        return sample.getUri() + '#' + sample.getClipStartMs();
+    }
+}
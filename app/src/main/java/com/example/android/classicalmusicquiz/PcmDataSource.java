@@ -0,0 +1,146 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * DataSource that reads audio decoded into the {@link PcmBufferPool} as a WAV file, straight out
+ * of its direct buffer, so the player can play it with its WAV extractor without decoding
+ * anything. The audio is pinned in the pool from open to close.
+ */
+class PcmDataSource implements DataSource {
+
+    static final String SCHEME = "pcm";
+    private static final String KEY_PARAMETER = "key";
+
+    private static final int WAV_HEADER_SIZE = 44;
+    private static final int BITS_PER_SAMPLE = 16;
+
+    private final PcmBufferPool mPool;
+    private Uri mUri;
+    private PcmBufferPool.Entry mEntry;
+    private ByteBuffer mHeader;
+    private ByteBuffer mData;
+    private long mBytesRemaining;
+
+    /**
+     * Creates a data source.
+     * @param pool The pool the audio is read from.
+     */
+    PcmDataSource(PcmBufferPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Builds the URI that the data source reads audio in the pool from.
+     * @param key The key of the audio in the pool.
+     * @return The URI.
+     */
+    static Uri buildUri(String key) {
+        return new Uri.Builder().scheme(SCHEME).authority("pool")
+                .appendQueryParameter(KEY_PARAMETER, key).build();
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        String key = dataSpec.uri.getQueryParameter(KEY_PARAMETER);
+        mEntry = key != null ? mPool.acquire(key) : null;
+        if (mEntry == null) {
+            throw new IOException("Not in the PCM pool: " + dataSpec.uri);
+        }
+        mUri = dataSpec.uri;
+        mHeader = buildWavHeader(mEntry);
+        mData = mEntry.getData();
+
+        long size = WAV_HEADER_SIZE + mEntry.getSize();
+        if (dataSpec.position > size) {
+            throw new IOException("Position " + dataSpec.position + " past the end of " + key);
+        }
+        mBytesRemaining = dataSpec.length != C.LENGTH_UNSET
+                ? Math.min(dataSpec.length, size - dataSpec.position)
+                : size - dataSpec.position;
+
+        // Move both views to the requested position.
+        int headerPosition = (int) Math.min(dataSpec.position, WAV_HEADER_SIZE);
+        mHeader.position(headerPosition);
+        mData.position((int) (dataSpec.position - headerPosition));
+        return mBytesRemaining;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) {
+        if (readLength == 0) {
+            return 0;
+        }
+        if (mBytesRemaining == 0) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        int length = (int) Math.min(readLength, mBytesRemaining);
+        ByteBuffer source = mHeader.hasRemaining() ? mHeader : mData;
+        length = Math.min(length, source.remaining());
+        source.get(buffer, offset, length);
+        mBytesRemaining -= length;
+        return length;
+    }
+
+    @Override
+    public Uri getUri() {
+        return mUri;
+    }
+
+    @Override
+    public void close() {
+        if (mEntry != null) {
+            mPool.release(mEntry);
+            mEntry = null;
+        }
+        mUri = null;
+        mHeader = null;
+        mData = null;
+    }
+
+    /**
+     * Builds the header of a canonical WAV file holding 16-bit PCM audio.
+     */
+    private static ByteBuffer buildWavHeader(PcmBufferPool.Entry entry) {
+        int blockAlign = entry.channelCount * BITS_PER_SAMPLE / 8;
+        ByteBuffer header = ByteBuffer.allocate(WAV_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        header.putInt(WAV_HEADER_SIZE - 8 + entry.getSize());
+        header.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort((short) 1);
+        header.putShort((short) entry.channelCount);
+        header.putInt(entry.sampleRate);
+        header.putInt(entry.sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) BITS_PER_SAMPLE);
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        header.putInt(entry.getSize());
+        header.flip();
+        return header;
+    }
+}
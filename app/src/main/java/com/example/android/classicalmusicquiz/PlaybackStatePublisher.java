@@ -0,0 +1,221 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.v4.media.session.MediaButtonReceiver;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+import android.support.v7.app.NotificationCompat;
+
+/**
+ * Publishes the playback state to the media session and the media notification, skipping the
+ * player callbacks that don't change anything a controller or the notification would show.
+ *
+ * A state is only published if it differs from the last one published in its state, actions or
+ * speed, or if its position is away from where the last one would have got to by then. Updates
+ * closer together than the minimum interval are held back, and only the latest one is published
+ * when the interval is over. The notification only depends on whether the sample is playing, so
+ * both versions of it are built once, and it is only posted again when that changes.
+ */
+class PlaybackStatePublisher {
+
+    static final int NOTIFICATION_ID = 0;
+
+    // How far the position may drift from where it is expected before it is published again.
+    private static final long POSITION_TOLERANCE_MS = 500;
+
+    private final MediaSessionCompat mSession;
+    private final NotificationManager mNotificationManager;
+    private final Notification mPlayingNotification;
+    private final Notification mPausedNotification;
+    private final Handler mHandler = new Handler();
+    private final long mMinIntervalMs;
+
+    private PlaybackStateCompat mPublished;
+    private long mPublishedAt;
+    private PlaybackStateCompat mPending;
+    private Notification mShownNotification;
+
+    private int mPublishedCount;
+    private int mUnchangedCount;
+    private int mCoalescedCount;
+    private int mNotifiedCount;
+
+    private final Runnable mPublishPending = new Runnable() {
+        @Override
+        public void run() {
+            PlaybackStateCompat state = mPending;
+            mPending = null;
+            if (isUnchanged(mPublished, state)) {
+                mUnchangedCount++;
+            } else {
+                publishNow(state);
+            }
+        }
+    };
+
+    /**
+     * Creates a publisher, and builds the notification for both playing and paused samples.
+     * @param context The context.
+     * @param session The media session.
+     * @param minIntervalMs The least time between two updates of the session.
+     */
+    PlaybackStatePublisher(Context context, MediaSessionCompat session, long minIntervalMs) {
+        mSession = session;
+        mMinIntervalMs = minIntervalMs;
+        mNotificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0,
+                new Intent(context, QuizActivity.class), 0);
+        PendingIntent playPauseIntent = MediaButtonReceiver.buildMediaButtonPendingIntent(context,
+                PlaybackStateCompat.ACTION_PLAY_PAUSE);
+        NotificationCompat.Action restartAction = new NotificationCompat.Action(
+                R.drawable.exo_controls_previous, context.getString(R.string.restart),
+                MediaButtonReceiver.buildMediaButtonPendingIntent(context,
+                        PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS));
+        mPlayingNotification = buildNotification(context, contentIntent, restartAction,
+                new NotificationCompat.Action(R.drawable.exo_controls_pause,
+                        context.getString(R.string.pause), playPauseIntent));
+        mPausedNotification = buildNotification(context, contentIntent, restartAction,
+                new NotificationCompat.Action(R.drawable.exo_controls_play,
+                        context.getString(R.string.play), playPauseIntent));
+    }
+
+    private Notification buildNotification(Context context, PendingIntent contentIntent,
+                                           NotificationCompat.Action restartAction,
+                                           NotificationCompat.Action playPauseAction) {
+        return new NotificationCompat.Builder(context)
+                .setContentTitle(context.getString(R.string.guess))
+                .setContentText(context.getString(R.string.notification_text))
+                .setContentIntent(contentIntent)
+                .setSmallIcon(R.drawable.ic_music_note)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .addAction(restartAction)
+                .addAction(playPauseAction)
+                .setStyle(new NotificationCompat.MediaStyle()
+                        .setMediaSession(mSession.getSessionToken())
+                        .setShowActionsInCompactView(0, 1))
+                .build();
+    }
+
+    /**
+     * Publishes a playback state, unless nothing visible changed since the last one, or holds
+     * it back until the minimum interval since the last update is over.
+     * @param state The playback state.
+     */
+    void publish(PlaybackStateCompat state) {
+        if (mPending != null) {
+            // An update is already waiting for the interval to be over; it's out of date now.
+            mPending = state;
+            mCoalescedCount++;
+            return;
+        }
+        if (isUnchanged(mPublished, state)) {
+            mUnchangedCount++;
+            return;
+        }
+        long wait = mPublishedAt + mMinIntervalMs - SystemClock.elapsedRealtime();
+        if (mPublished != null && wait > 0) {
+            mPending = state;
+            mHandler.postDelayed(mPublishPending, wait);
+            return;
+        }
+        publishNow(state);
+    }
+
+    private void publishNow(PlaybackStateCompat state) {
+        mSession.setPlaybackState(state);
+        mPublished = state;
+        mPublishedAt = SystemClock.elapsedRealtime();
+        mPublishedCount++;
+
+        // Post the notification again only if it changed.
+        Notification notification = state.getState() == PlaybackStateCompat.STATE_PLAYING
+                ? mPlayingNotification : mPausedNotification;
+        if (notification != mShownNotification) {
+            mNotificationManager.notify(NOTIFICATION_ID, notification);
+            mShownNotification = notification;
+            mNotifiedCount++;
+        }
+    }
+
+    /**
+     * Drops any held back update and removes the notification. The next state is published
+     * whatever it is, with a new notification.
+     */
+    void cancel() {
+        mHandler.removeCallbacks(mPublishPending);
+        mPending = null;
+        mPublished = null;
+        mNotificationManager.cancel(NOTIFICATION_ID);
+        mShownNotification = null;
+    }
+
+    /**
+     * @return true if a state shows the same as the last published one, with its position where
+     *         the last one would have moved it to.
+     */
+    private static boolean isUnchanged(PlaybackStateCompat published, PlaybackStateCompat state) {
+        if (published == null || published.getState() != state.getState()
+                || published.getActions() != state.getActions()
+                || published.getPlaybackSpeed() != state.getPlaybackSpeed()) {
+            return false;
+        }
+        long expectedPosition = published.getPosition();
+        if (published.getState() == PlaybackStateCompat.STATE_PLAYING) {
+            expectedPosition += (long) ((state.getLastPositionUpdateTime()
+                    - published.getLastPositionUpdateTime()) * published.getPlaybackSpeed());
+        }
+        return Math.abs(state.getPosition() - expectedPosition) <= POSITION_TOLERANCE_MS;
+    }
+
+    /**
+     * @return The number of updates of the session.
+     */
+    int getPublishedCount() {
+        return mPublishedCount;
+    }
+
+    /**
+     * @return The number of states that were not published because nothing visible changed.
+     */
+    int getUnchangedCount() {
+        return mUnchangedCount;
+    }
+
+    /**
+     * @return The number of held back states that were replaced by a newer one.
+     */
+    int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * @return The number of times the notification was posted.
+     */
+    int getNotifiedCount() {
+        return mNotifiedCount;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Prepares the next question while the current one is being played. As soon as a question is
+ * shown the game can pick the next one, so its samples can already be looked up, the start of
+ * its audio loaded into the {@link MediaCache} if it is remote and starts at the start of the
+ * sample, or decoded by the {@link AudioPredecoder} if the player hasn't queued it up, and its
+ * composer portrait decoded into the {@link ArtworkCache}.
+ */
+class QuestionPrefetcher {
+
+    // How much of the next sample's audio to load ahead of time, sized for the highest MP3
+    // bitrate so that the first seconds are covered whatever the actual bitrate.
+    private static final int PREFETCH_AUDIO_SECONDS = 5;
+    private static final int MAX_AUDIO_BITRATE = 320000;
+    static final int PREFETCH_AUDIO_BYTES = PREFETCH_AUDIO_SECONDS * MAX_AUDIO_BITRATE / 8;
+
+    private static QuestionPrefetcher sInstance;
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private QuizGame.Question mQuestion;
+    private Future<?> mPrefetch;
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * Gets the prefetcher.
+     * @return The prefetcher.
+     */
+    static synchronized QuestionPrefetcher getInstance() {
+        if (sInstance == null) {
+            sInstance = new QuestionPrefetcher();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Starts warming up the data of the next question in the background. Any prefetch that is
+     * still running is cancelled.
+     * @param context The application context.
+     * @param catalog The catalog the game started with, to look the question's samples up in.
+     * @param question The next question, as picked by {@link QuizGame#peekNextQuestion()}, or
+     *                 null if the game ends after the current question.
+     * @param predecode Whether to decode the start of the answer's audio, which is only worth it
+     *                  if the player isn't already buffering it.
+     * @param artWidth The width the composer portrait is displayed at.
+     * @param artHeight The height the composer portrait is displayed at.
+     */
+    synchronized void prefetch(Context context, final SampleCatalog catalog,
+                               final QuizGame.Question question, final boolean predecode,
+                               final int artWidth, final int artHeight) {
+        cancel();
+        if (question == null) {
+            return;
+        }
+        mQuestion = question;
+
+        final Context appContext = context.getApplicationContext();
+        mPrefetch = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                warmUp(appContext, catalog, question, predecode, artWidth, artHeight);
+            }
+        });
+    }
+
+    /**
+     * Records that a question is being shown, counting it as a hit if its data was warmed up
+     * in time.
+     * @param question The question being shown.
+     */
+    synchronized void onQuestionShown(QuizGame.Question question) {
+        if (question == mQuestion && mPrefetch != null && mPrefetch.isDone()) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        mQuestion = null;
+        mPrefetch = null;
+    }
+
+    /**
+     * Cancels the prefetch in progress and forgets the prefetched question.
+     */
+    synchronized void cancel() {
+        if (mPrefetch != null) {
+            mPrefetch.cancel(true);
+            mPrefetch = null;
+        }
+        mQuestion = null;
+    }
+
+    /**
+     * @return The number of questions that were fully warmed up by the time they were shown.
+     */
+    synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return The number of questions that were shown before they were warmed up.
+     */
+    synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    private static void warmUp(Context context, SampleCatalog catalog,
+                               QuizGame.Question question, boolean predecode, int artWidth,
+                               int artHeight) {
+        catalog.getSamples(question.sampleIDs);
+
+        Sample answerSample = catalog.getSample(question.answerSampleID);
+        if (answerSample == null || Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        ArtworkCache.getInstance(context).getComposerArt(answerSample, artWidth, artHeight);
+
+        DataSpec prefetchSpec = buildPrefetchSpec(answerSample);
+        if (prefetchSpec != null && !Thread.currentThread().isInterrupted()) {
+            prefetchAudio(context, prefetchSpec);
+        }
+        AudioPredecoder predecoder = predecode ? AudioPredecoder.getInstance(context) : null;
+        if (predecoder != null && !Thread.currentThread().isInterrupted()) {
+            predecoder.predecode(answerSample);
+        }
+    }
+
+    /**
+     * Builds the range of a sample's audio to load into the media cache ahead of time, which is
+     * the start of the audio the player reads first.
+     *
+     * Local samples aren't cached, so there's nothing to gain from reading them ahead, but the
+     * start of their audio can be decoded ahead. Excerpts that don't start at the start of their
+     * sample aren't read ahead either: the player seeks straight to the start of the excerpt,
+     * and without an index of the audio frames there's no telling which bytes that is.
+     * @param sample The sample.
+     * @return The range to load, or null if the sample isn't worth reading ahead.
+     */
+    static DataSpec buildPrefetchSpec(Sample sample) {
+        Uri uri = Uri.parse(sample.getUri());
+        if (!MediaCache.isCached(uri) || sample.getClipStartMs() > 0) {
+            return null;
+        }
+        return new DataSpec(uri, 0, PREFETCH_AUDIO_BYTES, null);
+    }
+
+    /**
+     * Reads a range of a sample's audio through the media cache, so it is cached by the time
+     * the player asks for it.
+     */
+    private static void prefetchAudio(Context context, DataSpec dataSpec) {
+        DataSource dataSource = MediaCache.buildDataSourceFactory(context).createDataSource();
+        try {
+            dataSource.open(dataSpec);
+            byte[] buffer = new byte[16 * 1024];
+            int read = 0;
+            while (read != C.RESULT_END_OF_INPUT && !Thread.currentThread().isInterrupted()) {
+                read = dataSource.read(buffer, 0, buffer.length);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                dataSource.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
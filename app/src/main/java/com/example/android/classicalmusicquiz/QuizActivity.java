@@ -16,112 +16,462 @@
 
 package com.example.android.classicalmusicquiz;
 
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.BitmapFactory;
+import android.content.res.ColorStateList;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
-import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.media.session.MediaButtonReceiver;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
 import android.support.v7.app.AppCompatActivity;
-import android.support.v7.app.NotificationCompat;
+import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.Toast;
 
-import com.google.android.exoplayer2.DefaultLoadControl;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayer;
-import com.google.android.exoplayer2.ExoPlayerFactory;
-import com.google.android.exoplayer2.LoadControl;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
-import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
-import com.google.android.exoplayer2.source.ExtractorMediaSource;
-import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.TrackGroupArray;
-import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
-import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.ui.SimpleExoPlayerView;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class QuizActivity extends AppCompatActivity implements View.OnClickListener, ExoPlayer.EventListener {
 
     private static final int CORRECT_ANSWER_DELAY_MILLIS = 1000;
+    private static final String GAME_KEY = "game";
     private static final String REMAINING_SONGS_KEY = "remaining_songs";
+    private static final String QUESTION_SONGS_KEY = "question_songs";
+    private static final String ANSWER_SONG_KEY = "answer_song";
+    private static final String ANSWERED_KEY = "answered";
+    private static final String STREAK_KEY = "streak";
+    private static final String PACKS_KEY = "packs";
+    private static final String SAMPLE_COUNT_KEY = "sample_count";
+    private static final String TRACE_FILE = "trace.tsv";
     private static final String TAG = QuizActivity.class.getSimpleName();
+
+    // Runs the background stages of the startup, and writes the trace; two threads, so the
+    // artwork is decoded while the catalog and the saved state are read.
+    private static final ExecutorService sStartupExecutor = Executors.newFixedThreadPool(2);
+
     private int[] mButtonIDs = {R.id.buttonA, R.id.buttonB, R.id.buttonC, R.id.buttonD};
-    private ArrayList<Integer> mRemainingSampleIDs;
-    private ArrayList<Integer> mQuestionSampleIDs;
-    private int mAnswerSampleID;
-    private int mCurrentScore;
-    private int mHighScore;
+    private QuizGame mGame;
+
+    // The catalog the game started with. The samples are looked up in it for the whole game,
+    // even if the manifests in storage change in the meantime.
+    private SampleCatalog mCatalog;
+
+    // The sample packs the game is played with, or null if it is played with the whole catalog,
+    // and the number of samples it was started with.
+    private String[] mPacks;
+    private int mSampleCount;
     private Button[] mButtons;
+    private ColorStateList mButtonTextColors;
     private SimpleExoPlayer mExoPlayer;
     private SimpleExoPlayerView mPlayerView;
     private static MediaSessionCompat mMediaSession;
     private PlaybackStateCompat.Builder mStateBuilder;
-    private NotificationManager mNotificationManager;
+    private PlaybackStatePublisher mStatePublisher;
+    private final Handler mHandler = new Handler();
+    private long mTransitionStartedAt = -1;
+    private long mQuestionShownAt;
+    private long mLastTransitionMillis = -1;
+    private StartupPipeline mStartup;
+    private long mCreatedAt;
+
+    // The game as set up by the startup pipeline, in the background, until it is bound, and the
+    // saved game it was restored from, kept in case the activity is recreated again before then.
+    private QuizGame mStartupGame;
+    private SampleCatalog mStartupCatalog;
+    private String[] mStartupPacks;
+    private int mStartupSampleCount;
+    private boolean mStartupHasQuestion;
+    private Sample mStartupAnswerSample;
+    private Bundle mSavedGame;
+
+    // Runs the main-thread stages of the startup, each in its own message, so that frames can
+    // be drawn in between.
+    private final Executor mMainExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    };
+
+    // Moves on to the next question once the user has seen the correct answer.
+    private final Runnable mNextQuestionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mTransitionStartedAt = SystemClock.uptimeMillis();
+            startNextQuestion();
+        }
+    };
 
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        // Trace where the launch time goes in debug builds.
+        if (BuildConfig.DEBUG) {
+            Tracer.enable();
+        }
+        long start = Tracer.begin();
         setContentView(R.layout.activity_quiz);
+        Tracer.end("quiz.inflate", start);
 
 
         // Initialize the player view.
         mPlayerView = (SimpleExoPlayerView) findViewById(R.id.playerView);
 
+        // Initialize the buttons, they are reused for every question.
+        mButtons = initializeButtons();
+
+        // Initialize the Media Session.
+        initializeMediaSession();
 
-        boolean isNewGame = !getIntent().hasExtra(REMAINING_SONGS_KEY);
+        // Measure how long it takes to show each question, up to its first frame.
+        mPlayerView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        if (mTransitionStartedAt >= 0) {
+                            mLastTransitionMillis =
+                                    SystemClock.uptimeMillis() - mTransitionStartedAt;
+                            mTransitionStartedAt = -1;
+                            Log.d(TAG, "Question shown in " + mLastTransitionMillis + " ms");
+                        }
+                        return true;
+                    }
+                });
+
+        // Show the screen right away, and set the game up in the background.
+        mCreatedAt = SystemClock.uptimeMillis();
+        mSavedGame = savedInstanceState != null ? savedInstanceState.getBundle(GAME_KEY) : null;
+        mStartup = buildStartupPipeline();
+        mStartup.start();
+    }
 
-        // If it's a new game, set the current score to 0 and load all samples.
-        if (isNewGame) {
-            QuizUtils.setCurrentScore(this, 0);
-            mRemainingSampleIDs = Sample.getAllSampleIDs(this);
-            // Otherwise, get the remaining songs from the Intent.
-        } else {
-            mRemainingSampleIDs = getIntent().getIntegerArrayListExtra(REMAINING_SONGS_KEY);
+    /**
+     * Builds the pipeline that sets up the game. The catalog, the saved state and the first
+     * question are loaded in the background, as is the question mark placeholder, and only
+     * binding the question to the buttons and starting playback run on the main thread, one
+     * after the other.
+     * @return The startup pipeline, not yet started.
+     */
+    private StartupPipeline buildStartupPipeline() {
+        final Context context = getApplicationContext();
+        final int artWidth = mPlayerView.getWidth();
+        final int artHeight = mPlayerView.getHeight();
+
+        StartupPipeline pipeline = new StartupPipeline(new StartupPipeline.Listener() {
+            @Override
+            public void onStageFinished(String name, long millis) {
+                Log.d(TAG, "Startup stage " + name + " took " + millis + " ms");
+            }
+
+            @Override
+            public void onStageFailed(String name, Exception error) {
+                Log.e(TAG, "Startup stage " + name + " failed", error);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(QuizActivity.this, R.string.sample_list_load_error,
+                                Toast.LENGTH_LONG).show();
+                        finish();
+                    }
+                });
+            }
+
+            @Override
+            public void onFinished(long millis) {
+                Log.d(TAG, "Startup took " + millis + " ms");
+            }
+        });
+
+        // Parse the catalog and index it for the distractors.
+        StartupPipeline.Stage catalog = pipeline.addStage("catalog", sStartupExecutor,
+                new StartupPipeline.Work() {
+                    @Override
+                    public void run() throws Exception {
+                        long start = Tracer.begin();
+                        SampleCatalog catalog = SampleCatalog.preload(context);
+                        Tracer.end("catalog.load", start);
+                        start = Tracer.begin();
+                        catalog.getDistractorIndex();
+                        Tracer.end("catalog.index", start);
+                    }
+                });
+
+        // Read the scores, the review schedule and the answer history.
+        StartupPipeline.Stage state = pipeline.addStage("state", sStartupExecutor,
+                new StartupPipeline.Work() {
+                    @Override
+                    public void run() {
+                        long start = Tracer.begin();
+                        ScoreStore.getInstance(context);
+                        Tracer.end("prefs.read", start);
+                        start = Tracer.begin();
+                        ReviewScheduler.getInstance(context);
+                        Tracer.end("schedule.read", start);
+                        start = Tracer.begin();
+                        AnswerHistory.getInstance(context);
+                        Tracer.end("history.read", start);
+                    }
+                }, catalog);
+
+        // Restore the game in progress, or start a new one, and look up its first question.
+        StartupPipeline.Stage game = pipeline.addStage("game", sStartupExecutor,
+                new StartupPipeline.Work() {
+                    @Override
+                    public void run() {
+                        long start = Tracer.begin();
+                        setUpGame(context);
+                        Tracer.end("game.setUp", start);
+                    }
+                }, state);
+
+        // Decode the question mark shown until the question is answered. The player view isn't
+        // laid out yet when the activity is created, and then it is decoded at the screen size,
+        // which is what the question is bound with until the view is laid out.
+        StartupPipeline.Stage artwork = pipeline.addStage("artwork", sStartupExecutor,
+                new StartupPipeline.Work() {
+                    @Override
+                    public void run() {
+                        long start = Tracer.begin();
+                        ArtworkCache.getInstance(context).getPlaceholder(artWidth, artHeight);
+                        Tracer.end("artwork.placeholder", start);
+                    }
+                });
+
+        // Bind the question to the buttons.
+        StartupPipeline.Stage bind = pipeline.addStage("bind", mMainExecutor,
+                new StartupPipeline.Work() {
+                    @Override
+                    public void run() {
+                        long start = Tracer.begin();
+                        bindStartupGame();
+                        Tracer.end("quiz.bind", start);
+                    }
+                }, game, artwork);
+
+        // Decode the start of the first question's sample, if pre-decoding is turned on.
+        StartupPipeline.Stage audio = pipeline.addStage("audio", sStartupExecutor,
+                new StartupPipeline.Work() {
+                    @Override
+                    public void run() {
+                        AudioPredecoder predecoder = AudioPredecoder.getInstance(context);
+                        Sample sample = mStartupAnswerSample;
+                        if (predecoder != null && sample != null) {
+                            long start = Tracer.begin();
+                            predecoder.predecode(sample);
+                            Tracer.end("audio.predecode", start);
+                        }
+                    }
+                }, game);
+
+        // Create the player and start playing, once the question can already be seen.
+        pipeline.addStage("player", mMainExecutor, new StartupPipeline.Work() {
+            @Override
+            public void run() {
+                if (mGame != null) {
+                    long start = Tracer.begin();
+                    playQuestion();
+                    Tracer.end("player.prepare", start);
+                }
+            }
+        }, bind, audio);
+        return pipeline;
+    }
+
+    /**
+     * Restores the saved game, or starts a new one and moves it on to its first question.
+     * Runs in the background, before the activity has a game.
+     * @param context The application context.
+     */
+    private void setUpGame(Context context) {
+        // Play the selected sample packs, if any, or else the whole catalog. A restored game
+        // keeps the packs it was started with.
+        String[] packs = mSavedGame != null ? mSavedGame.getStringArray(PACKS_KEY)
+                : SamplePacks.getSelectedPacks(context);
+        SampleCatalog catalog = SampleCatalog.getInstance(context);
+        int[] sampleIDs = null;
+        if (packs != null && packs.length > 0) {
+            SamplePacks samplePacks = SamplePacks.getInstance(context);
+            try {
+                SampleCatalog packCatalog = samplePacks.withPacks(catalog, packs);
+                sampleIDs = samplePacks.getSampleIDs(packs);
+                catalog = packCatalog;
+            } catch (IOException e) {
+                Log.e(TAG, "Can't load the sample packs", e);
+                packs = null;
+            }
         }
 
-        // Get current and high scores.
-        mCurrentScore = QuizUtils.getCurrentScore(this);
-        mHighScore = QuizUtils.getHighScore(this);
+        ReviewScheduler scheduler = ReviewScheduler.getInstance(context);
+        QuizGame game;
+        if (mSavedGame != null) {
+            game = new QuizGame(mSavedGame.getIntArray(REMAINING_SONGS_KEY),
+                    QuizUtils.getCurrentScore(context), QuizUtils.getHighScore(context),
+                    scheduler, catalog.getDistractorIndex(), new EraDistractorStrategy(),
+                    new Random());
+            mStartupSampleCount = mSavedGame.getInt(SAMPLE_COUNT_KEY, catalog.size());
+            game.restoreQuestion(mSavedGame.getIntArray(QUESTION_SONGS_KEY),
+                    mSavedGame.getInt(ANSWER_SONG_KEY),
+                    mSavedGame.getBoolean(ANSWERED_KEY),
+                    mSavedGame.getInt(STREAK_KEY));
+            mStartupHasQuestion = true;
+        } else {
+            // It's a new game, set the current score to 0 and load all samples. The samples
+            // asked in the previous game can be asked again.
+            QuizUtils.setCurrentScore(context, 0);
+            if (sampleIDs == null) {
+                sampleIDs = catalog.getSampleIDs();
+            }
+            mStartupSampleCount = sampleIDs.length;
+            game = new QuizGame(sampleIDs, 0, QuizUtils.getHighScore(context),
+                    scheduler, catalog.getDistractorIndex(), new EraDistractorStrategy(),
+                    new Random());
+            QuestionPrefetcher.getInstance().cancel();
+            mStartupHasQuestion = game.nextQuestion();
+        }
 
-        // Generate a question and get the correct answer.
-        mQuestionSampleIDs = QuizUtils.generateQuestion(mRemainingSampleIDs);
-        mAnswerSampleID = QuizUtils.getCorrectAnswerID(mQuestionSampleIDs);
+        // Decode the answers, so binding them to the buttons is only a lookup.
+        if (mStartupHasQuestion) {
+            catalog.getSamples(game.getQuestionSampleIDs());
+            mStartupAnswerSample = catalog.getSample(game.getAnswerSampleID());
+        }
+        mStartupCatalog = catalog;
+        mStartupPacks = packs;
+        mStartupGame = game;
+    }
 
-        // Load the question mark as the background image until the user answers the question.
-        mPlayerView.setDefaultArtwork(BitmapFactory.decodeResource
-                (getResources(), R.drawable.question_mark));
+    /**
+     * Hands the game set up in the background over to the UI.
+     */
+    private void bindStartupGame() {
+        QuizGame game = mStartupGame;
+        SampleCatalog catalog = mStartupCatalog;
+        String[] packs = mStartupPacks;
+        mStartupGame = null;
+        mStartupCatalog = null;
+        mStartupPacks = null;
+        mSavedGame = null;
 
         // If there is only one answer left, end the game.
-        if (mQuestionSampleIDs.size() < 2) {
-            QuizUtils.endGame(this);
+        if (!mStartupHasQuestion) {
+            QuizUtils.endGame(this, mStartupSampleCount);
             finish();
+            return;
         }
 
-        // Initialize the buttons with the composers names.
-        mButtons = initializeButtons(mQuestionSampleIDs);
+        // The first question counts as shown from when the activity was created.
+        mGame = game;
+        mCatalog = catalog;
+        mPacks = packs;
+        mSampleCount = mStartupSampleCount;
+        mTransitionStartedAt = mCreatedAt;
+        bindQuestion();
+        if (mGame.isAnswered()) {
+            showCorrectAnswer();
+            mHandler.postDelayed(mNextQuestionRunnable, CORRECT_ANSWER_DELAY_MILLIS);
+        }
+    }
 
-        // Initialize the Media Session.
-        initializeMediaSession();
+    /**
+     * Saves the game in progress so it survives configuration changes. If the activity is
+     * recreated before its game was set up, the game it was restoring is saved again.
+     */
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (mGame != null) {
+            Bundle game = new Bundle();
+            game.putIntArray(REMAINING_SONGS_KEY, mGame.getRemainingSampleIDs());
+            game.putIntArray(QUESTION_SONGS_KEY, mGame.getQuestionSampleIDs());
+            game.putInt(ANSWER_SONG_KEY, mGame.getAnswerSampleID());
+            game.putBoolean(ANSWERED_KEY, mGame.isAnswered());
+            game.putInt(STREAK_KEY, mGame.getCorrectStreak());
+            game.putStringArray(PACKS_KEY, mPacks);
+            game.putInt(SAMPLE_COUNT_KEY, mSampleCount);
+            outState.putBundle(GAME_KEY, game);
+        } else if (mSavedGame != null) {
+            outState.putBundle(GAME_KEY, mSavedGame);
+        }
+    }
+
+    /**
+     * Moves the game on to its next question, which was picked and warmed up while the previous
+     * one was played, and rebinds the UI. Ends the game if there are not enough samples left
+     * for a question. The first question of a game is set up by the startup pipeline instead.
+     */
+    private void startNextQuestion() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection("QuizActivity.startNextQuestion");
+        }
+        try {
+            // If there is only one answer left, end the game.
+            if (!mGame.nextQuestion()) {
+                QuizUtils.endGame(this, mSampleCount);
+                finish();
+                return;
+            }
 
-        Sample answerSample = Sample.getSampleByID(this, mAnswerSampleID);
+            QuestionPrefetcher.getInstance().onQuestionShown(mGame.getQuestion());
+            showQuestion();
+        } finally {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                Trace.endSection();
+            }
+        }
+    }
+
+    /**
+     * Binds the current question to the UI, starts playing its sample and starts preparing the
+     * next question.
+     */
+    private void showQuestion() {
+        bindQuestion();
+        playQuestion();
+    }
+
+    /**
+     * Binds the current question to the UI: the question mark and the composers' names.
+     */
+    private void bindQuestion() {
+        mQuestionShownAt = SystemClock.uptimeMillis();
+
+        // Load the question mark as the background image until the user answers the question.
+        mPlayerView.setDefaultArtwork(ArtworkCache.getInstance(this)
+                .getPlaceholder(mPlayerView.getWidth(), mPlayerView.getHeight()));
+
+        // Set the buttons to the composers names.
+        bindButtons(mGame.getQuestionSampleIDs());
+    }
+
+    /**
+     * Starts playing the current question's sample and starts preparing the next question.
+     */
+    private void playQuestion() {
+        Sample answerSample = mCatalog.getSample(mGame.getAnswerSampleID());
 
         if (answerSample == null) {
             Toast.makeText(this, getString(R.string.sample_not_found_error),
@@ -129,8 +479,18 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
             return;
         }
 
-        // Initialize the player.
-        initializePlayer(Uri.parse(answerSample.getUri()));
+        // Pick the next question, and play the sample with the next question's sample queued
+        // up after it.
+        QuizGame.Question nextQuestion = mGame.peekNextQuestion();
+        Sample nextSample = nextQuestion != null
+                ? mCatalog.getSample(nextQuestion.answerSampleID) : null;
+        initializePlayer(answerSample, nextSample);
+
+        // Start preparing the next question while this one is played. If its sample got queued
+        // up, the player is already buffering it, and audio decoded now wouldn't be used.
+        QuestionPrefetcher.getInstance().prefetch(this, mCatalog, nextQuestion,
+                !QuizPlayer.getInstance(this).isQueued(nextSample), mPlayerView.getWidth(),
+                mPlayerView.getHeight());
     }
 
     /**
@@ -159,7 +519,8 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
                                 PlaybackStateCompat.ACTION_PLAY_PAUSE);
 
         mMediaSession.setPlaybackState(mStateBuilder.build());
-
+        mStatePublisher = new PlaybackStatePublisher(this, mMediaSession,
+                getResources().getInteger(R.integer.playback_state_interval_ms));
 
         // MySessionCallback has methods that handle callbacks from a media controller.
         mMediaSession.setCallback(new MySessionCallback());
@@ -170,109 +531,81 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
     }
 
     /**
-     * Initializes the button to the correct views, and sets the text to the composers names,
-     * and set's the OnClick listener to the buttons.
+     * Initializes the buttons to the correct views and sets the OnClick listener to the
+     * buttons.
      *
-     * @param answerSampleIDs The IDs of the possible answers to the question.
      * @return The Array of initialized buttons.
      */
-    private Button[] initializeButtons(ArrayList<Integer> answerSampleIDs) {
+    private Button[] initializeButtons() {
         Button[] buttons = new Button[mButtonIDs.length];
-        for (int i = 0; i < answerSampleIDs.size(); i++) {
-            Button currentButton = (Button) findViewById(mButtonIDs[i]);
-            Sample currentSample = Sample.getSampleByID(this, answerSampleIDs.get(i));
-            buttons[i] = currentButton;
-            currentButton.setOnClickListener(this);
-            if (currentSample != null) {
-                currentButton.setText(currentSample.getComposer());
-            }
+        for (int i = 0; i < mButtonIDs.length; i++) {
+            buttons[i] = (Button) findViewById(mButtonIDs[i]);
+            buttons[i].setOnClickListener(this);
+
+            // Keep the buttons disabled until the first question is bound to them.
+            buttons[i].setEnabled(false);
         }
+        mButtonTextColors = buttons[0].getTextColors();
         return buttons;
     }
 
-
     /**
-     * Shows Media Style notification, with actions that depend on the current MediaSession
-     * PlaybackState.
-     * @param state The PlaybackState of the MediaSession.
+     * Sets the text of the buttons to the composers names and resets them from showing the
+     * previous answer. Buttons without an answer are disabled.
+     *
+     * @param answerSampleIDs The IDs of the possible answers to the question.
      */
-    private void showNotification(PlaybackStateCompat state) {
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this);
-
-        int icon;
-        String play_pause;
-        if(state.getState() == PlaybackStateCompat.STATE_PLAYING){
-            icon = R.drawable.exo_controls_pause;
-            play_pause = getString(R.string.pause);
-        } else {
-            icon = R.drawable.exo_controls_play;
-            play_pause = getString(R.string.play);
-        }
-
-
-        NotificationCompat.Action playPauseAction = new NotificationCompat.Action(
-                icon, play_pause,
-                MediaButtonReceiver.buildMediaButtonPendingIntent(this,
-                        PlaybackStateCompat.ACTION_PLAY_PAUSE));
-
-        NotificationCompat.Action restartAction = new android.support.v4.app.NotificationCompat
-                .Action(R.drawable.exo_controls_previous, getString(R.string.restart),
-                MediaButtonReceiver.buildMediaButtonPendingIntent
-                        (this, PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS));
+    private void bindButtons(int[] answerSampleIDs) {
+        // Look up all of the answers at once.
+        Sample[] answerSamples = mCatalog.getSamples(answerSampleIDs);
 
-        PendingIntent contentPendingIntent = PendingIntent.getActivity
-                (this, 0, new Intent(this, QuizActivity.class), 0);
-
-        builder.setContentTitle(getString(R.string.guess))
-                .setContentText(getString(R.string.notification_text))
-                .setContentIntent(contentPendingIntent)
-                .setSmallIcon(R.drawable.ic_music_note)
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .addAction(restartAction)
-                .addAction(playPauseAction)
-                .setStyle(new NotificationCompat.MediaStyle()
-                        .setMediaSession(mMediaSession.getSessionToken())
-                        .setShowActionsInCompactView(0,1));
-
-
-        mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        mNotificationManager.notify(0, builder.build());
+        for (int i = 0; i < mButtons.length; i++) {
+            Button currentButton = mButtons[i];
+            currentButton.getBackground().clearColorFilter();
+            currentButton.setTextColor(mButtonTextColors);
+            if (i < answerSamples.length && answerSamples[i] != null) {
+                currentButton.setText(answerSamples[i].getComposer());
+                currentButton.setEnabled(true);
+            } else {
+                currentButton.setText(null);
+                currentButton.setEnabled(false);
+            }
+        }
     }
 
 
     /**
-     * Initialize ExoPlayer.
-     * @param mediaUri The URI of the sample to play.
+     * Initialize ExoPlayer, using the player that is kept for the whole game, and play a sample.
+     * @param sample The sample to play.
+     * @param nextSample The sample of the next question, or null if it's not known.
      */
-    private void initializePlayer(Uri mediaUri) {
+    private void initializePlayer(Sample sample, Sample nextSample) {
+        QuizPlayer quizPlayer = QuizPlayer.getInstance(this);
         if (mExoPlayer == null) {
-            // Create an instance of the ExoPlayer.
-            TrackSelector trackSelector = new DefaultTrackSelector();
-            LoadControl loadControl = new DefaultLoadControl();
-            mExoPlayer = ExoPlayerFactory.newSimpleInstance(this, trackSelector, loadControl);
+            mExoPlayer = quizPlayer.getPlayer();
             mPlayerView.setPlayer(mExoPlayer);
 
             // Set the ExoPlayer.EventListener to this activity.
             mExoPlayer.addListener(this);
-            
-            // Prepare the MediaSource.
-            String userAgent = Util.getUserAgent(this, "ClassicalMusicQuiz");
-            MediaSource mediaSource = new ExtractorMediaSource(mediaUri, new DefaultDataSourceFactory(
-                    this, userAgent), new DefaultExtractorsFactory(), null, null);
-            mExoPlayer.prepare(mediaSource);
-            mExoPlayer.setPlayWhenReady(true);
         }
+        quizPlayer.play(sample, nextSample);
     }
 
 
     /**
-     * Release ExoPlayer.
+     * Detach from ExoPlayer. The player itself is kept across configuration changes, and is
+     * only released when the game is left.
      */
     private void releasePlayer() {
-        mNotificationManager.cancelAll();
-        mExoPlayer.stop();
-        mExoPlayer.release();
-        mExoPlayer = null;
+        mStatePublisher.cancel();
+        if (mExoPlayer != null) {
+            mExoPlayer.removeListener(this);
+            mPlayerView.setPlayer(null);
+            mExoPlayer = null;
+        }
+        if (!isChangingConfigurations()) {
+            QuizPlayer.getInstance(this).release();
+        }
     }
 
 
@@ -301,33 +634,22 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
         }
 
         // Get the ID of the sample that the user selected.
-        int userAnswerSampleID = mQuestionSampleIDs.get(userAnswerIndex);
-
-        // If the user is correct, increase there score and update high score.
-        if (QuizUtils.userCorrect(mAnswerSampleID, userAnswerSampleID)) {
-            mCurrentScore++;
-            QuizUtils.setCurrentScore(this, mCurrentScore);
-            if (mCurrentScore > mHighScore) {
-                mHighScore = mCurrentScore;
-                QuizUtils.setHighScore(this, mHighScore);
-            }
+        int userAnswerSampleID = mGame.getQuestionSampleIDs()[userAnswerIndex];
+
+        // Add the answer to the history, which writes it in the background.
+        long now = System.currentTimeMillis();
+        AnswerHistory.getInstance(this).record(mGame.getAnswerSampleID(), userAnswerSampleID,
+                (int) (SystemClock.uptimeMillis() - mQuestionShownAt), now);
+
+        // If the user is correct, increase there score and update high score. The scores are
+        // kept in memory and written when the activity is paused or the game ends. Either way
+        // the answer is rescheduled for review.
+        if (mGame.submitAnswer(userAnswerSampleID, now)) {
+            ScoreStore.getInstance(this).setScores(mGame.getCurrentScore(), mGame.getHighScore());
         }
 
-        // Remove the answer sample from the list of all samples, so it doesn't get asked again.
-        mRemainingSampleIDs.remove(Integer.valueOf(mAnswerSampleID));
-
         // Wait some time so the user can see the correct answer, then go to the next question.
-        final Handler handler = new Handler();
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                mExoPlayer.stop();
-                Intent nextQuestionIntent = new Intent(QuizActivity.this, QuizActivity.class);
-                nextQuestionIntent.putExtra(REMAINING_SONGS_KEY, mRemainingSampleIDs);
-                finish();
-                startActivity(nextQuestionIntent);
-            }
-        }, CORRECT_ANSWER_DELAY_MILLIS);
+        mHandler.postDelayed(mNextQuestionRunnable, CORRECT_ANSWER_DELAY_MILLIS);
     }
 
     /**
@@ -335,13 +657,17 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
      * show the correct answer.
      */
     private void showCorrectAnswer() {
-        mPlayerView.setDefaultArtwork(Sample.getComposerArtBySampleID(this, mAnswerSampleID));
-        for (int i = 0; i < mQuestionSampleIDs.size(); i++) {
-            int buttonSampleID = mQuestionSampleIDs.get(i);
+        int answerSampleID = mGame.getAnswerSampleID();
+        int[] questionSampleIDs = mGame.getQuestionSampleIDs();
+        mPlayerView.setDefaultArtwork(ArtworkCache.getInstance(this).getComposerArt(
+                mCatalog.getSample(answerSampleID), mPlayerView.getWidth(),
+                mPlayerView.getHeight()));
+        for (int i = 0; i < questionSampleIDs.length; i++) {
+            int buttonSampleID = questionSampleIDs[i];
 
             mButtons[i].setEnabled(false);
 
-            if (buttonSampleID == mAnswerSampleID) {
+            if (buttonSampleID == answerSampleID) {
                 mButtons[i].getBackground().setColorFilter(ContextCompat.getColor
                                 (this, android.R.color.holo_green_light),
                         PorterDuff.Mode.MULTIPLY);
@@ -355,6 +681,64 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
         }
     }
 
+    /**
+     * @return The time it took to show the last question, from the previous one being done
+     * until its first frame was drawn, in milliseconds, or -1 if no question was shown yet.
+     */
+    long getLastTransitionMillis() {
+        return mLastTransitionMillis;
+    }
+
+    /**
+     * @return How long each stage of the startup took, in milliseconds, in the order they
+     * finished. Stages that haven't finished yet are left out.
+     */
+    LinkedHashMap<String, Long> getStartupMillis() {
+        return mStartup.getStageMillis();
+    }
+
+
+    /**
+     * Writes the scores, the answer history and the review schedule to storage whenever the
+     * activity goes to the background, along with the trace if tracing is enabled.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        dumpTrace();
+
+        // Until the game is set up, nothing has changed, and the stores may still be loading.
+        if (mGame == null) {
+            return;
+        }
+        ScoreStore.getInstance(this).flush();
+        AnswerHistory.getInstance(this).flush();
+        ReviewScheduler.getInstance(this).flush();
+    }
+
+
+    /**
+     * Writes the spans traced so far to the files dir in the background, if tracing is enabled.
+     * Pull the file from a few runs and aggregate it with {@link SpanStats}.
+     */
+    private void dumpTrace() {
+        final Tracer tracer = Tracer.getInstance();
+        if (tracer == null) {
+            return;
+        }
+        final File traceFile = new File(getFilesDir(), TRACE_FILE);
+        sStartupExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tracer.dump(traceFile);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
 
     /**
      * Release the player when the activity is destroyed.
@@ -362,6 +746,9 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mStartup.cancel();
+        mHandler.removeCallbacks(mNextQuestionRunnable);
+        QuestionPrefetcher.getInstance().cancel();
         releasePlayer();
         mMediaSession.setActive(false);
     }
@@ -383,7 +770,7 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
 
     /**
      * Method that is called when the ExoPlayer state changes. Used to update the MediaSession
-     * PlayBackState to keep in sync, and post the media notification.
+     * PlayBackState to keep in sync, and post the media notification, if anything changed.
      * @param playWhenReady true if ExoPlayer is playing, false if it's paused.
      * @param playbackState int describing the state of ExoPlayer. Can be STATE_READY, STATE_IDLE,
      *                      STATE_BUFFERING, or STATE_ENDED.
@@ -397,8 +784,7 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
             mStateBuilder.setState(PlaybackStateCompat.STATE_PAUSED,
                     mExoPlayer.getCurrentPosition(), 1f);
         }
-        mMediaSession.setPlaybackState(mStateBuilder.build());
-        showNotification(mStateBuilder.build());
+        mStatePublisher.publish(mStateBuilder.build());
     }
 
     @Override
@@ -410,22 +796,27 @@ public class QuizActivity extends AppCompatActivity implements View.OnClickListe
     }
 
     /**
-     * Media Session Callbacks, where all external clients control the player.
+     * Media Session Callbacks, where all external clients control the player. The player is
+     * only there once the startup has got to it.
      */
     private class MySessionCallback extends MediaSessionCompat.Callback {
         @Override
         public void onPlay() {
-            mExoPlayer.setPlayWhenReady(true);
+            if (mExoPlayer != null) {
+                mExoPlayer.setPlayWhenReady(true);
+            }
         }
 
         @Override
         public void onPause() {
-            mExoPlayer.setPlayWhenReady(false);
+            if (mExoPlayer != null) {
+                mExoPlayer.setPlayWhenReady(false);
+            }
         }
 
         @Override
         public void onSkipToPrevious() {
-            mExoPlayer.seekTo(0);
+            QuizPlayer.getInstance(QuizActivity.this).restart();
         }
     }
 
@@ -0,0 +1,203 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.Random;
+
+/**
+ * The state of a game in progress: the samples that haven't been asked yet, the current
+ * question and its answer, and the scores. A game moves from question to question through
+ * {@link #nextQuestion()} and {@link #submitAnswer(int, long)}, so a single QuizActivity can run
+ * the whole game and keep the state across configuration changes.
+ *
+ * The answer to a question is taken out of the remaining samples as soon as the question is
+ * asked, so the next question can be picked ahead of time with {@link #peekNextQuestion()}.
+ * Answers are chosen by a {@link ReviewScheduler}, which is told each result, so the samples
+ * the user gets wrong come back sooner in later games. Creating a game starts the scheduler's
+ * session with the remaining samples, so it only offers those.
+ * The distractors get harder as the user answers more questions in a row correctly; since the
+ * next question is picked ahead of time, its difficulty follows the streak up to the current
+ * question.
+ */
+class QuizGame {
+
+    // The number of correct answers in a row after which the distractors are the hardest.
+    private static final int STREAK_FOR_HARDEST = 5;
+
+    private final SamplePool mRemainingSamples;
+    private final ReviewScheduler mScheduler;
+    private final DistractorIndex mDistractorIndex;
+    private final DistractorStrategy mDistractorStrategy;
+    private final Random mRandom;
+    private Question mQuestion;
+    private Question mNextQuestion;
+    private boolean mAnswered;
+    private int mCurrentScore;
+    private int mHighScore;
+    private int mCorrectStreak;
+
+    /**
+     * A question: the possible answers and the correct one.
+     */
+    static class Question {
+        final int[] sampleIDs;
+        final int answerSampleID;
+
+        Question(int[] sampleIDs, int answerSampleID) {
+            this.sampleIDs = sampleIDs;
+            this.answerSampleID = answerSampleID;
+        }
+    }
+
+    /**
+     * Creates a game.
+     * @param remainingSampleIDs The IDs of all the samples that haven't been asked yet.
+     * @param currentScore The score so far.
+     * @param highScore The user's high score.
+     * @param scheduler The schedule to choose the answers by.
+     * @param distractorIndex The index of the catalog to pick the distractors from.
+     * @param distractorStrategy The strategy to pick the distractors with.
+     * @param random The random number generator to pick the questions with. Seed it to replay
+     *               the same game.
+     */
+    QuizGame(int[] remainingSampleIDs, int currentScore, int highScore,
+             ReviewScheduler scheduler, DistractorIndex distractorIndex,
+             DistractorStrategy distractorStrategy, Random random) {
+        mRemainingSamples = new SamplePool(remainingSampleIDs);
+        mCurrentScore = currentScore;
+        mHighScore = highScore;
+        mScheduler = scheduler;
+        mScheduler.startSession(remainingSampleIDs);
+        mDistractorIndex = distractorIndex;
+        mDistractorStrategy = distractorStrategy;
+        mRandom = random;
+    }
+
+    /**
+     * Restores the question a game was at.
+     * @param questionSampleIDs The IDs of the possible answers to the current question.
+     * @param answerSampleID The ID of the correct answer to the current question.
+     * @param answered Whether the current question was already answered.
+     * @param correctStreak The number of correct answers in a row so far.
+     */
+    void restoreQuestion(int[] questionSampleIDs, int answerSampleID, boolean answered,
+                         int correctStreak) {
+        mQuestion = new Question(questionSampleIDs, answerSampleID);
+        mNextQuestion = null;
+        mAnswered = answered;
+        mCorrectStreak = correctStreak;
+        mScheduler.park(answerSampleID);
+    }
+
+    /**
+     * Moves on to the next question, which is the one picked by {@link #peekNextQuestion()} if
+     * it was called.
+     * @return true if there is a question, false if the game is over.
+     */
+    boolean nextQuestion() {
+        Question question = peekNextQuestion();
+        if (question == null) {
+            return false;
+        }
+        mQuestion = question;
+        mNextQuestion = null;
+        mAnswered = false;
+        mRemainingSamples.remove(question.answerSampleID);
+        mScheduler.park(question.answerSampleID);
+        return true;
+    }
+
+    /**
+     * Picks the next question ahead of time, without moving on to it.
+     * @return The next question, or null if the game ends after the current question.
+     */
+    Question peekNextQuestion() {
+        if (mNextQuestion == null && mRemainingSamples.size() >= 2) {
+            int answerSampleID = QuizUtils.getCorrectAnswerID(mRemainingSamples, mScheduler,
+                    mRandom);
+            int[] sampleIDs = QuizUtils.generateQuestion(answerSampleID, mDistractorIndex,
+                    mDistractorStrategy, getDifficulty(), mRandom);
+            mNextQuestion = new Question(sampleIDs, answerSampleID);
+        }
+        return mNextQuestion;
+    }
+
+    /**
+     * Answers the current question, updating the scores and rescheduling the answer.
+     * @param userAnswerSampleID The ID of the sample the user picked.
+     * @param now The current time, in milliseconds since the epoch.
+     * @return true if the user is correct, false otherwise.
+     */
+    boolean submitAnswer(int userAnswerSampleID, long now) {
+        mAnswered = true;
+        boolean correct = QuizUtils.userCorrect(mQuestion.answerSampleID, userAnswerSampleID);
+        mScheduler.recordResult(mQuestion.answerSampleID, correct, now);
+        if (correct) {
+            mCurrentScore++;
+            mHighScore = Math.max(mHighScore, mCurrentScore);
+            mCorrectStreak++;
+        } else {
+            mCorrectStreak = 0;
+        }
+        return correct;
+    }
+
+    /**
+     * @return How hard the distractors are, from 0 (easiest) to 1 (hardest).
+     */
+    float getDifficulty() {
+        return Math.min(1f, mCorrectStreak / (float) STREAK_FOR_HARDEST);
+    }
+
+    // Getters
+
+    /**
+     * @return The IDs of the samples that haven't been asked yet, not counting the current
+     * question's answer.
+     */
+    int[] getRemainingSampleIDs() {
+        return mRemainingSamples.toArray();
+    }
+
+    Question getQuestion() {
+        return mQuestion;
+    }
+
+    int[] getQuestionSampleIDs() {
+        return mQuestion.sampleIDs;
+    }
+
+    int getAnswerSampleID() {
+        return mQuestion.answerSampleID;
+    }
+
+    boolean isAnswered() {
+        return mAnswered;
+    }
+
+    int getCurrentScore() {
+        return mCurrentScore;
+    }
+
+    int getHighScore() {
+        return mHighScore;
+    }
+
+    int getCorrectStreak() {
+        return mCorrectStreak;
+    }
+}
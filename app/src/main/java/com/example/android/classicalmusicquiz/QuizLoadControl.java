@@ -0,0 +1,137 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+/**
+ * LoadControl sized for quiz excerpts instead of long-form streaming. The default one buffers up
+ * to 30 seconds ahead, waits for 2.5 seconds of audio before it starts playing, and lets the
+ * audio buffer grow to several megabytes. Excerpts are about 30 seconds long and read from
+ * local assets or the media cache, so playback can start as soon as half a second is buffered,
+ * and the buffer is capped at a size that holds a whole excerpt at the highest MP3 bitrate.
+ *
+ * Like the default, loading carries on until the buffer holds the maximum duration and picks up
+ * again once it drops below the minimum one, but it also stops whenever the buffer reaches its
+ * byte cap, whatever the duration buffered.
+ */
+class QuizLoadControl implements LoadControl {
+
+    static final int QUIZ_MIN_BUFFER_MS = 5000;
+    static final int QUIZ_MAX_BUFFER_MS = 30000;
+    static final int QUIZ_BUFFER_FOR_PLAYBACK_MS = 500;
+    static final int QUIZ_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS = 1500;
+
+    // 30 seconds of 320 kbps MP3 is 1.2 MB.
+    static final int QUIZ_TARGET_BUFFER_BYTES = 20 * C.DEFAULT_BUFFER_SEGMENT_SIZE;
+
+    private final DefaultAllocator mAllocator;
+    private final long mMinBufferUs;
+    private final long mMaxBufferUs;
+    private final long mBufferForPlaybackUs;
+    private final long mBufferForPlaybackAfterRebufferUs;
+    private final int mTargetBufferBytes;
+    private boolean mLoading;
+
+    /**
+     * Creates a load control with the quiz profile.
+     */
+    QuizLoadControl() {
+        this(new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE), QUIZ_MIN_BUFFER_MS,
+                QUIZ_MAX_BUFFER_MS, QUIZ_BUFFER_FOR_PLAYBACK_MS,
+                QUIZ_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS, QUIZ_TARGET_BUFFER_BYTES);
+    }
+
+    /**
+     * Creates a load control.
+     * @param allocator The allocator the buffer is allocated from.
+     * @param minBufferMs The buffered duration below which loading starts again.
+     * @param maxBufferMs The buffered duration at which loading stops.
+     * @param bufferForPlaybackMs The buffered duration needed to start playing.
+     * @param bufferForPlaybackAfterRebufferMs The buffered duration needed to resume playing
+     * after the buffer ran out.
+     * @param targetBufferBytes The size of the buffer at which loading stops.
+     */
+    QuizLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs,
+                    int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs,
+                    int targetBufferBytes) {
+        mAllocator = allocator;
+        mMinBufferUs = minBufferMs * 1000L;
+        mMaxBufferUs = maxBufferMs * 1000L;
+        mBufferForPlaybackUs = bufferForPlaybackMs * 1000L;
+        mBufferForPlaybackAfterRebufferUs = bufferForPlaybackAfterRebufferMs * 1000L;
+        mTargetBufferBytes = targetBufferBytes;
+    }
+
+    @Override
+    public void onPrepared() {
+        reset(false);
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+                                 TrackSelectionArray trackSelections) {
+        // The cap is the same whatever the tracks, the quiz only ever plays audio.
+        mAllocator.setTargetBufferSize(mTargetBufferBytes);
+    }
+
+    @Override
+    public void onStopped() {
+        reset(true);
+    }
+
+    @Override
+    public void onReleased() {
+        reset(true);
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return mAllocator;
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, boolean rebuffering) {
+        long neededUs = rebuffering ? mBufferForPlaybackAfterRebufferUs : mBufferForPlaybackUs;
+        return neededUs <= 0 || bufferedDurationUs >= neededUs;
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long bufferedDurationUs) {
+        if (mAllocator.getTotalBytesAllocated() >= mTargetBufferBytes) {
+            mLoading = false;
+        } else if (bufferedDurationUs < mMinBufferUs) {
+            mLoading = true;
+        } else if (bufferedDurationUs >= mMaxBufferUs) {
+            mLoading = false;
+        }
+        return mLoading;
+    }
+
+    private void reset(boolean resetAllocator) {
+        mLoading = false;
+        if (resetAllocator) {
+            mAllocator.reset();
+        }
+    }
+}
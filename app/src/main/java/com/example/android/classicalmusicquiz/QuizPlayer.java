@@ -0,0 +1,342 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.source.ClippingMediaSource;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.DataSource;
+
+import java.util.ArrayList;
+
+/**
+ * Application-scoped owner of the single ExoPlayer used for the whole game, so that the player,
+ * its renderers and its track selector are set up once instead of once per question.
+ *
+ * Each question is prepared as a playlist of its own sample followed by the next question's
+ * sample. When the next question asks for that sample, the player just moves on to it, without
+ * preparing anything, and it starts from already buffered audio. A ConcatenatingMediaSource
+ * can't be added to once it is prepared, so nothing is queued up behind the sample moved on to,
+ * and the question after it prepares a new playlist. Only every other question is pre-buffered
+ * this way; the others start from audio pre-decoded by the {@link QuestionPrefetcher}.
+ *
+ * Samples with a clip range are played from a {@link ClippingMediaSource}, which seeks straight
+ * to the start of the excerpt and stops loading at its end, so only the excerpt is buffered.
+ *
+ * If the start of a sample was decoded ahead of time by the {@link AudioPredecoder}, the sample
+ * is played as two windows: the decoded PCM audio, then the rest of the excerpt from where the
+ * PCM audio ends.
+ */
+class QuizPlayer implements ExoPlayer.EventListener {
+
+    private static final String TAG = QuizPlayer.class.getSimpleName();
+
+    private static QuizPlayer sInstance;
+
+    private final Context mContext;
+    private final DataSource.Factory mDataSourceFactory;
+    private final ExtractorsFactory mExtractorsFactory = new DefaultExtractorsFactory();
+    private final AudioPredecoder mPredecoder;
+    private final ArrayList<PcmBufferPool.Entry> mPinnedAudio = new ArrayList<>();
+    private SimpleExoPlayer mExoPlayer;
+    private Sample[] mPlaylist;
+
+    // The first window of each sample in the playlist, followed by the number of windows.
+    private int[] mFirstWindows;
+    private int mCurrentSample;
+    private long mStartRequestedAt = -1;
+    private long mFirstAudioSpanStart;
+    private long mLastStartupMs = -1;
+    private long mTotalStartupMs;
+    private int mStartCount;
+
+    private QuizPlayer(Context context) {
+        mContext = context.getApplicationContext();
+        mDataSourceFactory = MediaCache.buildDataSourceFactory(mContext);
+        mPredecoder = AudioPredecoder.getInstance(mContext);
+    }
+
+    /**
+     * Gets the player owner.
+     * @param context The application context.
+     * @return The player owner.
+     */
+    static synchronized QuizPlayer getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new QuizPlayer(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Gets the player, creating it if it doesn't exist yet or has been released.
+     * @return The player.
+     */
+    SimpleExoPlayer getPlayer() {
+        if (mExoPlayer == null) {
+            long start = Tracer.begin();
+            mExoPlayer = ExoPlayerFactory.newSimpleInstance(mContext, new DefaultTrackSelector(),
+                    buildLoadControl(mContext));
+            mExoPlayer.addListener(this);
+            Tracer.end("player.create", start);
+        }
+        return mExoPlayer;
+    }
+
+    /**
+     * Builds the load control selected by the quiz_load_control resource.
+     * @param context The application context.
+     * @return The quiz-specific load control, or the default one.
+     */
+    static LoadControl buildLoadControl(Context context) {
+        return context.getResources().getBoolean(R.bool.quiz_load_control)
+                ? new QuizLoadControl() : new DefaultLoadControl();
+    }
+
+    /**
+     * Starts playing a sample, or its excerpt if it is clipped. If it was queued up as the next
+     * sample by the previous call, the player moves on to it, otherwise a new playlist is
+     * prepared. If it is already the current sample, as when the activity is recreated, it
+     * carries on where it is.
+     * @param sample The sample to play.
+     * @param nextSample The sample that is likely to be played next, or null.
+     */
+    void play(Sample sample, Sample nextSample) {
+        SimpleExoPlayer player = getPlayer();
+        if (mPlaylist != null && isSameMedia(sample, mPlaylist[mCurrentSample])) {
+            return;
+        }
+        mStartRequestedAt = SystemClock.elapsedRealtime();
+        mFirstAudioSpanStart = Tracer.begin();
+
+        if (isQueued(sample)) {
+            mCurrentSample++;
+            player.seekTo(mFirstWindows[mCurrentSample], 0);
+        } else {
+            unpinAudio();
+            mPlaylist = nextSample != null
+                    ? new Sample[]{sample, nextSample} : new Sample[]{sample};
+            mFirstWindows = new int[mPlaylist.length + 1];
+            mCurrentSample = 0;
+            MediaSource[] sources = new MediaSource[mPlaylist.length];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = buildMediaSource(mPlaylist[i], i);
+            }
+            player.prepare(sources.length == 1
+                    ? sources[0] : new ConcatenatingMediaSource(sources));
+        }
+        player.setPlayWhenReady(true);
+    }
+
+    /**
+     * Tells whether a sample is queued up after the current one. Its source was built when it
+     * was queued, so audio decoded for it from then on would not be played.
+     * @param sample The sample, or null.
+     * @return true if the player moves on to the sample when it is played next.
+     */
+    boolean isQueued(Sample sample) {
+        return sample != null && mPlaylist != null && mCurrentSample + 1 < mPlaylist.length
+                && isSameMedia(sample, mPlaylist[mCurrentSample + 1]);
+    }
+
+    /**
+     * Goes back to the start of the current sample, which is the start of its pre-decoded
+     * audio if it has any rather than of the window being played.
+     */
+    void restart() {
+        if (mExoPlayer != null && mPlaylist != null) {
+            mExoPlayer.seekTo(mFirstWindows[mCurrentSample], 0);
+        }
+    }
+
+    /**
+     * Builds the source of a sample, clipped to its excerpt if it has one, and starting from
+     * its pre-decoded audio if there is any, and records its windows.
+     */
+    private MediaSource buildMediaSource(Sample sample, int index) {
+        long startUs = sample.getClipStartMs() * 1000;
+        long endUs = sample.getClipEndMs() == Sample.END_OF_SAMPLE
+                ? C.TIME_END_OF_SOURCE : sample.getClipEndMs() * 1000;
+
+        // Pin the pre-decoded audio, so it is still there when the player gets to it.
+        PcmBufferPool.Entry audio = mPredecoder != null
+                ? mPredecoder.getPool().acquire(PcmBufferPool.keyOf(sample)) : null;
+        MediaSource decodedSource = null;
+        if (audio != null) {
+            mPinnedAudio.add(audio);
+            decodedSource = new ExtractorMediaSource(PcmDataSource.buildUri(audio.key),
+                    new PcmDataSourceFactory(mPredecoder.getPool()), mExtractorsFactory,
+                    null, null);
+            startUs += audio.getDurationUs();
+            if (endUs != C.TIME_END_OF_SOURCE && startUs >= endUs) {
+                // The whole excerpt was decoded.
+                mFirstWindows[index + 1] = mFirstWindows[index] + 1;
+                return decodedSource;
+            }
+        }
+
+        MediaSource source = new ExtractorMediaSource(Uri.parse(sample.getUri()),
+                mDataSourceFactory, mExtractorsFactory, null, null);
+        if (startUs > 0 || endUs != C.TIME_END_OF_SOURCE) {
+            source = new ClippingMediaSource(source, startUs, endUs);
+        }
+        if (decodedSource == null) {
+            mFirstWindows[index + 1] = mFirstWindows[index] + 1;
+            return source;
+        }
+        mFirstWindows[index + 1] = mFirstWindows[index] + 2;
+        return new ConcatenatingMediaSource(decodedSource, source);
+    }
+
+    /**
+     * Lets the pool evict the pre-decoded audio of the previous playlist.
+     */
+    private void unpinAudio() {
+        for (PcmBufferPool.Entry audio : mPinnedAudio) {
+            mPredecoder.getPool().release(audio);
+        }
+        mPinnedAudio.clear();
+    }
+
+    /**
+     * @return true if both samples play the same excerpt of the same audio.
+     */
+    private static boolean isSameMedia(Sample sample, Sample other) {
+        return sample.getUri().equals(other.getUri())
+                && sample.getClipStartMs() == other.getClipStartMs()
+                && sample.getClipEndMs() == other.getClipEndMs();
+    }
+
+    /**
+     * Releases the player, for when the game is left.
+     */
+    void release() {
+        if (mExoPlayer != null) {
+            mExoPlayer.removeListener(this);
+            mExoPlayer.stop();
+            mExoPlayer.release();
+            mExoPlayer = null;
+        }
+        mPlaylist = null;
+        mStartRequestedAt = -1;
+        unpinAudio();
+    }
+
+    /**
+     * @return The time from the last call to {@link #play(Sample, Sample)} until the player was
+     * ready to play, in milliseconds, or -1 if nothing was played yet.
+     */
+    long getLastStartupMs() {
+        return mLastStartupMs;
+    }
+
+    /**
+     * @return The average time from {@link #play(Sample, Sample)} until the player was ready to
+     * play, in milliseconds, or -1 if nothing was played yet.
+     */
+    long getAverageStartupMs() {
+        return mStartCount > 0 ? mTotalStartupMs / mStartCount : -1;
+    }
+
+    // ExoPlayer Event Listeners
+
+    @Override
+    public void onTimelineChanged(Timeline timeline, Object manifest) {
+    }
+
+    @Override
+    public void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
+    }
+
+    @Override
+    public void onLoadingChanged(boolean isLoading) {
+    }
+
+    /**
+     * Records how long it took to start playing once the player is ready.
+     */
+    @Override
+    public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        if (playWhenReady && playbackState == ExoPlayer.STATE_READY && mStartRequestedAt >= 0) {
+            mLastStartupMs = SystemClock.elapsedRealtime() - mStartRequestedAt;
+            mTotalStartupMs += mLastStartupMs;
+            mStartCount++;
+            mStartRequestedAt = -1;
+            Log.d(TAG, "Playback started in " + mLastStartupMs + " ms");
+
+            // Playback starts as soon as the player is ready, so this is the first audio.
+            Tracer.end("player.firstAudio", mFirstAudioSpanStart);
+            mFirstAudioSpanStart = 0;
+        }
+    }
+
+    @Override
+    public void onPlayerError(ExoPlaybackException error) {
+        mPlaylist = null;
+    }
+
+    /**
+     * Keeps the player from running on into the next question's sample when the current one
+     * ends: it is paused back at the start of the current sample instead.
+     */
+    @Override
+    public void onPositionDiscontinuity() {
+        if (mExoPlayer == null || mPlaylist == null) {
+            return;
+        }
+        int window = mExoPlayer.getCurrentWindowIndex();
+        if (window < mFirstWindows[mCurrentSample] || window >= mFirstWindows[mCurrentSample + 1]) {
+            mExoPlayer.setPlayWhenReady(false);
+            mExoPlayer.seekTo(mFirstWindows[mCurrentSample], 0);
+        }
+    }
+
+    /**
+     * Creates the data sources that read pre-decoded audio.
+     */
+    private static class PcmDataSourceFactory implements DataSource.Factory {
+        private final PcmBufferPool mPool;
+
+        PcmDataSourceFactory(PcmBufferPool pool) {
+            mPool = pool;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new PcmDataSource(mPool);
+        }
+    }
+}
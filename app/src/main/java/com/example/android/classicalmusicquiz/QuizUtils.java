@@ -18,40 +18,36 @@ package com.example.android.classicalmusicquiz;
 
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Random;
 
 class QuizUtils {
 
-    private static final String CURRENT_SCORE_KEY = "current_score";
-    private static final String HIGH_SCORE_KEY = "high_score";
     private static final String GAME_FINISHED = "game_finished";
+    private static final String GAME_SAMPLE_COUNT = "game_sample_count";
     private static final int NUM_ANSWERS = 4;
 
     /**
-     * Generates an ArrayList of Integers that contains IDs to NUM_ANSWERS samples. These samples
-     * constitute the possible answers to the question.
-     * @param remainingSampleIDs The ArrayList of Integers which contains the IDs of all
-     *                           samples that haven't been used yet.
-     * @return The ArrayList of possible answers.
+     * Generates an array that contains IDs to NUM_ANSWERS samples. These samples constitute the
+     * possible answers to the question: the correct answer, at a random place, and distractors
+     * picked by the strategy. Fewer answers are generated if the catalog doesn't have enough
+     * composers.
+     * @param answerSampleID The ID of the correct answer.
+     * @param index The index of the catalog to pick the distractors from.
+     * @param strategy The strategy to pick the distractors with.
+     * @param difficulty How hard the distractors should be, from 0 (easiest) to 1 (hardest).
+     * @param random The random number generator to pick the samples with.
+     * @return The array of possible answers.
      */
-    static ArrayList<Integer> generateQuestion(ArrayList<Integer> remainingSampleIDs){
-
-        // Shuffle the remaining sample ID's.
-        Collections.shuffle(remainingSampleIDs);
-
-        ArrayList<Integer> answers = new ArrayList<>();
-
-        // Pick the first four random Sample ID's.
-        for(int i = 0; i < NUM_ANSWERS; i++){
-            if(i < remainingSampleIDs.size()) {
-                answers.add(remainingSampleIDs.get(i));
-            }
-        }
-
+    static int[] generateQuestion(int answerSampleID, DistractorIndex index,
+                                  DistractorStrategy strategy, float difficulty, Random random){
+        int[] distractors = strategy.pickDistractors(index, answerSampleID, NUM_ANSWERS - 1,
+                difficulty, random);
+        int[] answers = Arrays.copyOf(distractors, distractors.length + 1);
+        int answerIndex = random.nextInt(answers.length);
+        answers[answers.length - 1] = answers[answerIndex];
+        answers[answerIndex] = answerSampleID;
         return answers;
     }
 
@@ -61,22 +57,17 @@ class QuizUtils {
      * @return The user's high score.
      */
     static int getHighScore(Context context){
-        SharedPreferences mPreferences = context.getSharedPreferences(
-                context.getString(R.string.preference_file_key), Context.MODE_PRIVATE);
-        return mPreferences.getInt(HIGH_SCORE_KEY, 0);
+        return ScoreStore.getInstance(context).getHighScore();
     }
 
     /**
-     * Helper method for setting the user's high score.
+     * Helper method for setting the user's high score. It is written to storage by the next
+     * {@link ScoreStore#flush()}.
      * @param context The application context.
      * @param highScore The user's high score.
      */
     static void setHighScore(Context context, int highScore){
-        SharedPreferences mPreferences = context.getSharedPreferences(
-                context.getString(R.string.preference_file_key), Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = mPreferences.edit();
-        editor.putInt(HIGH_SCORE_KEY, highScore);
-        editor.apply();
+        ScoreStore.getInstance(context).setHighScore(highScore);
     }
 
     /**
@@ -85,33 +76,34 @@ class QuizUtils {
      * @return The user's current score.
      */
     static int getCurrentScore(Context context){
-        SharedPreferences mPreferences = context.getSharedPreferences(
-                context.getString(R.string.preference_file_key), Context.MODE_PRIVATE);
-        return mPreferences.getInt(CURRENT_SCORE_KEY, 0);
+        return ScoreStore.getInstance(context).getCurrentScore();
     }
 
     /**
-     * Helper method for setting the user's current score.
+     * Helper method for setting the user's current score. It is written to storage by the next
+     * {@link ScoreStore#flush()}.
      * @param context The application context.
      * @param currentScore The user's current score.
      */
     static void setCurrentScore(Context context, int currentScore){
-        SharedPreferences mPreferences = context.getSharedPreferences(
-                context.getString(R.string.preference_file_key), Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = mPreferences.edit();
-        editor.putInt(CURRENT_SCORE_KEY, currentScore);
-        editor.apply();
+        ScoreStore.getInstance(context).setCurrentScore(currentScore);
     }
 
     /**
-     * Picks one of the possible answers to be the correct one at random.
-     * @param answers The possible answers to the question.
+     * Picks one of the remaining samples to be the correct answer to the next question: the one
+     * the scheduler says is most due for review. The scheduler only offers the samples of the
+     * game's session; if it has none of the remaining samples, as in a game played with sample
+     * packs, one is picked at random.
+     * @param remainingSamples The pool of all samples that haven't been used yet.
+     * @param scheduler The schedule of the samples' reviews.
+     * @param random The random number generator to pick the answer with.
      * @return The correct answer.
      */
-    static int getCorrectAnswerID(ArrayList<Integer> answers){
-        Random r = new Random();
-        int answerIndex = r.nextInt(answers.size());
-        return answers.get(answerIndex);
+    static int getCorrectAnswerID(SamplePool remainingSamples, ReviewScheduler scheduler,
+                                  Random random){
+        int sampleID = scheduler.peekDue();
+        return sampleID >= 0 && remainingSamples.contains(sampleID) ? sampleID
+                : remainingSamples.pick(random);
     }
 
     /**
@@ -126,12 +118,17 @@ class QuizUtils {
 
 
     /**
-     * Helper method for ending the game.
+     * Helper method for ending the game. The final scores are written to storage.
      * @param context The application method.
+     * @param sampleCount The number of samples the game was played with.
      */
-    static void endGame(Context context){
+    static void endGame(Context context, int sampleCount){
+        ScoreStore.getInstance(context).flush();
+        AnswerHistory.getInstance(context).flush();
+        ReviewScheduler.getInstance(context).flush();
         Intent endGame = new Intent(context, MainActivity.class);
         endGame.putExtra(GAME_FINISHED, true);
+        endGame.putExtra(GAME_SAMPLE_COUNT, sampleCount);
         context.startActivity(endGame);
     }
 }
@@ -0,0 +1,47 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks distractors by random composers, whatever the difficulty.
+ */
+class RandomDistractorStrategy implements DistractorStrategy {
+
+    @Override
+    public int[] pickDistractors(DistractorIndex index, int answerSampleID, int count,
+                                 float difficulty, Random random) {
+        // The answer's composer is left out along with the ones already picked.
+        int[] composers = new int[count + 1];
+        composers[0] = index.getComposer(answerSampleID);
+        int picked = composers[0] >= 0 ? 1 : 0;
+
+        int[] distractors = new int[count];
+        int distractorCount = 0;
+        while (distractorCount < count) {
+            int composer = index.pickComposer(null, -1, composers, picked, random);
+            if (composer < 0) {
+                break;
+            }
+            composers[picked++] = composer;
+            distractors[distractorCount++] = index.pickSample(composer, random);
+        }
+        return Arrays.copyOf(distractors, distractorCount);
+    }
+}
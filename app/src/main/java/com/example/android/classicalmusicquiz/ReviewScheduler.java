@@ -0,0 +1,471 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Spaced-repetition schedule of the samples, used to choose the answer to each question. Every
+ * sample has a due time and an ease factor that are updated after each answer, in the style of
+ * SM-2: a correct answer pushes the sample's next review out by a growing interval, a wrong one
+ * brings it back soon and makes the sample count as harder.
+ *
+ * The samples are kept in a min-heap ordered by due time, then by ease, so the most overdue,
+ * hardest sample is found in constant time and rescheduled in O(log n). Only the samples the
+ * current game can still ask are in the heap: the others, and the samples that have been asked
+ * since, are parked outside it until the next game starts. When the catalog changes while the
+ * app is running, the schedule follows it (see {@link #onCatalogChanged}).
+ */
+class ReviewScheduler {
+
+    private static final int MAGIC = 0x52565343;
+    private static final int VERSION = 1;
+
+    static final float INITIAL_EASE = 2.5f;
+    static final float MIN_EASE = 1.3f;
+    static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    static final long FIRST_INTERVAL = DAY_MILLIS;
+    static final long SECOND_INTERVAL = 6 * DAY_MILLIS;
+    static final long RELEARN_INTERVAL = 10 * 60 * 1000L;
+
+    // Samples that were never asked are due right away, in a random order.
+    private static final int NEW_SAMPLE_SPREAD = 1 << 20;
+
+    // SM-2 grades for a correct and a wrong answer, from 0 to 5.
+    private static final int CORRECT_GRADE = 5;
+    private static final int WRONG_GRADE = 1;
+
+    private static final String SCHEDULE_FILE = "review_schedule";
+
+    private static ReviewScheduler sInstance;
+
+    private final File mScheduleFile;
+    private final Executor mExecutor;
+    private final Random mRandom;
+
+    // Per sample, by position in the sorted sample IDs. Replaced when the catalog changes.
+    private int[] mSampleIDs;
+    private long[] mDue;
+    private float[] mEase;
+    private long[] mInterval;
+    private int[] mRepetitions;
+
+    // The heap holds sample positions; mHeapIndex is a sample's place in it, or -1 if parked.
+    private int[] mHeap;
+    private int[] mHeapIndex;
+    private int mHeapSize;
+
+    /**
+     * Opens the schedule, loading it from the directory if it was saved there. Samples that were
+     * added to the catalog since start out new, and samples that left it are dropped. The heap
+     * is rebuilt in linear time from the saved schedule, without going through the history.
+     * @param directory The directory the schedule is kept in.
+     * @param sampleIDs The IDs of the samples in the catalog.
+     * @param executor The executor to write the schedule on.
+     * @param random The random number generator to order the new samples with.
+     */
+    ReviewScheduler(File directory, int[] sampleIDs, Executor executor, Random random) {
+        mScheduleFile = new File(directory, SCHEDULE_FILE);
+        mExecutor = executor;
+        mRandom = random;
+        mSampleIDs = Arrays.copyOf(sampleIDs, sampleIDs.length);
+        Arrays.sort(mSampleIDs);
+        int size = mSampleIDs.length;
+        mDue = new long[size];
+        mEase = new float[size];
+        mInterval = new long[size];
+        mRepetitions = new int[size];
+        mHeap = new int[size];
+        mHeapIndex = new int[size];
+        load();
+    }
+
+    /**
+     * Gets the schedule, loading it the first time it is called.
+     * @param context The application context.
+     * @return The review scheduler.
+     */
+    static synchronized ReviewScheduler getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ReviewScheduler(context.getApplicationContext().getFilesDir(),
+                    SampleCatalog.getInstance(context).getSampleIDs(),
+                    Executors.newSingleThreadExecutor(), new Random());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Makes the schedule follow a new version of the catalog, if it has been loaded. Called when
+     * the catalog changes while the app is running.
+     * @param catalog The new catalog.
+     */
+    static synchronized void onCatalogChanged(SampleCatalog catalog) {
+        if (sInstance != null) {
+            sInstance.setSampleIDs(catalog.getSampleIDs());
+        }
+    }
+
+    /**
+     * Changes the samples that are scheduled. The samples that stay keep their schedule and stay
+     * parked if they were, the samples that are gone are dropped, and the new samples start out
+     * new and parked until the next game, as the game in progress doesn't have them.
+     * @param sampleIDs The IDs of the samples in the catalog.
+     */
+    synchronized void setSampleIDs(int[] sampleIDs) {
+        int[] newSampleIDs = Arrays.copyOf(sampleIDs, sampleIDs.length);
+        Arrays.sort(newSampleIDs);
+        if (Arrays.equals(newSampleIDs, mSampleIDs)) {
+            return;
+        }
+
+        int size = newSampleIDs.length;
+        long[] due = new long[size];
+        float[] ease = new float[size];
+        long[] interval = new long[size];
+        int[] repetitions = new int[size];
+        boolean[] known = new boolean[size];
+        boolean[] parked = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            int position = Arrays.binarySearch(mSampleIDs, newSampleIDs[i]);
+            if (position >= 0) {
+                due[i] = mDue[position];
+                ease[i] = mEase[position];
+                interval[i] = mInterval[position];
+                repetitions[i] = mRepetitions[position];
+                known[i] = true;
+                parked[i] = mHeapIndex[position] < 0;
+            } else {
+                parked[i] = true;
+            }
+        }
+
+        mSampleIDs = newSampleIDs;
+        mDue = due;
+        mEase = ease;
+        mInterval = interval;
+        mRepetitions = repetitions;
+        mHeap = new int[size];
+        mHeapIndex = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (!known[i]) {
+                resetSample(i);
+            }
+        }
+        heapify(parked);
+    }
+
+    /**
+     * Starts a game, so that only the samples it can ask are offered, and the rest are parked.
+     * A game played with sample packs, or restored part of the way through, never has to skip
+     * the samples it doesn't have. Samples that aren't scheduled, such as those in the packs,
+     * are left out.
+     * @param sampleIDs The IDs of the samples the game can ask.
+     */
+    synchronized void startSession(int[] sampleIDs) {
+        boolean[] parked = new boolean[mSampleIDs.length];
+        Arrays.fill(parked, true);
+        for (int sampleID : sampleIDs) {
+            int position = Arrays.binarySearch(mSampleIDs, sampleID);
+            if (position >= 0) {
+                parked[position] = false;
+            }
+        }
+        heapify(parked);
+    }
+
+    /**
+     * @return The ID of the sample that is most due, or -1 if all the samples are parked.
+     */
+    synchronized int peekDue() {
+        return mHeapSize > 0 ? mSampleIDs[mHeap[0]] : -1;
+    }
+
+    /**
+     * Parks a sample until the next game, so it isn't chosen again in this one.
+     * @param sampleID The sample ID.
+     */
+    synchronized void park(int sampleID) {
+        int position = Arrays.binarySearch(mSampleIDs, sampleID);
+        if (position < 0 || mHeapIndex[position] < 0) {
+            return;
+        }
+        int index = mHeapIndex[position];
+        mHeapIndex[position] = -1;
+        mHeapSize--;
+        if (index < mHeapSize) {
+            int last = mHeap[mHeapSize];
+            mHeap[index] = last;
+            mHeapIndex[last] = index;
+            siftUp(index);
+            siftDown(mHeapIndex[last]);
+        }
+    }
+
+    /**
+     * Reschedules a sample after it was the answer to a question.
+     * @param sampleID The sample ID.
+     * @param correct Whether the user answered correctly.
+     * @param now The current time, in milliseconds since the epoch.
+     */
+    synchronized void recordResult(int sampleID, boolean correct, long now) {
+        int position = Arrays.binarySearch(mSampleIDs, sampleID);
+        if (position < 0) {
+            return;
+        }
+
+        int grade = correct ? CORRECT_GRADE : WRONG_GRADE;
+        float ease = mEase[position]
+                + (0.1f - (5 - grade) * (0.08f + (5 - grade) * 0.02f));
+        mEase[position] = Math.max(MIN_EASE, ease);
+
+        if (correct) {
+            mRepetitions[position]++;
+            if (mRepetitions[position] == 1) {
+                mInterval[position] = FIRST_INTERVAL;
+            } else if (mRepetitions[position] == 2) {
+                mInterval[position] = SECOND_INTERVAL;
+            } else {
+                mInterval[position] = (long) (mInterval[position] * mEase[position]);
+            }
+        } else {
+            mRepetitions[position] = 0;
+            mInterval[position] = RELEARN_INTERVAL;
+        }
+        mDue[position] = now + mInterval[position];
+
+        int index = mHeapIndex[position];
+        if (index >= 0) {
+            siftUp(index);
+            siftDown(mHeapIndex[position]);
+        }
+    }
+
+    /**
+     * @param sampleID The sample ID.
+     * @return When the sample is due, in milliseconds since the epoch, or -1 if it is unknown.
+     */
+    synchronized long getDue(int sampleID) {
+        int position = Arrays.binarySearch(mSampleIDs, sampleID);
+        return position >= 0 ? mDue[position] : -1;
+    }
+
+    /**
+     * @param sampleID The sample ID.
+     * @return The ease factor of the sample, or 0 if it is unknown.
+     */
+    synchronized float getEase(int sampleID) {
+        int position = Arrays.binarySearch(mSampleIDs, sampleID);
+        return position >= 0 ? mEase[position] : 0;
+    }
+
+    /**
+     * Writes the schedule in the background.
+     */
+    void flush() {
+        final byte[] schedule = buildSchedule();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeSchedule(schedule);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the saved schedule, or starts a new one if there is none or it can't be read.
+     */
+    private void load() {
+        boolean[] known = new boolean[mSampleIDs.length];
+        DataInputStream in = null;
+        try {
+            if (mScheduleFile.exists()) {
+                in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(mScheduleFile)));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a review schedule: " + mScheduleFile);
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    int sampleID = in.readInt();
+                    long due = in.readLong();
+                    float ease = in.readFloat();
+                    long interval = in.readLong();
+                    int repetitions = in.readInt();
+                    int position = Arrays.binarySearch(mSampleIDs, sampleID);
+                    if (position >= 0) {
+                        mDue[position] = due;
+                        mEase[position] = ease;
+                        mInterval[position] = interval;
+                        mRepetitions[position] = repetitions;
+                        known[position] = true;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            Arrays.fill(known, false);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        for (int i = 0; i < known.length; i++) {
+            if (!known[i]) {
+                resetSample(i);
+            }
+        }
+        heapify(new boolean[mSampleIDs.length]);
+    }
+
+    /**
+     * Serializes the schedule. The layout is big-endian: int magic ("RVSC"), int version, int
+     * sample count, then per sample: int sample ID, long due time, float ease, long interval,
+     * int repetitions.
+     */
+    private synchronized byte[] buildSchedule() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + mSampleIDs.length * 28);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mSampleIDs.length);
+            for (int i = 0; i < mSampleIDs.length; i++) {
+                out.writeInt(mSampleIDs[i]);
+                out.writeLong(mDue[i]);
+                out.writeFloat(mEase[i]);
+                out.writeLong(mInterval[i]);
+                out.writeInt(mRepetitions[i]);
+            }
+        } catch (IOException e) {
+            // Writing to a byte array doesn't fail.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replaces the saved schedule, writing it to a temporary file first so that a crash leaves
+     * either the old or the new schedule.
+     */
+    private void writeSchedule(byte[] schedule) throws IOException {
+        File temp = new File(mScheduleFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(schedule);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mScheduleFile)) {
+            throw new IOException("Couldn't replace " + mScheduleFile);
+        }
+    }
+
+    private void resetSample(int position) {
+        mDue[position] = mRandom.nextInt(NEW_SAMPLE_SPREAD);
+        mEase[position] = INITIAL_EASE;
+        mInterval[position] = 0;
+        mRepetitions[position] = 0;
+    }
+
+    /**
+     * Builds the heap in linear time from the samples that aren't parked.
+     */
+    private void heapify(boolean[] parked) {
+        mHeapSize = 0;
+        for (int i = 0; i < mSampleIDs.length; i++) {
+            if (parked[i]) {
+                mHeapIndex[i] = -1;
+            } else {
+                mHeap[mHeapSize] = i;
+                mHeapIndex[i] = mHeapSize;
+                mHeapSize++;
+            }
+        }
+        for (int i = mHeapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private boolean isBefore(int a, int b) {
+        if (mDue[a] != mDue[b]) {
+            return mDue[a] < mDue[b];
+        }
+        if (mEase[a] != mEase[b]) {
+            return mEase[a] < mEase[b];
+        }
+        return a < b;
+    }
+
+    private void siftUp(int index) {
+        int position = mHeap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBefore(position, mHeap[parent])) {
+                break;
+            }
+            mHeap[index] = mHeap[parent];
+            mHeapIndex[mHeap[index]] = index;
+            index = parent;
+        }
+        mHeap[index] = position;
+        mHeapIndex[position] = index;
+    }
+
+    private void siftDown(int index) {
+        int position = mHeap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= mHeapSize) {
+                break;
+            }
+            if (child + 1 < mHeapSize && isBefore(mHeap[child + 1], mHeap[child])) {
+                child++;
+            }
+            if (!isBefore(mHeap[child], position)) {
+                break;
+            }
+            mHeap[index] = mHeap[child];
+            mHeapIndex[mHeap[index]] = index;
+            index = child;
+        }
+        mHeap[index] = position;
+        mHeapIndex[position] = index;
+    }
+}
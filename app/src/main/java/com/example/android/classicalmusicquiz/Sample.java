@@ -16,117 +16,61 @@ package com.example.android.classicalmusicquiz;
 * limitations under the License.
 */
 
-import android.content.Context;
-import android.content.res.AssetManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.net.Uri;
 import android.util.JsonReader;
-import android.widget.Toast;
-
-import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DataSourceInputStream;
-import com.google.android.exoplayer2.upstream.DataSpec;
-import com.google.android.exoplayer2.upstream.DefaultDataSource;
-import com.google.android.exoplayer2.util.Util;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
 
 /**
- * Java Object representing a single sample. Also includes utility methods for obtaining samples
- * from assets.
+ * Java Object representing a single sample. Samples are obtained from the {@link SampleCatalog},
+ * which uses {@link #readEntry(JsonReader)} to read them from the sample manifest.
  */
 class Sample {
 
+    // The clip end of a sample that is played to its end.
+    static final long END_OF_SAMPLE = -1;
+
     private int mSampleID;
     private String mComposer;
+    private String mEra;
     private String mTitle;
     private String mUri;
     private String mAlbumArtID;
+    private long mClipStartMs;
+    private long mClipEndMs;
 
 
-    private Sample(int sampleID, String composer, String title, String uri, String albumArtID) {
+    Sample(int sampleID, String composer, String era, String title, String uri,
+           String albumArtID) {
+        this(sampleID, composer, era, title, uri, albumArtID, 0, END_OF_SAMPLE);
+    }
+
+    Sample(int sampleID, String composer, String era, String title, String uri,
+           String albumArtID, long clipStartMs, long clipEndMs) {
         mSampleID = sampleID;
         mComposer = composer;
+        mEra = era;
         mTitle = title;
         mUri = uri;
         mAlbumArtID = albumArtID;
+        mClipStartMs = clipStartMs;
+        mClipEndMs = clipEndMs;
     }
 
     /**
-     * Gets portrait of the composer for a sample by the sample ID.
-     * @param context The application context.
-     * @param sampleID The sample ID.
-     * @return The portrait Bitmap.
-     */
-    static Bitmap getComposerArtBySampleID(Context context, int sampleID){
-        Sample sample = Sample.getSampleByID(context, sampleID);
-        int albumArtID = context.getResources().getIdentifier(
-                sample != null ? sample.getAlbumArtID() : null, "drawable",
-                context.getPackageName());
-        return BitmapFactory.decodeResource(context.getResources(), albumArtID);
-    }
-
-    /**
-     * Gets a single sample by its ID.
-     * @param context The application context.
-     * @param sampleID The sample ID.
-     * @return The sample object.
-     */
-    static Sample getSampleByID(Context context, int sampleID) {
-        JsonReader reader;
-        try {
-            reader = readJSONFile(context);
-            reader.beginArray();
-            while (reader.hasNext()) {
-                Sample currentSample = readEntry(reader);
-                if (currentSample.getSampleID() == sampleID) {
-                    reader.close();
-                    return currentSample;
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return null;
-    }
-
-    /**
-     * Gets and ArrayList of the IDs for all of the Samples from the JSON file.
-     * @param context The application context.
-     * @return The ArrayList of all sample IDs.
-     */
-    static ArrayList<Integer> getAllSampleIDs(Context context){
-        JsonReader reader;
-        ArrayList<Integer> sampleIDs = new ArrayList<>();
-        try {
-            reader = readJSONFile(context);
-            reader.beginArray();
-            while (reader.hasNext()) {
-                sampleIDs.add(readEntry(reader).getSampleID());
-            }
-            reader.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return sampleIDs;
-    }
-
-    /**
-     * Method used for obtaining a single sample from the JSON file.
+     * Method used for obtaining a single sample from the JSON file. The optional clipStartMs and
+     * clipEndMs values limit the sample to the excerpt that is played in the quiz.
      * @param reader The JSON reader object pointing a single sample JSON object.
      * @return The Sample the JsonReader is pointing to.
      */
-    private static Sample readEntry(JsonReader reader) {
+    static Sample readEntry(JsonReader reader) {
         Integer id = -1;
         String composer = null;
+        String era = null;
         String title = null;
         String uri = null;
         String albumArtID = null;
+        long clipStartMs = 0;
+        long clipEndMs = END_OF_SAMPLE;
 
         try {
             reader.beginObject();
@@ -142,13 +86,23 @@ class Sample {
                     case "composer":
                         composer = reader.nextString();
                         break;
+                    case "era":
+                        era = reader.nextString();
+                        break;
                     case "uri":
                         uri = reader.nextString();
                         break;
                     case "albumArtID":
                         albumArtID = reader.nextString();
                         break;
+                    case "clipStartMs":
+                        clipStartMs = reader.nextLong();
+                        break;
+                    case "clipEndMs":
+                        clipEndMs = reader.nextLong();
+                        break;
                     default:
+                        reader.skipValue();
                         break;
                 }
             }
@@ -157,43 +111,119 @@ class Sample {
             e.printStackTrace();
         }
 
-        return new Sample(id, composer, title, uri, albumArtID);
+        return new Sample(id, composer, era, title, uri, albumArtID, clipStartMs, clipEndMs);
     }
 
     /**
-     * Method for creating a JsonReader object that points to the JSON array of samples.
-     * @param context The application context.
-     * @return The JsonReader object pointing to the JSON array of samples.
-     * @throws IOException Exception thrown if the sample file can't be found.
+     * Streams through a JSON array of samples looking for the samples with the given IDs, in a
+     * single pass. Only the matching entries are turned into Sample objects: the rest of an
+     * entry is skipped as soon as its ID is known not to match, and the scan stops once every
+     * ID has been found.
+     *
+     * The app no longer looks samples up in the JSON manifest, since the
+     * {@link BinarySampleCatalog} reads them by index. This is kept only as the baseline that
+     * CatalogBenchmark measures the binary catalog against.
+     * @param reader The JSON reader object pointing at the JSON array of samples.
+     * @param sampleIDs The IDs of the samples to find.
+     * @return The samples, in the same order as the IDs, with null for IDs that weren't found.
+     * @throws IOException Exception thrown if the JSON can't be read.
      */
-    private static JsonReader readJSONFile(Context context) throws IOException {
-        AssetManager assetManager = context.getAssets();
-        String uri = null;
+    static Sample[] findEntries(JsonReader reader, int... sampleIDs) throws IOException {
+        Sample[] samples = new Sample[sampleIDs.length];
+        int remaining = sampleIDs.length;
 
-        try {
-            for (String asset : assetManager.list("")) {
-                if (asset.endsWith(".exolist.json")) {
-                    uri = "asset:///" + asset;
+        reader.beginArray();
+        while (remaining > 0 && reader.hasNext()) {
+            Sample sample = readEntryIfWanted(reader, sampleIDs);
+            if (sample == null) {
+                continue;
+            }
+            for (int i = 0; i < sampleIDs.length; i++) {
+                if (samples[i] == null && sampleIDs[i] == sample.getSampleID()) {
+                    samples[i] = sample;
+                    remaining--;
                 }
             }
-        } catch (IOException e) {
-            Toast.makeText(context, R.string.sample_list_load_error, Toast.LENGTH_LONG)
-                    .show();
         }
+        return samples;
+    }
 
-        String userAgent = Util.getUserAgent(context, "ClassicalMusicQuiz");
-        DataSource dataSource = new DefaultDataSource(context, null, userAgent, false);
-        DataSpec dataSpec = new DataSpec(Uri.parse(uri));
-        InputStream inputStream = new DataSourceInputStream(dataSource, dataSpec);
+    /**
+     * Reads a single sample JSON object, but only builds the Sample if its ID is one of the
+     * wanted ones. Values that come before the ID have to be kept until the ID is known.
+     * @param reader The JSON reader object pointing a single sample JSON object.
+     * @param sampleIDs The IDs of the wanted samples.
+     * @return The Sample the JsonReader is pointing to, or null if it isn't wanted.
+     * @throws IOException Exception thrown if the JSON can't be read.
+     */
+    private static Sample readEntryIfWanted(JsonReader reader, int[] sampleIDs)
+            throws IOException {
+        boolean hasID = false;
+        int id = -1;
+        String composer = null;
+        String era = null;
+        String title = null;
+        String uri = null;
+        String albumArtID = null;
+        long clipStartMs = 0;
+        long clipEndMs = END_OF_SAMPLE;
 
-        JsonReader reader = null;
-        try {
-            reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
-        } finally {
-            Util.closeQuietly(dataSource);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "id":
+                    id = reader.nextInt();
+                    hasID = true;
+                    if (!contains(sampleIDs, id)) {
+                        while (reader.hasNext()) {
+                            reader.nextName();
+                            reader.skipValue();
+                        }
+                        reader.endObject();
+                        return null;
+                    }
+                    break;
+                case "name":
+                    title = reader.nextString();
+                    break;
+                case "composer":
+                    composer = reader.nextString();
+                    break;
+                case "era":
+                    era = reader.nextString();
+                    break;
+                case "uri":
+                    uri = reader.nextString();
+                    break;
+                case "albumArtID":
+                    albumArtID = reader.nextString();
+                    break;
+                case "clipStartMs":
+                    clipStartMs = reader.nextLong();
+                    break;
+                case "clipEndMs":
+                    clipEndMs = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
         }
+        reader.endObject();
 
-        return reader;
+        return hasID
+                ? new Sample(id, composer, era, title, uri, albumArtID, clipStartMs, clipEndMs)
+                : null;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int candidate : values) {
+            if (candidate == value) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // Getters and Setters
@@ -230,6 +260,14 @@ class Sample {
         mComposer = composer;
     }
 
+    String getEra() {
+        return mEra;
+    }
+
+    void setEra(String era) {
+        mEra = era;
+    }
+
     String getAlbumArtID() {
         return mAlbumArtID;
     }
@@ -237,4 +275,61 @@ class Sample {
     void setAlbumArtID(String albumArtID) {
         mAlbumArtID = albumArtID;
     }
+
+    /**
+     * @return Where the excerpt played in the quiz starts, in milliseconds into the sample.
+     */
+    long getClipStartMs() {
+        return mClipStartMs;
+    }
+
+    /**
+     * @return Where the excerpt played in the quiz ends, in milliseconds into the sample, or
+     * {@link #END_OF_SAMPLE} if it runs to the end.
+     */
+    long getClipEndMs() {
+        return mClipEndMs;
+    }
+
+    /**
+     * @return true if only an excerpt of the sample is played.
+     */
+    boolean isClipped() {
+        return mClipStartMs > 0 || mClipEndMs != END_OF_SAMPLE;
+    }
+
+    /**
+     * Samples are equal if all of their fields are, so a manifest entry that was rewritten
+     * without changes isn't treated as a change.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Sample)) {
+            return false;
+        }
+        Sample sample = (Sample) other;
+        return mSampleID == sample.mSampleID
+                && mClipStartMs == sample.mClipStartMs
+                && mClipEndMs == sample.mClipEndMs
+                && equal(mComposer, sample.mComposer)
+                && equal(mEra, sample.mEra)
+                && equal(mTitle, sample.mTitle)
+                && equal(mUri, sample.mUri)
+                && equal(mAlbumArtID, sample.mAlbumArtID);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = mSampleID;
+        hash = 31 * hash + (mUri != null ? mUri.hashCode() : 0);
+        hash = 31 * hash + (int) (mClipStartMs ^ (mClipStartMs >>> 32));
+        return 31 * hash + (int) (mClipEndMs ^ (mClipEndMs >>> 32));
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
 }
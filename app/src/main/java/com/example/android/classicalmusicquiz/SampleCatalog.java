@@ -0,0 +1,703 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.JsonReader;
+import android.util.SparseIntArray;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Process-wide index of the samples in the sample manifests. The catalog is loaded the first
+ * time it is requested, and samples are then looked up by their ID in constant time.
+ *
+ * The bundled catalog is read from the binary catalog that the build compiles from the manifest
+ * (see {@link BinarySampleCatalog}), and samples are only decoded the first time they are
+ * looked up. If there's no binary catalog, the JSON manifest is parsed instead. Any other
+ * manifests, in the assets or in the app's storage (see {@link CatalogWatcher}), are layered
+ * over it in the order of their URIs, and where several of them have a sample with the same ID,
+ * the last one wins.
+ *
+ * A catalog never changes once it is built: changing a layer makes a new catalog, which shares
+ * what didn't change with the previous one. Games hold on to the catalog they started with, so
+ * they keep seeing the same samples while the current catalog moves on.
+ */
+class SampleCatalog {
+
+    static final String MANIFEST_SUFFIX = ".exolist.json";
+    private static final String BINARY_CATALOG_SUFFIX = ".exolist.scat";
+    private static final String ASSET_URI_PREFIX = "asset:///";
+
+    // Sample IDs are indexed in a dense array as long as they don't spread out further than
+    // this multiple of the number of samples, otherwise a sparse index is used instead.
+    private static final int MAX_DENSE_SPREAD = 4;
+
+    private static SampleCatalog sInstance;
+    private static String[] sManifests;
+
+    private final int[] mSampleIDs;
+    private final Sample[] mSamples;
+    private final BinarySampleCatalog mBinaryCatalog;
+
+    // The position of each sample in the binary catalog, or -1 if it was parsed from a manifest.
+    // Null if the samples are in the same positions as in the binary catalog.
+    private final int[] mBinaryPositions;
+
+    // The catalog the layers are over, or null if this is the bundled catalog itself.
+    private final SampleCatalog mBundled;
+
+    // The samples of each manifest layered over the bundled catalog, by the manifest's URI.
+    private final TreeMap<String, Map<Integer, Sample>> mLayers;
+
+    private final int[] mPositionsByID;
+    private final SparseIntArray mSparsePositionsByID;
+    private DistractorIndex mDistractorIndex;
+
+    private SampleCatalog(int[] sampleIDs, Sample[] samples, BinarySampleCatalog binaryCatalog) {
+        this(sampleIDs, samples, binaryCatalog, null, null,
+                new TreeMap<String, Map<Integer, Sample>>());
+    }
+
+    private SampleCatalog(int[] sampleIDs, Sample[] samples, BinarySampleCatalog binaryCatalog,
+                          int[] binaryPositions, SampleCatalog bundled,
+                          TreeMap<String, Map<Integer, Sample>> layers) {
+        mSampleIDs = sampleIDs;
+        mSamples = samples;
+        mBinaryCatalog = binaryCatalog;
+        mBinaryPositions = binaryPositions;
+        mBundled = bundled;
+        mLayers = layers;
+
+        int maxID = -1;
+        boolean hasNegativeID = false;
+        for (int sampleID : mSampleIDs) {
+            maxID = Math.max(maxID, sampleID);
+            hasNegativeID |= sampleID < 0;
+        }
+
+        if (!hasNegativeID && maxID < MAX_DENSE_SPREAD * mSampleIDs.length + 1) {
+            mPositionsByID = new int[maxID + 1];
+            mSparsePositionsByID = null;
+            Arrays.fill(mPositionsByID, -1);
+            for (int i = 0; i < mSampleIDs.length; i++) {
+                mPositionsByID[mSampleIDs[i]] = i;
+            }
+        } else {
+            mPositionsByID = null;
+            mSparsePositionsByID = new SparseIntArray(mSampleIDs.length);
+            for (int i = 0; i < mSampleIDs.length; i++) {
+                mSparsePositionsByID.put(mSampleIDs[i], i);
+            }
+        }
+    }
+
+    /**
+     * Creates a catalog that decodes its samples lazily from a binary catalog.
+     * @param binaryCatalog The binary catalog.
+     * @return The sample catalog.
+     */
+    static SampleCatalog fromBinaryCatalog(BinarySampleCatalog binaryCatalog) {
+        int[] sampleIDs = new int[binaryCatalog.size()];
+        for (int i = 0; i < sampleIDs.length; i++) {
+            sampleIDs[i] = binaryCatalog.getSampleID(i);
+        }
+        return new SampleCatalog(sampleIDs, new Sample[sampleIDs.length], binaryCatalog);
+    }
+
+    /**
+     * Creates a catalog from already parsed samples.
+     * @param samples The samples, in manifest order.
+     * @return The sample catalog.
+     */
+    static SampleCatalog fromSamples(List<Sample> samples) {
+        Sample[] sampleArray = samples.toArray(new Sample[samples.size()]);
+        int[] sampleIDs = new int[sampleArray.length];
+        for (int i = 0; i < sampleIDs.length; i++) {
+            sampleIDs[i] = sampleArray[i].getSampleID();
+        }
+        return new SampleCatalog(sampleIDs, sampleArray, null);
+    }
+
+    /**
+     * Gets the catalog, loading it the first time it is called. The startup pipeline loads it
+     * with {@link #preload(Context)} first, which reports an error to the pipeline's listener, so
+     * later callers get the loaded catalog.
+     * @param context The application context.
+     * @return The sample catalog.
+     * @throws IllegalStateException Exception thrown if the catalog can't be read.
+     */
+    static synchronized SampleCatalog getInstance(Context context) {
+        try {
+            return preload(context);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read the sample catalog", e);
+        }
+    }
+
+    /**
+     * Loads the catalog if it isn't loaded yet. Unlike {@link #getInstance(Context)}, errors are
+     * checked, so callers have to handle them.
+     * @param context The application context.
+     * @return The sample catalog.
+     * @throws IOException Exception thrown if the catalog can't be read.
+     */
+    static synchronized SampleCatalog preload(Context context) throws IOException {
+        if (sInstance == null) {
+            SampleCatalog catalog = load(context.getAssets());
+            sInstance = CatalogWatcher.getInstance(context).start(catalog);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Layers a manifest over the current catalog, or applies the changes to a manifest that is
+     * already layered. Does nothing if the catalog isn't loaded yet, as loading it reads the
+     * manifest anyway.
+     * @param uri The URI the manifest was read from.
+     * @param samples The samples in the manifest.
+     * @return The new current catalog, or null if it didn't change.
+     */
+    static SampleCatalog applyManifest(String uri, List<Sample> samples) {
+        synchronized (SampleCatalog.class) {
+            if (sInstance == null) {
+                return null;
+            }
+            SampleCatalog catalog = sInstance.withManifest(uri, samples);
+            return replaceInstance(catalog);
+        }
+    }
+
+    /**
+     * Takes the samples of a manifest out of the current catalog, after the manifest was deleted.
+     * @param uri The URI the manifest was read from.
+     * @return The new current catalog, or null if it didn't change.
+     */
+    static SampleCatalog removeManifest(String uri) {
+        synchronized (SampleCatalog.class) {
+            if (sInstance == null) {
+                return null;
+            }
+            return replaceInstance(sInstance.withoutManifest(uri));
+        }
+    }
+
+    private static SampleCatalog replaceInstance(SampleCatalog catalog) {
+        if (catalog == sInstance) {
+            return null;
+        }
+        sInstance = catalog;
+        return catalog;
+    }
+
+    /**
+     * Gets the IDs for all of the Samples in the catalog.
+     * @param context The application context.
+     * @return The array of all sample IDs.
+     */
+    static int[] getAllSampleIDs(Context context) {
+        return getInstance(context).getSampleIDs();
+    }
+
+    /**
+     * Looks up a sample by its ID, decoding it if this is the first time it is asked for.
+     * @param sampleID The sample ID.
+     * @return The sample object, or null if there is no sample with that ID.
+     */
+    synchronized Sample getSample(int sampleID) {
+        int position = indexOf(sampleID);
+        if (position < 0) {
+            return null;
+        }
+        Sample sample = mSamples[position];
+        if (sample == null) {
+            sample = mBinaryCatalog.readSample(binaryPositionOf(position));
+            mSamples[position] = sample;
+        }
+        return sample;
+    }
+
+    /**
+     * Looks up several samples by their IDs.
+     * @param sampleIDs The sample IDs.
+     * @return The samples, in the same order as the IDs, with null for IDs that weren't found.
+     */
+    Sample[] getSamples(int... sampleIDs) {
+        Sample[] samples = new Sample[sampleIDs.length];
+        for (int i = 0; i < sampleIDs.length; i++) {
+            samples[i] = getSample(sampleIDs[i]);
+        }
+        return samples;
+    }
+
+    /**
+     * Gets the IDs of all the samples, in manifest order. The returned array is a new copy that
+     * the caller is free to modify.
+     * @return The array of all sample IDs.
+     */
+    int[] getSampleIDs() {
+        return Arrays.copyOf(mSampleIDs, mSampleIDs.length);
+    }
+
+    /**
+     * Gets the index of the catalog by composer and era, building it the first time it is
+     * asked for. With only a binary catalog the composers and eras are keyed by their string
+     * table offsets, so no sample has to be decoded. With manifests layered over it, each
+     * distinct composer and era of the binary catalog is decoded once, so that the same
+     * composer gets the same key in all of them.
+     * @return The distractor index.
+     */
+    synchronized DistractorIndex getDistractorIndex() {
+        if (mDistractorIndex == null) {
+            int[] composerKeys = new int[mSampleIDs.length];
+            int[] eraKeys = new int[mSampleIDs.length];
+            if (mBinaryCatalog != null && mBinaryPositions == null) {
+                for (int i = 0; i < mSampleIDs.length; i++) {
+                    composerKeys[i] = mBinaryCatalog.getComposerKey(i);
+                    eraKeys[i] = mBinaryCatalog.getEraKey(i);
+                }
+            } else {
+                HashMap<String, Integer> keys = new HashMap<>();
+                SparseIntArray binaryKeys = new SparseIntArray();
+                for (int i = 0; i < mSampleIDs.length; i++) {
+                    Sample sample = mSamples[i];
+                    if (sample != null) {
+                        composerKeys[i] = keyOf(keys, sample.getComposer());
+                        eraKeys[i] = keyOf(keys, sample.getEra());
+                    } else {
+                        int position = mBinaryPositions[i];
+                        composerKeys[i] = keyOf(keys, binaryKeys,
+                                mBinaryCatalog.getComposerKey(position));
+                        eraKeys[i] = keyOf(keys, binaryKeys,
+                                mBinaryCatalog.getEraKey(position));
+                    }
+                }
+            }
+            mDistractorIndex = new DistractorIndex(mSampleIDs, composerKeys, eraKeys);
+        }
+        return mDistractorIndex;
+    }
+
+    /**
+     * Gets the key of a composer or era of the binary catalog, decoding it the first time.
+     */
+    private int keyOf(HashMap<String, Integer> keys, SparseIntArray binaryKeys, int binaryKey) {
+        if (binaryKey < 0) {
+            return -1;
+        }
+        int key = binaryKeys.get(binaryKey, -1);
+        if (key < 0) {
+            key = keyOf(keys, mBinaryCatalog.readKey(binaryKey));
+            binaryKeys.put(binaryKey, key);
+        }
+        return key;
+    }
+
+    private static int keyOf(HashMap<String, Integer> keys, String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer key = keys.get(value);
+        if (key == null) {
+            key = keys.size();
+            keys.put(value, key);
+        }
+        return key;
+    }
+
+    /**
+     * @return The number of samples in the catalog.
+     */
+    int size() {
+        return mSampleIDs.length;
+    }
+
+    private int indexOf(int sampleID) {
+        if (mPositionsByID != null) {
+            return sampleID >= 0 && sampleID < mPositionsByID.length
+                    ? mPositionsByID[sampleID] : -1;
+        }
+        return mSparsePositionsByID.get(sampleID, -1);
+    }
+
+    private int binaryPositionOf(int position) {
+        if (mBinaryPositions != null) {
+            return mBinaryPositions[position];
+        }
+        return mBinaryCatalog != null ? position : -1;
+    }
+
+    /**
+     * Returns a catalog with the samples of a manifest layered over this one. If a manifest with
+     * the same URI is already layered, only the samples that were added, removed or changed
+     * since are applied. This catalog is left as it is.
+     * @param uri The URI the manifest was read from. Manifests are layered in URI order, so the
+     *            ones in storage ("file://") win over the ones in the assets ("asset://").
+     * @param samples The samples in the manifest.
+     * @return The new catalog, or this one if the manifest didn't change.
+     */
+    SampleCatalog withManifest(String uri, List<Sample> samples) {
+        LinkedHashMap<Integer, Sample> layer = new LinkedHashMap<>();
+        for (Sample sample : samples) {
+            if (sample != null) {
+                layer.put(sample.getSampleID(), sample);
+            }
+        }
+
+        // Diff the manifest against its previous version.
+        Map<Integer, Sample> previous = mLayers.get(uri);
+        LinkedHashSet<Integer> changedIDs = new LinkedHashSet<>();
+        for (Sample sample : layer.values()) {
+            if (previous == null || !sample.equals(previous.get(sample.getSampleID()))) {
+                changedIDs.add(sample.getSampleID());
+            }
+        }
+        if (previous != null) {
+            for (Integer sampleID : previous.keySet()) {
+                if (!layer.containsKey(sampleID)) {
+                    changedIDs.add(sampleID);
+                }
+            }
+        }
+        if (changedIDs.isEmpty()) {
+            return this;
+        }
+
+        TreeMap<String, Map<Integer, Sample>> layers = new TreeMap<>(mLayers);
+        layers.put(uri, Collections.unmodifiableMap(layer));
+        return withLayers(layers, changedIDs);
+    }
+
+    /**
+     * Returns a catalog without the samples of a manifest that was layered over this one. Where
+     * the manifest overrode a sample, the one it overrode comes back.
+     * @param uri The URI the manifest was read from.
+     * @return The new catalog, or this one if the manifest wasn't layered.
+     */
+    SampleCatalog withoutManifest(String uri) {
+        Map<Integer, Sample> previous = mLayers.get(uri);
+        if (previous == null) {
+            return this;
+        }
+        TreeMap<String, Map<Integer, Sample>> layers = new TreeMap<>(mLayers);
+        layers.remove(uri);
+        return withLayers(layers, previous.keySet());
+    }
+
+    /**
+     * Builds a catalog with the given layers from this one, looking up again only the samples
+     * whose IDs changed. Changed samples stay in their position, added ones go at the end, and
+     * samples decoded so far are shared.
+     */
+    private synchronized SampleCatalog withLayers(TreeMap<String, Map<Integer, Sample>> layers,
+                                                  Collection<Integer> changedIDs) {
+        SampleCatalog bundled = mBundled != null ? mBundled : this;
+        if (layers.isEmpty()) {
+            return bundled;
+        }
+
+        int size = mSampleIDs.length;
+        int[] sampleIDs = Arrays.copyOf(mSampleIDs, size + changedIDs.size());
+        Sample[] samples = Arrays.copyOf(mSamples, sampleIDs.length);
+        int[] binaryPositions = new int[sampleIDs.length];
+        for (int i = 0; i < size; i++) {
+            binaryPositions[i] = binaryPositionOf(i);
+        }
+
+        boolean[] removed = new boolean[sampleIDs.length];
+        int removedCount = 0;
+        for (int sampleID : changedIDs) {
+            // The sample comes from the last layer that has it, or else from the bundled
+            // catalog.
+            Sample sample = null;
+            for (Map<Integer, Sample> layer : layers.descendingMap().values()) {
+                sample = layer.get(sampleID);
+                if (sample != null) {
+                    break;
+                }
+            }
+            int binaryPosition = -1;
+            if (sample == null) {
+                int bundledPosition = bundled.indexOf(sampleID);
+                if (bundledPosition >= 0 && bundled.mBinaryCatalog != null) {
+                    binaryPosition = bundledPosition;
+                } else if (bundledPosition >= 0) {
+                    sample = bundled.mSamples[bundledPosition];
+                }
+            }
+
+            int position = indexOf(sampleID);
+            if (sample == null && binaryPosition < 0) {
+                if (position >= 0) {
+                    removed[position] = true;
+                    removedCount++;
+                }
+                continue;
+            }
+            if (position < 0) {
+                position = size++;
+                sampleIDs[position] = sampleID;
+            }
+            samples[position] = sample;
+            binaryPositions[position] = binaryPosition;
+        }
+
+        // Close the gaps left by the removed samples.
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!removed[i]) {
+                sampleIDs[count] = sampleIDs[i];
+                samples[count] = samples[i];
+                binaryPositions[count] = binaryPositions[i];
+                count++;
+            }
+        }
+        return new SampleCatalog(Arrays.copyOf(sampleIDs, count), Arrays.copyOf(samples, count),
+                bundled.mBinaryCatalog, Arrays.copyOf(binaryPositions, count), bundled, layers);
+    }
+
+    /**
+     * Loads the bundled catalog from the binary catalog in the assets, or from the JSON manifest
+     * if there is no binary catalog, and layers any other manifests in the assets over it.
+     * @param assetManager The AssetManager to read the catalog from.
+     * @return The sample catalog.
+     * @throws IOException Exception thrown if neither catalog can be found or read.
+     */
+    private static SampleCatalog load(AssetManager assetManager) throws IOException {
+        SampleCatalog catalog = null;
+        String compiledManifest = null;
+        String binaryCatalog = findBinaryCatalog(assetManager);
+        if (binaryCatalog != null) {
+            try {
+                catalog = fromBinaryCatalog(readBinaryCatalog(assetManager, binaryCatalog));
+                compiledManifest = binaryCatalog.substring(0,
+                        binaryCatalog.length() - BINARY_CATALOG_SUFFIX.length()) + MANIFEST_SUFFIX;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        String[] manifests = findManifests(assetManager);
+        if (catalog == null && manifests.length == 0) {
+            throw new IOException("No " + MANIFEST_SUFFIX + " manifest in assets");
+        }
+        if (catalog == null) {
+            catalog = fromSamples(new ArrayList<Sample>());
+        }
+        for (String manifest : manifests) {
+            if (!manifest.equals(compiledManifest)) {
+                catalog = catalog.withManifest(ASSET_URI_PREFIX + manifest,
+                        readManifest(assetManager, manifest));
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Finds the binary catalog in the assets.
+     * @param assetManager The AssetManager to look in.
+     * @return The name of the binary catalog asset, or null if there is none.
+     * @throws IOException Exception thrown if the assets can't be listed.
+     */
+    private static String findBinaryCatalog(AssetManager assetManager) throws IOException {
+        String binaryCatalog = null;
+        for (String asset : assetManager.list("")) {
+            if (asset.endsWith(BINARY_CATALOG_SUFFIX)) {
+                binaryCatalog = asset;
+            }
+        }
+        return binaryCatalog;
+    }
+
+    /**
+     * Gets a hash of the catalog's manifests without loading the catalog: the CRC32 of the
+     * bundled manifest, combined with the name, size and modification time of each manifest in
+     * storage.
+     * @param context The application context.
+     * @return The hash of the manifests.
+     * @throws IOException Exception thrown if neither catalog can be found or read.
+     */
+    static int readContentHash(Context context) throws IOException {
+        int hash = readContentHash(context.getAssets());
+        for (File manifest : CatalogWatcher.listManifests(context)) {
+            hash = 31 * hash + (manifest.getName() + CatalogWatcher.stampOf(manifest)).hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * Gets the CRC32 of the bundled manifests without loading the catalog. It is read from the
+     * header of the binary catalog, where the build stores it, or computed over the manifests if
+     * there is no binary catalog.
+     * @param assetManager The AssetManager to read the catalog from.
+     * @return The CRC32 of the manifests.
+     * @throws IOException Exception thrown if neither catalog can be found or read.
+     */
+    static int readContentHash(AssetManager assetManager) throws IOException {
+        String binaryCatalog = findBinaryCatalog(assetManager);
+        if (binaryCatalog != null) {
+            DataInputStream header = new DataInputStream(assetManager.open(binaryCatalog));
+            try {
+                if (header.readInt() == BinarySampleCatalog.MAGIC
+                        && header.readInt() == BinarySampleCatalog.VERSION) {
+                    // Skip the sample count.
+                    header.readInt();
+                    return header.readInt();
+                }
+            } finally {
+                header.close();
+            }
+        }
+
+        String[] manifests = findManifests(assetManager);
+        if (manifests.length == 0) {
+            throw new IOException("No " + MANIFEST_SUFFIX + " manifest in assets");
+        }
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        for (String manifest : manifests) {
+            InputStream inputStream = assetManager.open(manifest);
+            try {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Finds the JSON sample manifests in the assets. The asset listing is only done once.
+     * @param assetManager The AssetManager to look in.
+     * @return The names of the manifest assets, sorted.
+     * @throws IOException Exception thrown if the assets can't be listed.
+     */
+    private static synchronized String[] findManifests(AssetManager assetManager)
+            throws IOException {
+        if (sManifests == null) {
+            ArrayList<String> manifests = new ArrayList<>();
+            for (String asset : assetManager.list("")) {
+                if (asset.endsWith(MANIFEST_SUFFIX)) {
+                    manifests.add(asset);
+                }
+            }
+            Collections.sort(manifests);
+            sManifests = manifests.toArray(new String[manifests.size()]);
+        }
+        return sManifests;
+    }
+
+    /**
+     * Maps a binary catalog asset into memory. Compressed assets can't be mapped, in which case
+     * the asset is read into a heap buffer instead.
+     * @param assetManager The AssetManager to read the catalog from.
+     * @param asset The name of the binary catalog asset.
+     * @return The binary catalog.
+     * @throws IOException Exception thrown if the catalog can't be read or isn't valid.
+     */
+    static BinarySampleCatalog readBinaryCatalog(AssetManager assetManager, String asset)
+            throws IOException {
+        AssetFileDescriptor descriptor = null;
+        try {
+            descriptor = assetManager.openFd(asset);
+        } catch (FileNotFoundException e) {
+            // The asset is compressed, read it the slow way below.
+        }
+
+        if (descriptor != null) {
+            FileInputStream inputStream = descriptor.createInputStream();
+            try {
+                FileChannel channel = inputStream.getChannel();
+                return BinarySampleCatalog.wrap(channel.map(FileChannel.MapMode.READ_ONLY,
+                        descriptor.getStartOffset(), descriptor.getLength()));
+            } finally {
+                inputStream.close();
+            }
+        }
+
+        InputStream inputStream = assetManager.open(asset);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return BinarySampleCatalog.wrap(ByteBuffer.wrap(bytes.toByteArray()));
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Parses every sample entry in a JSON sample manifest.
+     * @param assetManager The AssetManager to read the manifest from.
+     * @param manifest The name of the manifest asset.
+     * @return The samples, in manifest order.
+     * @throws IOException Exception thrown if the manifest can't be read.
+     */
+    static ArrayList<Sample> readManifest(AssetManager assetManager, String manifest)
+            throws IOException {
+        return readManifest(assetManager.open(manifest));
+    }
+
+    /**
+     * Parses every sample entry in a JSON sample manifest.
+     * @param inputStream The manifest, which is closed once it is read.
+     * @return The samples, in manifest order.
+     * @throws IOException Exception thrown if the manifest can't be read.
+     */
+    static ArrayList<Sample> readManifest(InputStream inputStream) throws IOException {
+        ArrayList<Sample> samples = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                samples.add(Sample.readEntry(reader));
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+        return samples;
+    }
+}
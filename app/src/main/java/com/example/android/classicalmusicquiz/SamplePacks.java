@@ -0,0 +1,377 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.AssetManager;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The themed sample packs shipped in assets/packs, each as its own manifest. Only their headers
+ * are read up front, from the index the build writes (see IndexSamplePacksTask): the sample
+ * count, the range of sample IDs and the composers of each pack. A pack's manifest is only
+ * parsed when a game selects it, and parsed packs that the last game didn't select are dropped
+ * again when the system is low on memory.
+ *
+ * Sample IDs are unique across the packs and the ID ranges of the packs don't overlap, which
+ * the build checks, so the pack of a sample is found by a binary search over the ranges.
+ */
+class SamplePacks implements ComponentCallbacks2 {
+
+    private static final String TAG = SamplePacks.class.getSimpleName();
+
+    static final int MAGIC = 0x5350414B;
+    static final int VERSION = 1;
+
+    private static final String PACKS_DIR = "packs/";
+    private static final String INDEX_ASSET = PACKS_DIR + "packs.idx";
+    private static final String SELECTED_PACKS_KEY = "selected_packs";
+
+    /**
+     * The header of a pack, and its samples while they are loaded.
+     */
+    static class Pack {
+        final String name;
+        final int sampleCount;
+        final int firstSampleID;
+        final int lastSampleID;
+        final int contentHash;
+        final String[] composers;
+
+        // The pack's samples, or null if it isn't loaded or was evicted.
+        private SampleCatalog mCatalog;
+
+        Pack(String name, int sampleCount, int firstSampleID, int lastSampleID, int contentHash,
+             String[] composers) {
+            this.name = name;
+            this.sampleCount = sampleCount;
+            this.firstSampleID = firstSampleID;
+            this.lastSampleID = lastSampleID;
+            this.contentHash = contentHash;
+            this.composers = composers;
+        }
+
+        /**
+         * @return The URI of the pack's manifest.
+         */
+        String getUri() {
+            return "asset:///" + PACKS_DIR + name + SampleCatalog.MANIFEST_SUFFIX;
+        }
+    }
+
+    private static SamplePacks sInstance;
+
+    private final AssetManager mAssetManager;
+
+    // Sorted by their first sample ID.
+    private final Pack[] mPacks;
+    private final HashMap<String, Pack> mPacksByName = new HashMap<>();
+
+    // The packs selected by the last game, which are kept loaded.
+    private final HashSet<String> mInUse = new HashSet<>();
+    private int mLoadCount;
+
+    /**
+     * Creates the packs from their headers.
+     * @param assetManager The AssetManager to read the packs from.
+     * @param packs The pack headers, sorted by their first sample ID.
+     */
+    SamplePacks(AssetManager assetManager, Pack[] packs) {
+        mAssetManager = assetManager;
+        mPacks = packs;
+        for (Pack pack : packs) {
+            mPacksByName.put(pack.name, pack);
+        }
+    }
+
+    /**
+     * Gets the packs, reading their headers the first time it is called. The packs are evicted
+     * when the app is asked to trim its memory.
+     * @param context The application context.
+     * @return The sample packs.
+     */
+    static synchronized SamplePacks getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            Pack[] packs;
+            try {
+                packs = readIndex(appContext.getAssets().open(INDEX_ASSET));
+            } catch (FileNotFoundException e) {
+                packs = new Pack[0];
+            } catch (IOException e) {
+                Log.w(TAG, "Can't read the sample packs", e);
+                packs = new Pack[0];
+            }
+            sInstance = new SamplePacks(appContext.getAssets(), packs);
+            appContext.registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Reads the pack headers written by the build. The layout is big-endian: int magic
+     * ("SPAK"), int version, int pack count, then for each pack its name as modified UTF-8, int
+     * sample count, int first sample ID, int last sample ID, int CRC32 of its manifest, int
+     * composer count and each composer as modified UTF-8.
+     * @param in The index, which is closed once it is read.
+     * @return The pack headers, sorted by their first sample ID.
+     * @throws IOException Exception thrown if the index can't be read, or if the ID ranges of
+     *                     two packs overlap.
+     */
+    static Pack[] readIndex(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        try {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw new IOException("Not a sample pack index");
+            }
+            Pack[] packs = new Pack[data.readInt()];
+            for (int i = 0; i < packs.length; i++) {
+                String name = data.readUTF();
+                int sampleCount = data.readInt();
+                int firstSampleID = data.readInt();
+                int lastSampleID = data.readInt();
+                int contentHash = data.readInt();
+                String[] composers = new String[data.readInt()];
+                for (int j = 0; j < composers.length; j++) {
+                    composers[j] = data.readUTF();
+                }
+                packs[i] = new Pack(name, sampleCount, firstSampleID, lastSampleID, contentHash,
+                        composers);
+                if (i > 0 && firstSampleID <= packs[i - 1].lastSampleID) {
+                    throw new IOException("The sample IDs of packs " + packs[i - 1].name
+                            + " and " + name + " overlap");
+                }
+            }
+            return packs;
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * @return The headers of all the packs, sorted by their first sample ID.
+     */
+    Pack[] getPacks() {
+        return Arrays.copyOf(mPacks, mPacks.length);
+    }
+
+    /**
+     * Drops the names of packs that don't exist, such as packs that were still selected when an
+     * update removed them.
+     * @param names The pack names.
+     * @return The names of the packs that exist, in the same order.
+     */
+    String[] retainKnown(String... names) {
+        ArrayList<String> known = new ArrayList<>(names.length);
+        for (String name : names) {
+            if (mPacksByName.containsKey(name)) {
+                known.add(name);
+            }
+        }
+        return known.toArray(new String[known.size()]);
+    }
+
+    /**
+     * Finds the pack a sample is in from the ID ranges of the packs, without loading any.
+     * @param sampleID The sample ID.
+     * @return The pack, or null if the ID is outside of all the packs.
+     */
+    Pack findPack(int sampleID) {
+        int low = 0;
+        int high = mPacks.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Pack pack = mPacks[middle];
+            if (sampleID < pack.firstSampleID) {
+                high = middle - 1;
+            } else if (sampleID > pack.lastSampleID) {
+                low = middle + 1;
+            } else {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Layers the samples of the selected packs over a catalog, loading the packs that aren't
+     * loaded yet. The packs stay loaded until another game selects other packs, and the game
+     * looks its samples up in the returned catalog.
+     * @param catalog The catalog to layer the packs over.
+     * @param names The names of the selected packs. Unknown names are skipped.
+     * @return The catalog with the packs' samples.
+     * @throws IOException Exception thrown if a pack can't be read.
+     */
+    synchronized SampleCatalog withPacks(SampleCatalog catalog, String... names)
+            throws IOException {
+        mInUse.clear();
+        for (String name : names) {
+            Pack pack = mPacksByName.get(name);
+            if (pack != null) {
+                SampleCatalog packCatalog = load(pack);
+                catalog = catalog.withManifest(pack.getUri(),
+                        Arrays.asList(packCatalog.getSamples(packCatalog.getSampleIDs())));
+                mInUse.add(name);
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Gets the IDs of the samples in the selected packs, loading the packs that aren't loaded
+     * yet.
+     * @param names The names of the selected packs. Unknown names are skipped.
+     * @return The sample IDs, pack by pack, in manifest order.
+     * @throws IOException Exception thrown if a pack can't be read.
+     */
+    synchronized int[] getSampleIDs(String... names) throws IOException {
+        int[][] packSampleIDs = new int[names.length][];
+        int count = 0;
+        for (int i = 0; i < names.length; i++) {
+            Pack pack = mPacksByName.get(names[i]);
+            packSampleIDs[i] = pack != null ? load(pack).getSampleIDs() : new int[0];
+            count += packSampleIDs[i].length;
+        }
+        int[] sampleIDs = new int[count];
+        int position = 0;
+        for (int[] ids : packSampleIDs) {
+            System.arraycopy(ids, 0, sampleIDs, position, ids.length);
+            position += ids.length;
+        }
+        return sampleIDs;
+    }
+
+    private SampleCatalog load(Pack pack) throws IOException {
+        if (pack.mCatalog == null) {
+            List<Sample> samples = readPack(pack);
+            for (Sample sample : samples) {
+                if (sample.getSampleID() < pack.firstSampleID
+                        || sample.getSampleID() > pack.lastSampleID) {
+                    throw new IOException("Sample " + sample.getSampleID() + " is outside of "
+                            + "the range of pack " + pack.name);
+                }
+            }
+            pack.mCatalog = SampleCatalog.fromSamples(samples);
+            mLoadCount++;
+        }
+        return pack.mCatalog;
+    }
+
+    /**
+     * Parses the manifest of a pack.
+     * @param pack The pack.
+     * @return The samples in the pack.
+     * @throws IOException Exception thrown if the manifest can't be read.
+     */
+    List<Sample> readPack(Pack pack) throws IOException {
+        return SampleCatalog.readManifest(
+                mAssetManager.open(PACKS_DIR + pack.name + SampleCatalog.MANIFEST_SUFFIX));
+    }
+
+    /**
+     * @return The number of times a pack was parsed.
+     */
+    synchronized int getLoadCount() {
+        return mLoadCount;
+    }
+
+    /**
+     * @param pack The pack.
+     * @return true if the pack is loaded.
+     */
+    synchronized boolean isLoaded(Pack pack) {
+        return pack.mCatalog != null;
+    }
+
+    /**
+     * Drops the loaded packs the last game didn't select once memory is getting low. The packs
+     * in use are kept whatever the level, as the game in progress, or the next one with the same
+     * selection, needs their samples and would otherwise parse them again.
+     * @param level The memory trim level.
+     */
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        if (level < TRIM_MEMORY_RUNNING_LOW) {
+            return;
+        }
+        for (Pack pack : mPacks) {
+            if (!mInUse.contains(pack.name)) {
+                pack.mCatalog = null;
+            }
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * Gets the packs the user selected for their games. Packs that no longer exist are dropped
+     * from the selection, so that if none are left the whole catalog is played again.
+     * @param context The application context.
+     * @return The names of the selected packs, sorted.
+     */
+    static String[] getSelectedPacks(Context context) {
+        SharedPreferences preferences = getPreferences(context);
+        ArrayList<String> packs = new ArrayList<>(preferences.getStringSet(SELECTED_PACKS_KEY,
+                Collections.<String>emptySet()));
+        Collections.sort(packs);
+        String[] selected = packs.toArray(new String[packs.size()]);
+        String[] known = getInstance(context).retainKnown(selected);
+        if (known.length < selected.length) {
+            Log.w(TAG, "Dropping unknown packs from the selection: " + packs);
+            setSelectedPacks(context, known);
+        }
+        return known;
+    }
+
+    /**
+     * Sets the packs the next games are played with.
+     * @param context The application context.
+     * @param names The names of the selected packs. With none, the main catalog is played.
+     */
+    static void setSelectedPacks(Context context, String... names) {
+        getPreferences(context).edit()
+                .putStringSet(SELECTED_PACKS_KEY, new HashSet<>(Arrays.asList(names)))
+                .apply();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(context.getString(R.string.preference_file_key),
+                Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * The IDs of the samples that haven't been asked yet, backed by an int array. Samples are
+ * removed in constant time by swapping the last sample into their place, and a random sample is
+ * picked by its position, so neither depends on the size of the pool.
+ */
+class SamplePool {
+
+    // Sample IDs are indexed in a dense array as long as they don't spread out further than
+    // this multiple of the number of samples, otherwise a map is used instead.
+    private static final int MAX_DENSE_SPREAD = 4;
+
+    private final int[] mSampleIDs;
+    private int mSize;
+    private final int[] mPositions;
+    private final HashMap<Integer, Integer> mSparsePositions;
+
+    /**
+     * Creates a pool.
+     * @param sampleIDs The IDs of the samples in the pool. The array is copied.
+     */
+    SamplePool(int[] sampleIDs) {
+        mSampleIDs = Arrays.copyOf(sampleIDs, sampleIDs.length);
+        mSize = mSampleIDs.length;
+
+        int maxID = -1;
+        boolean hasNegativeID = false;
+        for (int sampleID : mSampleIDs) {
+            maxID = Math.max(maxID, sampleID);
+            hasNegativeID |= sampleID < 0;
+        }
+
+        if (!hasNegativeID && maxID < MAX_DENSE_SPREAD * mSize + 1) {
+            mPositions = new int[maxID + 1];
+            mSparsePositions = null;
+            Arrays.fill(mPositions, -1);
+        } else {
+            mPositions = null;
+            mSparsePositions = new HashMap<>(mSize * 2);
+        }
+        for (int i = 0; i < mSize; i++) {
+            setPosition(mSampleIDs[i], i);
+        }
+    }
+
+    /**
+     * @return The number of samples in the pool.
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @param sampleID The sample ID.
+     * @return true if the sample is in the pool.
+     */
+    boolean contains(int sampleID) {
+        return getPosition(sampleID) >= 0;
+    }
+
+    /**
+     * Removes a sample from the pool.
+     * @param sampleID The ID of the sample to remove.
+     * @return true if the sample was in the pool.
+     */
+    boolean remove(int sampleID) {
+        int position = getPosition(sampleID);
+        if (position < 0) {
+            return false;
+        }
+        mSize--;
+        swap(position, mSize);
+        setPosition(sampleID, -1);
+        return true;
+    }
+
+    /**
+     * Picks a sample from the pool at random, without removing it.
+     * @param random The random number generator to pick with.
+     * @return The ID of the picked sample.
+     */
+    int pick(Random random) {
+        return mSampleIDs[random.nextInt(mSize)];
+    }
+
+    /**
+     * @return The IDs of the samples in the pool, in no particular order.
+     */
+    int[] toArray() {
+        return Arrays.copyOf(mSampleIDs, mSize);
+    }
+
+    private void swap(int i, int j) {
+        if (i == j) {
+            return;
+        }
+        int sampleID = mSampleIDs[i];
+        mSampleIDs[i] = mSampleIDs[j];
+        mSampleIDs[j] = sampleID;
+        setPosition(mSampleIDs[i], i);
+        setPosition(mSampleIDs[j], j);
+    }
+
+    private int getPosition(int sampleID) {
+        if (mPositions != null) {
+            return sampleID >= 0 && sampleID < mPositions.length ? mPositions[sampleID] : -1;
+        }
+        Integer position = mSparsePositions.get(sampleID);
+        return position != null ? position : -1;
+    }
+
+    private void setPosition(int sampleID, int position) {
+        if (mPositions != null) {
+            mPositions[sampleID] = position;
+        } else if (position < 0) {
+            mSparsePositions.remove(sampleID);
+        } else {
+            mSparsePositions.put(sampleID, position);
+        }
+    }
+}
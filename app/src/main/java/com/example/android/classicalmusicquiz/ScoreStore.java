@@ -0,0 +1,211 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the current score and the high score in memory, and writes them to storage in batches.
+ * Setting a score only changes the in-memory value; {@link #flush()} writes whatever changed
+ * since the last write, in the background, as a single write. Flushes that are requested while
+ * a write is still waiting to run are coalesced into it.
+ *
+ * Durability: a score is only guaranteed to be on disk once a flush that was requested after
+ * it has completed. QuizActivity flushes when it is paused and when the game ends. Both scores
+ * are always written together, so after a crash the stored scores are the ones of one complete
+ * flush, never a mix of two.
+ */
+class ScoreStore {
+
+    /**
+     * The storage the scores are written to.
+     */
+    interface Persistence {
+
+        /**
+         * Reads the stored scores.
+         * @return The current score and the high score, in that order.
+         */
+        int[] read();
+
+        /**
+         * Writes both scores at once. Called on the flush thread.
+         * @param currentScore The user's current score.
+         * @param highScore The user's high score.
+         */
+        void write(int currentScore, int highScore);
+    }
+
+    /**
+     * Stores the scores in the app's shared preferences.
+     */
+    static class PreferencesPersistence implements Persistence {
+
+        private static final String CURRENT_SCORE_KEY = "current_score";
+        private static final String HIGH_SCORE_KEY = "high_score";
+
+        private final SharedPreferences mPreferences;
+
+        PreferencesPersistence(Context context) {
+            this(context.getSharedPreferences(
+                    context.getString(R.string.preference_file_key), Context.MODE_PRIVATE));
+        }
+
+        PreferencesPersistence(SharedPreferences preferences) {
+            mPreferences = preferences;
+        }
+
+        @Override
+        public int[] read() {
+            return new int[]{mPreferences.getInt(CURRENT_SCORE_KEY, 0),
+                    mPreferences.getInt(HIGH_SCORE_KEY, 0)};
+        }
+
+        @Override
+        public void write(int currentScore, int highScore) {
+            // Commit synchronously, as this already runs off the main thread, so the flush is
+            // only done once the scores are on disk.
+            mPreferences.edit()
+                    .putInt(CURRENT_SCORE_KEY, currentScore)
+                    .putInt(HIGH_SCORE_KEY, highScore)
+                    .commit();
+        }
+    }
+
+    private static ScoreStore sInstance;
+
+    private final Persistence mPersistence;
+    private final Executor mExecutor;
+    private int mCurrentScore;
+    private int mHighScore;
+    private boolean mDirty;
+    private boolean mWritePending;
+    private boolean mWriting;
+    private int mWriteCount;
+
+    private final Runnable mWrite = new Runnable() {
+        @Override
+        public void run() {
+            int currentScore;
+            int highScore;
+            synchronized (ScoreStore.this) {
+                currentScore = mCurrentScore;
+                highScore = mHighScore;
+                mDirty = false;
+                mWritePending = false;
+                mWriting = true;
+            }
+            try {
+                mPersistence.write(currentScore, highScore);
+            } finally {
+                synchronized (ScoreStore.this) {
+                    mWriting = false;
+                    mWriteCount++;
+                    ScoreStore.this.notifyAll();
+                }
+            }
+        }
+    };
+
+    /**
+     * Creates a store, reading the stored scores.
+     * @param persistence The storage to read and write the scores.
+     * @param executor The executor to write the scores on.
+     */
+    ScoreStore(Persistence persistence, Executor executor) {
+        mPersistence = persistence;
+        mExecutor = executor;
+        int[] scores = persistence.read();
+        mCurrentScore = scores[0];
+        mHighScore = scores[1];
+    }
+
+    /**
+     * Gets the store, reading the scores from the shared preferences the first time.
+     * @param context The application context.
+     * @return The score store.
+     */
+    static synchronized ScoreStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ScoreStore(
+                    new PreferencesPersistence(context.getApplicationContext()),
+                    Executors.newSingleThreadExecutor());
+        }
+        return sInstance;
+    }
+
+    synchronized int getCurrentScore() {
+        return mCurrentScore;
+    }
+
+    synchronized int getHighScore() {
+        return mHighScore;
+    }
+
+    synchronized void setCurrentScore(int currentScore) {
+        setScores(currentScore, mHighScore);
+    }
+
+    synchronized void setHighScore(int highScore) {
+        setScores(mCurrentScore, highScore);
+    }
+
+    /**
+     * Sets both scores. They are only written by the next {@link #flush()}.
+     * @param currentScore The user's current score.
+     * @param highScore The user's high score.
+     */
+    synchronized void setScores(int currentScore, int highScore) {
+        if (currentScore != mCurrentScore || highScore != mHighScore) {
+            mCurrentScore = currentScore;
+            mHighScore = highScore;
+            mDirty = true;
+        }
+    }
+
+    /**
+     * Writes the scores in the background if they changed since the last write. Does nothing
+     * if a write is already waiting to run, as it will write the latest scores.
+     */
+    synchronized void flush() {
+        if (mDirty && !mWritePending) {
+            mWritePending = true;
+            mExecutor.execute(mWrite);
+        }
+    }
+
+    /**
+     * Waits until the scores set so far have been written, after a {@link #flush()}.
+     * @throws InterruptedException Exception thrown if the thread is interrupted while waiting.
+     */
+    synchronized void awaitFlush() throws InterruptedException {
+        while (mWritePending || mWriting) {
+            wait();
+        }
+    }
+
+    /**
+     * @return The number of times the scores were written to storage.
+     */
+    synchronized int getWriteCount() {
+        return mWriteCount;
+    }
+}
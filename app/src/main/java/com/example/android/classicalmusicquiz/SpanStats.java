@@ -0,0 +1,143 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Aggregates the durations of the spans recorded by {@link Tracer} across runs, such as the
+ * trace dumps of several cold starts, into percentiles per span name.
+ */
+class SpanStats {
+
+    private final LinkedHashMap<String, Durations> mDurations = new LinkedHashMap<>();
+
+    /**
+     * The durations of a span, in the order they were added.
+     */
+    private static class Durations {
+        long[] values = new long[8];
+        int count;
+    }
+
+    /**
+     * Adds a duration of a span.
+     * @param name The name of the span.
+     * @param durationNanos How long the span took, in nanoseconds.
+     */
+    void add(String name, long durationNanos) {
+        Durations durations = mDurations.get(name);
+        if (durations == null) {
+            durations = new Durations();
+            mDurations.put(name, durations);
+        } else if (durations.count == durations.values.length) {
+            durations.values = Arrays.copyOf(durations.values, durations.count * 2);
+        }
+        durations.values[durations.count++] = durationNanos;
+    }
+
+    /**
+     * Adds the durations of recorded spans.
+     * @param spans The spans, as returned by {@link Tracer#getSpans()}.
+     */
+    void addAll(List<Tracer.Span> spans) {
+        for (Tracer.Span span : spans) {
+            add(span.name, span.durationNanos);
+        }
+    }
+
+    /**
+     * Adds the durations of the spans in a dump written by {@link Tracer#dump(java.io.Writer)}.
+     * Lines starting with '#' are skipped.
+     * @param reader The reader to read the dump from. It isn't closed.
+     * @throws IOException Exception thrown if the dump can't be read or is malformed.
+     */
+    void readDump(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (fields.length != 3) {
+                throw new IOException("Malformed span: " + line);
+            }
+            try {
+                add(fields[0], Long.parseLong(fields[2]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed span: " + line, e);
+            }
+        }
+    }
+
+    /**
+     * @return The names of the spans, in the order they were first added.
+     */
+    Set<String> getNames() {
+        return mDurations.keySet();
+    }
+
+    /**
+     * @param name The name of the span.
+     * @return The number of durations added for the span.
+     */
+    int getCount(String name) {
+        Durations durations = mDurations.get(name);
+        return durations != null ? durations.count : 0;
+    }
+
+    /**
+     * Gets a percentile of the durations of a span, by the nearest-rank method, so it is always
+     * one of the durations added.
+     * @param name The name of the span.
+     * @param percentile The percentile, from 0 (exclusive) to 100.
+     * @return The duration at the percentile, in nanoseconds, or -1 if there are none.
+     */
+    long getPercentile(String name, double percentile) {
+        int count = getCount(name);
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(mDurations.get(name).values, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return sorted[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    /**
+     * Formats the count, p50, p95 and p99 of each span, one line per span, in milliseconds.
+     * @return The table of the spans.
+     */
+    String format() {
+        StringBuilder table = new StringBuilder(String.format(Locale.US,
+                "%-24s %6s %9s %9s %9s%n", "span", "count", "p50 ms", "p95 ms", "p99 ms"));
+        for (String name : getNames()) {
+            table.append(String.format(Locale.US, "%-24s %6d %9.2f %9.2f %9.2f%n", name,
+                    getCount(name), getPercentile(name, 50) / 1e6,
+                    getPercentile(name, 95) / 1e6, getPercentile(name, 99) / 1e6));
+        }
+        return table.toString();
+    }
+}
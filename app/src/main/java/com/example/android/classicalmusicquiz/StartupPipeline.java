@@ -0,0 +1,235 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the steps of a screen's initialization as stages, each on its own executor, so that the
+ * slow ones (reading the catalog, decoding images) run in the background while the UI is
+ * already shown, and only binding the results runs on the main thread. A stage starts once all
+ * the stages it depends on have finished; stages that don't depend on each other run at the
+ * same time if their executors allow it.
+ *
+ * The time each stage took is recorded, from when it started running to when it finished, so
+ * that startup regressions can be traced to a stage.
+ */
+class StartupPipeline {
+
+    /**
+     * Receives the progress of the pipeline. Called on the thread of the stage concerned.
+     */
+    interface Listener {
+
+        /**
+         * Called when a stage has finished.
+         * @param name The name of the stage.
+         * @param millis How long the stage took to run, in milliseconds.
+         */
+        void onStageFinished(String name, long millis);
+
+        /**
+         * Called when a stage has failed. The stages that depend on it are not run.
+         * @param name The name of the stage.
+         * @param error The error the stage threw.
+         */
+        void onStageFailed(String name, Exception error);
+
+        /**
+         * Called when all the stages have finished.
+         * @param millis How long the pipeline took, from its start, in milliseconds.
+         */
+        void onFinished(long millis);
+    }
+
+    /**
+     * The work of a stage.
+     */
+    interface Work {
+
+        /**
+         * Does the work. Results are handed to later stages through fields of the caller; the
+         * pipeline makes sure they are visible to the stages that depend on this one.
+         * @throws Exception Exception thrown if the stage fails.
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * A step of the initialization.
+     */
+    static class Stage {
+        private final String mName;
+        private final Executor mExecutor;
+        private final Work mWork;
+        private final ArrayList<Stage> mDependents = new ArrayList<>();
+        private int mPendingDependencies;
+
+        private Stage(String name, Executor executor, Work work) {
+            mName = name;
+            mExecutor = executor;
+            mWork = work;
+        }
+    }
+
+    private final Listener mListener;
+    private final ArrayList<Stage> mStages = new ArrayList<>();
+    private final LinkedHashMap<String, Long> mStageMillis = new LinkedHashMap<>();
+    private long mStartedAt;
+    private int mFinishedCount;
+    private boolean mStarted;
+    private boolean mCancelled;
+    private boolean mFailed;
+
+    /**
+     * Creates an empty pipeline.
+     * @param listener The listener to report the progress to.
+     */
+    StartupPipeline(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Adds a stage. Stages can only be added before the pipeline is started.
+     * @param name The name of the stage, which its timing is reported under.
+     * @param executor The executor to run the stage on.
+     * @param work The work of the stage.
+     * @param dependencies The stages that must have finished before this one starts.
+     * @return The stage, to be passed as a dependency of later stages.
+     */
+    synchronized Stage addStage(String name, Executor executor, Work work,
+                                Stage... dependencies) {
+        if (mStarted) {
+            throw new IllegalStateException("The pipeline was already started");
+        }
+        Stage stage = new Stage(name, executor, work);
+        for (Stage dependency : dependencies) {
+            dependency.mDependents.add(stage);
+            stage.mPendingDependencies++;
+        }
+        mStages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Starts the stages that don't depend on any other.
+     */
+    void start() {
+        ArrayList<Stage> ready = new ArrayList<>();
+        synchronized (this) {
+            if (mStarted) {
+                throw new IllegalStateException("The pipeline was already started");
+            }
+            mStarted = true;
+            mStartedAt = System.nanoTime();
+            for (Stage stage : mStages) {
+                if (stage.mPendingDependencies == 0) {
+                    ready.add(stage);
+                }
+            }
+        }
+        for (Stage stage : ready) {
+            schedule(stage);
+        }
+    }
+
+    /**
+     * Stops the pipeline: the stages that haven't started yet are not run. A stage that is
+     * already running is left to finish.
+     */
+    synchronized void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * @param name The name of the stage.
+     * @return How long the stage took to run, in milliseconds, or -1 if it hasn't finished.
+     */
+    synchronized long getStageMillis(String name) {
+        Long millis = mStageMillis.get(name);
+        return millis != null ? millis : -1;
+    }
+
+    /**
+     * @return How long each stage that has finished took to run, in milliseconds, in the order
+     * they finished.
+     */
+    synchronized LinkedHashMap<String, Long> getStageMillis() {
+        return new LinkedHashMap<>(mStageMillis);
+    }
+
+    /**
+     * @return true if all the stages have finished.
+     */
+    synchronized boolean isFinished() {
+        return mStarted && mFinishedCount == mStages.size();
+    }
+
+    private void schedule(final Stage stage) {
+        stage.mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                runStage(stage);
+            }
+        });
+    }
+
+    private void runStage(Stage stage) {
+        synchronized (this) {
+            if (mCancelled || mFailed) {
+                return;
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            stage.mWork.run();
+        } catch (Exception e) {
+            synchronized (this) {
+                mFailed = true;
+            }
+            mListener.onStageFailed(stage.mName, e);
+            return;
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        // Start the stages that were only waiting for this one.
+        ArrayList<Stage> ready = new ArrayList<>();
+        boolean finished;
+        long totalMillis;
+        synchronized (this) {
+            mStageMillis.put(stage.mName, millis);
+            mFinishedCount++;
+            finished = mFinishedCount == mStages.size();
+            totalMillis = (System.nanoTime() - mStartedAt) / 1000000;
+            for (Stage dependent : stage.mDependents) {
+                if (--dependent.mPendingDependencies == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        mListener.onStageFinished(stage.mName, millis);
+        if (finished) {
+            mListener.onFinished(totalMillis);
+        }
+        for (Stage dependent : ready) {
+            schedule(dependent);
+        }
+    }
+}
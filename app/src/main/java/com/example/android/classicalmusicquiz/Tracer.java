@@ -0,0 +1,187 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records named spans of time, such as loading the catalog or preparing the player, into a ring
+ * buffer in memory, so the most recent ones can be dumped to a file and aggregated across runs
+ * with {@link SpanStats}.
+ *
+ * Spans are measured with the static {@link #begin()} and {@link #end(String, long)}, which do
+ * nothing but read a field while tracing is disabled, so they can stay in release builds:
+ * <pre>
+ * long start = Tracer.begin();
+ * loadCatalog();
+ * Tracer.end("catalog.load", start);
+ * </pre>
+ */
+class Tracer {
+
+    static final String DUMP_HEADER = "# span\tstart_ns\tduration_ns";
+
+    // Enough for a few cold starts and games.
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static volatile Tracer sInstance;
+
+    private final String[] mNames;
+    private final long[] mStarts;
+    private final long[] mDurations;
+    private int mNext;
+    private int mSize;
+
+    /**
+     * A recorded span.
+     */
+    static class Span {
+        final String name;
+        final long startNanos;
+        final long durationNanos;
+
+        Span(String name, long startNanos, long durationNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    /**
+     * Creates a tracer that keeps the given number of most recent spans.
+     * @param capacity The number of spans kept.
+     */
+    Tracer(int capacity) {
+        mNames = new String[capacity];
+        mStarts = new long[capacity];
+        mDurations = new long[capacity];
+    }
+
+    /**
+     * Starts tracing, if it isn't started yet.
+     */
+    static synchronized void enable() {
+        if (sInstance == null) {
+            sInstance = new Tracer(DEFAULT_CAPACITY);
+        }
+    }
+
+    /**
+     * Stops tracing and drops the recorded spans.
+     */
+    static synchronized void disable() {
+        sInstance = null;
+    }
+
+    /**
+     * @return The tracer spans are recorded to, or null if tracing is disabled.
+     */
+    static Tracer getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Starts a span.
+     * @return The start time of the span, to pass to {@link #end(String, long)}, or 0 if tracing
+     * is disabled.
+     */
+    static long begin() {
+        return sInstance != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Ends a span and records it, if tracing is enabled.
+     * @param name The name of the span. Use a constant, so nothing is allocated.
+     * @param startNanos The start time returned by {@link #begin()}.
+     */
+    static void end(String name, long startNanos) {
+        Tracer tracer = sInstance;
+        if (tracer != null && startNanos != 0) {
+            tracer.record(name, startNanos, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records a span, overwriting the oldest one if the buffer is full.
+     * @param name The name of the span.
+     * @param startNanos When the span started, in {@link System#nanoTime()} time.
+     * @param durationNanos How long the span took, in nanoseconds.
+     */
+    synchronized void record(String name, long startNanos, long durationNanos) {
+        mNames[mNext] = name;
+        mStarts[mNext] = startNanos;
+        mDurations[mNext] = durationNanos;
+        mNext = (mNext + 1) % mNames.length;
+        mSize = Math.min(mSize + 1, mNames.length);
+    }
+
+    /**
+     * @return The spans in the buffer, oldest first.
+     */
+    synchronized List<Span> getSpans() {
+        ArrayList<Span> spans = new ArrayList<>(mSize);
+        int first = (mNext - mSize + mNames.length) % mNames.length;
+        for (int i = 0; i < mSize; i++) {
+            int index = (first + i) % mNames.length;
+            spans.add(new Span(mNames[index], mStarts[index], mDurations[index]));
+        }
+        return spans;
+    }
+
+    /**
+     * Drops the recorded spans.
+     */
+    synchronized void clear() {
+        mNext = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Writes the spans in the buffer, oldest first, as tab-separated lines of name, start and
+     * duration in nanoseconds, after a header line. {@link SpanStats#readDump} reads them back.
+     * @param writer The writer to write to. It isn't closed.
+     * @throws IOException Exception thrown if the writer fails.
+     */
+    void dump(Writer writer) throws IOException {
+        writer.write(DUMP_HEADER);
+        writer.write('\n');
+        for (Span span : getSpans()) {
+            writer.write(span.name + '\t' + span.startNanos + '\t' + span.durationNanos + '\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the spans in the buffer to a file, replacing it.
+     * @param file The file to write to.
+     * @throws IOException Exception thrown if the file can't be written.
+     */
+    void dump(File file) throws IOException {
+        Writer writer = new BufferedWriter(new FileWriter(file));
+        try {
+            dump(writer);
+        } finally {
+            writer.close();
+        }
+    }
+}
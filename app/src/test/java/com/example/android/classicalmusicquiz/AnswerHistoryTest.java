@@ -0,0 +1,179 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link AnswerHistory}, on a catalog of 4 composers with 2 samples each. The
+ * answers are written on the calling thread.
+ */
+public class AnswerHistoryTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final DistractorIndex mIndex = new DistractorIndex(
+            new int[]{0, 1, 2, 3, 4, 5, 6, 7},
+            new int[]{10, 10, 20, 20, 30, 30, 40, 40},
+            new int[]{1, 1, 1, 1, 2, 2, 2, 2});
+
+    @Test
+    public void queries_countAnswers() {
+        AnswerHistory history = open();
+        history.record(0, 0, 1000, 1);
+        history.record(0, 2, 3000, 2);
+        history.record(1, 1, 2000, 3);
+        history.record(4, 5, 2000, 4);
+
+        assertEquals(4, history.getAnswerCount());
+        assertEquals(2, history.getCorrectCount());
+        assertEquals(0.5f, history.getAccuracy(), 0);
+        assertEquals(2000, history.getAverageResponseMillis());
+        assertEquals(2, history.getAnswerCount(0));
+        assertEquals(0.5f, history.getMissRate(0), 0);
+        assertEquals(0, history.getMissRate(7), 0);
+
+        int composer = mIndex.getComposer(0);
+        assertEquals(3, history.getComposerAnswerCount(composer));
+        assertEquals(2 / 3f, history.getComposerAccuracy(composer), 1e-6);
+        assertEquals(mIndex.getComposer(4), history.getHardestComposer(1));
+        assertEquals(composer, history.getHardestComposer(2));
+        assertEquals(-1, history.getHardestComposer(4));
+    }
+
+    @Test
+    public void setIndex_renumbersComposers() {
+        AnswerHistory history = open();
+        history.record(0, 0, 1000, 1);
+        history.record(1, 2, 1000, 2);
+        history.record(8, 8, 1000, 3);
+        assertEquals(-1, mIndex.getComposer(8));
+
+        // A manifest adds a composer, and a sample by the first one that was answered before.
+        DistractorIndex index = new DistractorIndex(
+                new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9},
+                new int[]{10, 10, 20, 20, 30, 30, 40, 40, 10, 5},
+                new int[]{1, 1, 1, 1, 2, 2, 2, 2, 1, 0});
+        history.setIndex(index);
+
+        int composer = index.getComposer(0);
+        assertEquals(3, history.getComposerAnswerCount(composer));
+        assertEquals(2 / 3f, history.getComposerAccuracy(composer), 1e-6);
+        assertEquals(0, history.getComposerAnswerCount(index.getComposer(9)));
+        assertEquals(composer, history.getHardestComposer(1));
+        assertArrayEquals(index.getSampleIDs(composer), history.getComposerSampleIDs(composer));
+        assertEquals(3, history.getAnswerCount());
+    }
+
+    @Test
+    public void reopen_restoresFromSnapshot() {
+        AnswerHistory history = open();
+        recordGame(history, 100);
+        history.flush();
+
+        assertSameStats(history, open());
+    }
+
+    @Test
+    public void reopen_withoutSnapshot_replaysLog() {
+        AnswerHistory history = open();
+        recordGame(history, 100);
+        history.flush();
+        assertTrue(new File(mFolder.getRoot(), "answer_history.snapshot").delete());
+
+        assertSameStats(history, open());
+    }
+
+    @Test
+    public void reopen_replaysAnswersAfterSnapshot() throws IOException {
+        AnswerHistory history = open();
+        recordGame(history, 40);
+        history.flush();
+        File snapshot = new File(mFolder.getRoot(), "answer_history.snapshot");
+        byte[] olderSnapshot = Files.readAllBytes(snapshot.toPath());
+        recordGame(history, 70);
+        history.flush();
+
+        // As if the app died after appending answers but before replacing the snapshot.
+        FileOutputStream out = new FileOutputStream(snapshot);
+        out.write(olderSnapshot);
+        out.close();
+
+        assertSameStats(history, open());
+    }
+
+    @Test
+    public void reopen_dropsIncompleteAnswer() throws IOException {
+        AnswerHistory history = open();
+        recordGame(history, 10);
+        history.flush();
+        assertTrue(new File(mFolder.getRoot(), "answer_history.snapshot").delete());
+
+        // As if the app died half way through appending an answer.
+        File log = new File(mFolder.getRoot(), "answer_history.log");
+        RandomAccessFile file = new RandomAccessFile(log, "rw");
+        file.setLength(file.length() + AnswerHistory.RECORD_SIZE / 2);
+        file.close();
+
+        AnswerHistory reopened = open();
+        assertSameStats(history, reopened);
+
+        // The incomplete answer is cut off before the next ones are appended.
+        reopened.record(3, 3, 500, 0);
+        reopened.flush();
+        assertEquals(AnswerHistory.LOG_HEADER_SIZE + 11 * AnswerHistory.RECORD_SIZE,
+                log.length());
+        assertTrue(new File(mFolder.getRoot(), "answer_history.snapshot").delete());
+        assertEquals(11, open().getAnswerCount());
+    }
+
+    @Test
+    public void record_writesFullBatches() {
+        AnswerHistory history = open();
+        recordGame(history, AnswerHistory.BATCH_SIZE);
+        assertEquals(AnswerHistory.BATCH_SIZE, open().getAnswerCount());
+    }
+
+    private AnswerHistory open() {
+        return new AnswerHistory(mFolder.getRoot(), mIndex, DIRECT);
+    }
+
+    private static void recordGame(AnswerHistory history, int answers) {
+        for (int i = 0; i < answers; i++) {
+            int sampleID = (i * 5) % 8;
+            int chosenSampleID = i % 3 == 0 ? (sampleID + 2) % 8 : sampleID;
+            history.record(sampleID, chosenSampleID, 500 + i, 1000L * i);
+        }
+    }
+
+    private void assertSameStats(AnswerHistory expected, AnswerHistory actual) {
+        assertEquals(expected.getAnswerCount(), actual.getAnswerCount());
+        assertEquals(expected.getCorrectCount(), actual.getCorrectCount());
+        assertEquals(expected.getAverageResponseMillis(), actual.getAverageResponseMillis());
+        for (int sampleID = 0; sampleID < 8; sampleID++) {
+            assertEquals(expected.getAnswerCount(sampleID), actual.getAnswerCount(sampleID));
+            assertEquals(expected.getMissRate(sampleID), actual.getMissRate(sampleID), 0);
+        }
+        for (int composer = 0; composer < mIndex.getComposerCount(); composer++) {
+            assertEquals(expected.getComposerAccuracy(composer),
+                    actual.getComposerAccuracy(composer), 0);
+        }
+    }
+}
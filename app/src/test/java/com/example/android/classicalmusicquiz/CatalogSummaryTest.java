@@ -0,0 +1,59 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CatalogSummary}.
+ */
+public class CatalogSummaryTest {
+
+    private static final int HASH = 0x5eed1234;
+    private static final int BUILD_VERSION = 3;
+
+    @Test
+    public void fromSamples_listsEachComposerOnce() {
+        CatalogSummary summary = CatalogSummary.fromSamples(new Sample[]{
+                sample(0, "Bach"), sample(1, "Mozart"), sample(2, "Bach"),
+                sample(3, null), sample(4, "Chopin")}, HASH, BUILD_VERSION);
+
+        assertEquals(5, summary.getEntryCount());
+        assertArrayEquals(new String[]{"Bach", "Mozart", "Chopin"}, summary.getComposers());
+    }
+
+    @Test
+    public void write_isReadBack() throws IOException {
+        CatalogSummary summary = CatalogSummary.fromSamples(new Sample[]{
+                sample(0, "Beethoven"), sample(1, "Dvo\u0159\u00e1k")}, HASH, BUILD_VERSION);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        summary.write(bytes);
+
+        CatalogSummary read = CatalogSummary.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(2, read.getEntryCount());
+        assertEquals(HASH, read.getContentHash());
+        assertEquals(BUILD_VERSION, read.getBuildVersion());
+        assertArrayEquals(new String[]{"Beethoven", "Dvo\u0159\u00e1k"}, read.getComposers());
+    }
+
+    @Test
+    public void matches_onlySameManifestAndBuild() {
+        CatalogSummary summary = new CatalogSummary(2, HASH, BUILD_VERSION, new String[0]);
+        assertTrue(summary.matches(HASH, BUILD_VERSION));
+        assertFalse(summary.matches(HASH + 1, BUILD_VERSION));
+        assertFalse(summary.matches(HASH, BUILD_VERSION + 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherFiles() throws IOException {
+        CatalogSummary.read(new ByteArrayInputStream(new byte[]{'S', 'C', 'A', 'T', 0, 0, 0, 2}));
+    }
+
+    private static Sample sample(int sampleID, String composer) {
+        return new Sample(sampleID, composer, null, "Sample " + sampleID, null, null);
+    }
+}
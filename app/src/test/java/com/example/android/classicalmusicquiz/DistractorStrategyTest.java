@@ -0,0 +1,140 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link DistractorStrategy} implementations, on a catalog of 12 composers
+ * with 3 samples each, split over 3 eras.
+ */
+public class DistractorStrategyTest {
+
+    private static final int COMPOSERS = 12;
+    private static final int SAMPLES_PER_COMPOSER = 3;
+    private static final int ERAS = 3;
+    private static final int DISTRACTORS = 3;
+    private static final int ROUNDS = 200;
+
+    private final DistractorIndex mIndex = buildIndex();
+    private final Random mRandom = new Random(1);
+
+    private static DistractorIndex buildIndex() {
+        int size = COMPOSERS * SAMPLES_PER_COMPOSER;
+        int[] sampleIDs = new int[size];
+        int[] composerKeys = new int[size];
+        int[] eraKeys = new int[size];
+        for (int i = 0; i < size; i++) {
+            // Sparse, unordered IDs and keys, as a catalog may have them.
+            sampleIDs[i] = (size - i) * 1000;
+            composerKeys[i] = 7 * (i % COMPOSERS) + 100;
+            eraKeys[i] = (i % COMPOSERS) % ERAS + 500;
+        }
+        return new DistractorIndex(sampleIDs, composerKeys, eraKeys);
+    }
+
+    @Test
+    public void index_groupsComposersByEra() {
+        assertEquals(COMPOSERS, mIndex.getComposerCount());
+        int composer = mIndex.getComposer(1000);
+        assertTrue(composer >= 0);
+        assertEquals(COMPOSERS / ERAS, mIndex.getComposers(mIndex.getEra(composer)).length);
+        assertEquals(-1, mIndex.getComposer(1));
+    }
+
+    @Test
+    public void random_picksDistinctOtherComposers() {
+        DistractorStrategy strategy = new RandomDistractorStrategy();
+        for (int round = 0; round < ROUNDS; round++) {
+            int answer = pickSample();
+            int[] distractors = strategy.pickDistractors(mIndex, answer, DISTRACTORS, 1f,
+                    mRandom);
+            assertDistinctComposers(answer, distractors);
+        }
+    }
+
+    @Test
+    public void era_hardestPicksSameEra() {
+        DistractorStrategy strategy = new EraDistractorStrategy();
+        for (int round = 0; round < ROUNDS; round++) {
+            int answer = pickSample();
+            int[] distractors = strategy.pickDistractors(mIndex, answer, DISTRACTORS, 1f,
+                    mRandom);
+            assertDistinctComposers(answer, distractors);
+            int answerEra = mIndex.getEra(mIndex.getComposer(answer));
+            for (int distractor : distractors) {
+                assertEquals(answerEra, mIndex.getEra(mIndex.getComposer(distractor)));
+            }
+        }
+    }
+
+    @Test
+    public void era_easiestPicksOtherEras() {
+        DistractorStrategy strategy = new EraDistractorStrategy();
+        for (int round = 0; round < ROUNDS; round++) {
+            int answer = pickSample();
+            int[] distractors = strategy.pickDistractors(mIndex, answer, DISTRACTORS, 0f,
+                    mRandom);
+            assertDistinctComposers(answer, distractors);
+            int answerEra = mIndex.getEra(mIndex.getComposer(answer));
+            for (int distractor : distractors) {
+                assertNotEquals(answerEra, mIndex.getEra(mIndex.getComposer(distractor)));
+            }
+        }
+    }
+
+    @Test
+    public void era_fallsBackWhenEraRunsOut() {
+        // Each era only has 3 other composers, so asking for more takes them from other eras.
+        int answer = pickSample();
+        int[] distractors = new EraDistractorStrategy().pickDistractors(mIndex, answer, 6, 1f,
+                mRandom);
+        assertEquals(6, distractors.length);
+        assertDistinctComposers(answer, distractors);
+    }
+
+    @Test
+    public void strategies_pickFewerFromSmallCatalog() {
+        DistractorIndex index = new DistractorIndex(new int[]{1, 2, 3},
+                new int[]{10, 20, 10}, new int[]{-1, -1, -1});
+        int[] distractors = new EraDistractorStrategy().pickDistractors(index, 1, DISTRACTORS,
+                1f, mRandom);
+        assertArrayEquals(new int[]{2}, distractors);
+        distractors = new RandomDistractorStrategy().pickDistractors(index, 3, DISTRACTORS,
+                0f, mRandom);
+        assertArrayEquals(new int[]{2}, distractors);
+    }
+
+    @Test
+    public void generateQuestion_includesAnswerOnce() {
+        for (int round = 0; round < ROUNDS; round++) {
+            int answer = pickSample();
+            int[] answers = QuizUtils.generateQuestion(answer, mIndex,
+                    new EraDistractorStrategy(), 0.5f, mRandom);
+            assertEquals(DISTRACTORS + 1, answers.length);
+            int count = 0;
+            for (int sampleID : answers) {
+                if (sampleID == answer) {
+                    count++;
+                }
+            }
+            assertEquals(1, count);
+        }
+    }
+
+    private int pickSample() {
+        return (mRandom.nextInt(COMPOSERS * SAMPLES_PER_COMPOSER) + 1) * 1000;
+    }
+
+    private void assertDistinctComposers(int answer, int[] distractors) {
+        assertTrue(distractors.length >= DISTRACTORS);
+        HashSet<Integer> composers = new HashSet<>();
+        composers.add(mIndex.getComposer(answer));
+        for (int distractor : distractors) {
+            assertTrue(composers.add(mIndex.getComposer(distractor)));
+        }
+    }
+}
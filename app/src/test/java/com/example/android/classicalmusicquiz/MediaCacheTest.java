@@ -0,0 +1,160 @@
+package com.example.android.classicalmusicquiz;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads samples through the media cache from a local HTTP server standing in for a remote host.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class MediaCacheTest {
+
+    private static final int SAMPLE_BYTES = 40 * 1024;
+
+    // Room for two samples but not three.
+    private static final long MAX_CACHE_BYTES = SAMPLE_BYTES * 5 / 2;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final AtomicInteger mServerRequests = new AtomicInteger();
+    private HttpServer mServer;
+    private SimpleCache mCache;
+    private MediaCache.Stats mStats;
+    private DataSource.Factory mFactory;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mServerRequests.incrementAndGet();
+                byte[] sample = sampleBytes(exchange.getRequestURI().getPath());
+                exchange.sendResponseHeaders(200, sample.length);
+                OutputStream body = exchange.getResponseBody();
+                body.write(sample);
+                body.close();
+            }
+        });
+        mServer.start();
+
+        mCache = new SimpleCache(mFolder.newFolder(),
+                new LeastRecentlyUsedCacheEvictor(MAX_CACHE_BYTES));
+        mStats = new MediaCache.Stats();
+        mFactory = MediaCache.buildDataSourceFactory(RuntimeEnvironment.application, mCache,
+                mStats);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void read_servesRepeatedSampleFromCache() throws Exception {
+        assertArrayEquals(sampleBytes("/a.mp3"), read(remote("a.mp3")));
+        assertArrayEquals(sampleBytes("/a.mp3"), read(remote("a.mp3")));
+
+        assertEquals(1, mServerRequests.get());
+        assertEquals(2, mStats.getRequestCount());
+        assertEquals(1, mStats.getHitCount());
+        assertEquals(SAMPLE_BYTES, mStats.getUpstreamBytes());
+        assertEquals(SAMPLE_BYTES, mStats.getCachedBytes());
+        assertEquals(0.5, mStats.getByteHitRate(), 1e-9);
+    }
+
+    @Test
+    public void read_evictsLeastRecentlyReadSample() throws Exception {
+        read(remote("a.mp3"));
+        Thread.sleep(5);
+        read(remote("b.mp3"));
+        Thread.sleep(5);
+        read(remote("a.mp3"));
+        Thread.sleep(5);
+
+        // There's no room for c with a and b, and b was read longest ago.
+        read(remote("c.mp3"));
+        assertTrue(mCache.getCacheSpace() <= MAX_CACHE_BYTES);
+        assertEquals(3, mServerRequests.get());
+
+        read(remote("a.mp3"));
+        assertEquals(3, mServerRequests.get());
+        read(remote("b.mp3"));
+        assertEquals(4, mServerRequests.get());
+    }
+
+    @Test
+    public void read_bypassesCacheForLocalSamples() throws Exception {
+        File file = mFolder.newFile("local.mp3");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(sampleBytes("/local.mp3"));
+        out.close();
+
+        assertArrayEquals(sampleBytes("/local.mp3"), read(Uri.fromFile(file)));
+        assertEquals(0, mCache.getCacheSpace());
+        assertEquals(0, mStats.getRequestCount());
+        assertFalse(MediaCache.isCached(Uri.parse("asset:///sample.mp3")));
+    }
+
+    private Uri remote(String path) {
+        return Uri.parse("http://127.0.0.1:" + mServer.getAddress().getPort() + "/" + path);
+    }
+
+    private byte[] read(Uri uri) throws IOException {
+        DataSource dataSource = mFactory.createDataSource();
+        try {
+            dataSource.open(new DataSpec(uri));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    /**
+     * @return Bytes that differ from one path to the next.
+     */
+    private static byte[] sampleBytes(String path) {
+        byte[] bytes = new byte[SAMPLE_BYTES];
+        int seed = path.hashCode();
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (seed + i * 31);
+        }
+        return bytes;
+    }
+}
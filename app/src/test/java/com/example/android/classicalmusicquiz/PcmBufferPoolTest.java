@@ -0,0 +1,76 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PcmBufferPool}.
+ */
+public class PcmBufferPoolTest {
+
+    private static final int BUFFER_BYTES = 4410 * 4;
+
+    @Test
+    public void put_storesDecodedAudio() {
+        PcmBufferPool pool = new PcmBufferPool(2, BUFFER_BYTES);
+        ByteBuffer buffer = pool.obtainBuffer();
+        assertTrue(buffer.isDirect());
+        assertEquals(BUFFER_BYTES, buffer.remaining());
+
+        // A tenth of a second of 44.1 kHz stereo.
+        buffer.put(new byte[BUFFER_BYTES]);
+        pool.put("a", buffer, 44100, 2);
+        assertTrue(pool.contains("a"));
+
+        PcmBufferPool.Entry entry = pool.acquire("a");
+        assertEquals(BUFFER_BYTES, entry.getSize());
+        assertEquals(100000, entry.getDurationUs());
+        assertEquals(BUFFER_BYTES, entry.getData().remaining());
+        assertNull(pool.acquire("b"));
+    }
+
+    @Test
+    public void obtainBuffer_reusesLeastRecentlyUsedUnpinnedBuffer() {
+        PcmBufferPool pool = new PcmBufferPool(2, BUFFER_BYTES);
+        pool.put("a", pool.obtainBuffer(), 44100, 2);
+        ByteBuffer second = pool.obtainBuffer();
+        pool.put("b", second, 44100, 2);
+
+        // Using a makes b the least recently used.
+        pool.release(pool.acquire("a"));
+        ByteBuffer reused = pool.obtainBuffer();
+        assertSame(second, reused);
+        pool.put("c", reused, 44100, 2);
+        assertTrue(pool.contains("a"));
+        assertFalse(pool.contains("b"));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void obtainBuffer_neverEvictsPinnedAudio() {
+        PcmBufferPool pool = new PcmBufferPool(1, BUFFER_BYTES);
+        pool.put("a", pool.obtainBuffer(), 44100, 2);
+        PcmBufferPool.Entry playing = pool.acquire("a");
+        assertNull(pool.obtainBuffer());
+
+        pool.release(playing);
+        assertNotNull(pool.obtainBuffer());
+        assertFalse(pool.contains("a"));
+    }
+
+    @Test
+    public void recycle_returnsBufferToPool() {
+        PcmBufferPool pool = new PcmBufferPool(1, BUFFER_BYTES);
+        ByteBuffer buffer = pool.obtainBuffer();
+        buffer.put((byte) 1);
+        assertNull(pool.obtainBuffer());
+
+        pool.recycle(buffer);
+        ByteBuffer reused = pool.obtainBuffer();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+    }
+}
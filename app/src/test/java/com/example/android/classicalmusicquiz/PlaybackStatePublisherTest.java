@@ -0,0 +1,89 @@
+package com.example.android.classicalmusicquiz;
+
+import android.os.SystemClock;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.*;
+
+/**
+ * Publishes player states to a media session, on Robolectric's main looper and clock.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PlaybackStatePublisherTest {
+
+    private static final long INTERVAL_MS = 250;
+
+    private MediaSessionCompat mSession;
+    private PlaybackStatePublisher mPublisher;
+
+    @Before
+    public void setUp() {
+        mSession = new MediaSessionCompat(RuntimeEnvironment.application, "test");
+        mPublisher = new PlaybackStatePublisher(RuntimeEnvironment.application, mSession,
+                INTERVAL_MS);
+    }
+
+    @After
+    public void tearDown() {
+        mSession.release();
+    }
+
+    @Test
+    public void publish_skipsStatesThatShowNothingNew() {
+        mPublisher.publish(state(PlaybackStateCompat.STATE_PLAYING, 0));
+        ShadowLooper.idleMainLooper(1000);
+
+        // Playing on from where it was is no news, a seek is.
+        mPublisher.publish(state(PlaybackStateCompat.STATE_PLAYING, 1000));
+        mPublisher.publish(state(PlaybackStateCompat.STATE_PLAYING, 5000));
+        assertEquals(2, mPublisher.getPublishedCount());
+        assertEquals(1, mPublisher.getUnchangedCount());
+        assertEquals(1, mPublisher.getNotifiedCount());
+    }
+
+    @Test
+    public void publish_holdsBackUpdatesWithinInterval() {
+        mPublisher.publish(state(PlaybackStateCompat.STATE_PLAYING, 0));
+        mPublisher.publish(state(PlaybackStateCompat.STATE_PAUSED, 0));
+        mPublisher.publish(state(PlaybackStateCompat.STATE_PAUSED, 100));
+        assertEquals(1, mPublisher.getPublishedCount());
+
+        // Only the latest state is published once the interval is over.
+        ShadowLooper.idleMainLooper(INTERVAL_MS);
+        assertEquals(2, mPublisher.getPublishedCount());
+        assertEquals(1, mPublisher.getCoalescedCount());
+        assertEquals(2, mPublisher.getNotifiedCount());
+    }
+
+    @Test
+    public void cancel_dropsHeldBackUpdate() {
+        mPublisher.publish(state(PlaybackStateCompat.STATE_PLAYING, 0));
+        mPublisher.publish(state(PlaybackStateCompat.STATE_PAUSED, 0));
+        mPublisher.cancel();
+        ShadowLooper.idleMainLooper(INTERVAL_MS);
+        assertEquals(1, mPublisher.getPublishedCount());
+
+        // The same state is published again after the notification was removed.
+        mPublisher.publish(state(PlaybackStateCompat.STATE_PLAYING, 0));
+        assertEquals(2, mPublisher.getPublishedCount());
+        assertEquals(2, mPublisher.getNotifiedCount());
+    }
+
+    private static PlaybackStateCompat state(int state, long positionMs) {
+        return new PlaybackStateCompat.Builder()
+                .setActions(PlaybackStateCompat.ACTION_PLAY_PAUSE)
+                .setState(state, positionMs, 1f, SystemClock.elapsedRealtime())
+                .build();
+    }
+}
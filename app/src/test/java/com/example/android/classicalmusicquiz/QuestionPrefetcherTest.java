@@ -0,0 +1,52 @@
+package com.example.android.classicalmusicquiz;
+
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which part of the next question's audio is loaded into the media cache ahead of time.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class QuestionPrefetcherTest {
+
+    private static final String REMOTE_URI = "https://example.com/a.mp3";
+
+    @Test
+    public void buildPrefetchSpec_readsStartOfRemoteSamples() {
+        DataSpec whole = QuestionPrefetcher.buildPrefetchSpec(sample(REMOTE_URI, 0,
+                Sample.END_OF_SAMPLE));
+        assertEquals(REMOTE_URI, whole.uri.toString());
+        assertEquals(0, whole.position);
+        assertEquals(QuestionPrefetcher.PREFETCH_AUDIO_BYTES, whole.length);
+
+        // An excerpt from the start of the sample is read from the start too.
+        DataSpec excerpt = QuestionPrefetcher.buildPrefetchSpec(sample(REMOTE_URI, 0, 30000));
+        assertEquals(0, excerpt.position);
+        assertEquals(QuestionPrefetcher.PREFETCH_AUDIO_BYTES, excerpt.length);
+    }
+
+    @Test
+    public void buildPrefetchSpec_skipsExcerptsFurtherIn() {
+        // The player seeks past the start of the sample, so reading it ahead would be wasted.
+        assertNull(QuestionPrefetcher.buildPrefetchSpec(sample(REMOTE_URI, 5000, 35000)));
+        assertNull(QuestionPrefetcher.buildPrefetchSpec(sample(REMOTE_URI, 5000,
+                Sample.END_OF_SAMPLE)));
+    }
+
+    @Test
+    public void buildPrefetchSpec_skipsLocalSamples() {
+        assertNull(QuestionPrefetcher.buildPrefetchSpec(sample("asset:///a.mp3", 0,
+                Sample.END_OF_SAMPLE)));
+    }
+
+    private static Sample sample(String uri, long clipStartMs, long clipEndMs) {
+        return new Sample(1, "Composer", "Era", "Title", uri, null, clipStartMs, clipEndMs);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.android.classicalmusicquiz;
+
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link QuizLoadControl}.
+ */
+public class QuizLoadControlTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final long MS = 1000;
+
+    private final DefaultAllocator mAllocator = new DefaultAllocator(true, SEGMENT_SIZE);
+    private final QuizLoadControl mLoadControl = new QuizLoadControl(mAllocator, 5000, 30000,
+            500, 1500, 4 * SEGMENT_SIZE);
+
+    @Test
+    public void shouldStartPlayback_afterShortBuffer() {
+        assertFalse(mLoadControl.shouldStartPlayback(499 * MS, false));
+        assertTrue(mLoadControl.shouldStartPlayback(500 * MS, false));
+
+        // Resuming after the buffer ran out waits for a little more.
+        assertFalse(mLoadControl.shouldStartPlayback(1000 * MS, true));
+        assertTrue(mLoadControl.shouldStartPlayback(1500 * MS, true));
+    }
+
+    @Test
+    public void shouldContinueLoading_betweenWatermarks() {
+        mLoadControl.onPrepared();
+        assertTrue(mLoadControl.shouldContinueLoading(0));
+        assertTrue(mLoadControl.shouldContinueLoading(20000 * MS));
+        assertFalse(mLoadControl.shouldContinueLoading(30000 * MS));
+
+        // Loading only picks up again below the low watermark.
+        assertFalse(mLoadControl.shouldContinueLoading(20000 * MS));
+        assertTrue(mLoadControl.shouldContinueLoading(4999 * MS));
+    }
+
+    @Test
+    public void shouldContinueLoading_stopsAtByteCap() {
+        mLoadControl.onPrepared();
+        Allocation[] allocations = new Allocation[4];
+        for (int i = 0; i < 3; i++) {
+            allocations[i] = mAllocator.allocate();
+        }
+        assertTrue(mLoadControl.shouldContinueLoading(1000 * MS));
+
+        allocations[3] = mAllocator.allocate();
+        assertFalse(mLoadControl.shouldContinueLoading(1000 * MS));
+
+        // Playing releases the buffer, and loading picks up again.
+        mAllocator.release(allocations);
+        assertTrue(mLoadControl.shouldContinueLoading(1000 * MS));
+    }
+}
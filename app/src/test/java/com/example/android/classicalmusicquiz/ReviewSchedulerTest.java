@@ -0,0 +1,196 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ReviewScheduler}. The schedule is written on the calling thread.
+ */
+public class ReviewSchedulerTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final int[] SAMPLE_IDS = {0, 1, 2, 3, 4, 5, 6, 7};
+
+    // Later than any new sample is due.
+    private static final long NOW = 100 * ReviewScheduler.DAY_MILLIS;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void peekDue_asksEveryNewSampleOnce() throws IOException {
+        ReviewScheduler scheduler = open(mFolder.newFolder(), SAMPLE_IDS);
+        HashSet<Integer> asked = new HashSet<>();
+        for (int i = 0; i < SAMPLE_IDS.length; i++) {
+            int sampleID = scheduler.peekDue();
+            assertTrue(asked.add(sampleID));
+            scheduler.park(sampleID);
+        }
+        assertEquals(-1, scheduler.peekDue());
+
+        scheduler.startSession(SAMPLE_IDS);
+        assertNotEquals(-1, scheduler.peekDue());
+    }
+
+    @Test
+    public void recordResult_schedulesMissesBeforeCorrectAnswers() throws IOException {
+        ReviewScheduler scheduler = open(mFolder.newFolder(), SAMPLE_IDS);
+        for (int sampleID : SAMPLE_IDS) {
+            scheduler.recordResult(sampleID, sampleID != 5, NOW);
+        }
+        assertEquals(5, scheduler.peekDue());
+        assertEquals(NOW + ReviewScheduler.RELEARN_INTERVAL, scheduler.getDue(5));
+        assertEquals(NOW + ReviewScheduler.FIRST_INTERVAL, scheduler.getDue(0));
+        assertTrue(scheduler.getEase(5) < ReviewScheduler.INITIAL_EASE);
+        assertTrue(scheduler.getEase(0) > ReviewScheduler.INITIAL_EASE);
+    }
+
+    @Test
+    public void recordResult_growsIntervals() throws IOException {
+        ReviewScheduler scheduler = open(mFolder.newFolder(), SAMPLE_IDS);
+        scheduler.recordResult(3, true, NOW);
+        scheduler.recordResult(3, true, NOW);
+        assertEquals(NOW + ReviewScheduler.SECOND_INTERVAL, scheduler.getDue(3));
+        scheduler.recordResult(3, true, NOW);
+        assertTrue(scheduler.getDue(3) > NOW + 2 * ReviewScheduler.SECOND_INTERVAL);
+
+        // A miss starts over, and the ease never drops below the minimum.
+        for (int i = 0; i < 10; i++) {
+            scheduler.recordResult(3, false, NOW);
+        }
+        assertEquals(NOW + ReviewScheduler.RELEARN_INTERVAL, scheduler.getDue(3));
+        assertEquals(ReviewScheduler.MIN_EASE, scheduler.getEase(3), 0);
+    }
+
+    @Test
+    public void recordResult_keepsParkedSamplesParked() throws IOException {
+        ReviewScheduler scheduler = open(mFolder.newFolder(), SAMPLE_IDS);
+        int sampleID = scheduler.peekDue();
+        scheduler.park(sampleID);
+        scheduler.recordResult(sampleID, false, 0);
+        for (int other : SAMPLE_IDS) {
+            if (other != sampleID) {
+                scheduler.recordResult(other, true, NOW);
+            }
+        }
+        assertNotEquals(sampleID, scheduler.peekDue());
+
+        // It is the most due once it is back.
+        scheduler.startSession(SAMPLE_IDS);
+        assertEquals(sampleID, scheduler.peekDue());
+    }
+
+    @Test
+    public void startSession_offersOnlyTheGamesSamples() throws IOException {
+        ReviewScheduler scheduler = open(mFolder.newFolder(), SAMPLE_IDS);
+        int first = scheduler.peekDue();
+        int[] remainingIDs = new int[SAMPLE_IDS.length - 1];
+        int count = 0;
+        for (int sampleID : SAMPLE_IDS) {
+            if (sampleID != first) {
+                remainingIDs[count++] = sampleID;
+            }
+        }
+
+        // A restored game has already asked the first sample.
+        scheduler.startSession(remainingIDs);
+        SamplePool remaining = new SamplePool(remainingIDs);
+        int answer = QuizUtils.getCorrectAnswerID(remaining, scheduler, new Random(1));
+        assertNotEquals(first, answer);
+        assertTrue(remaining.contains(answer));
+        assertEquals(answer, scheduler.peekDue());
+
+        // A game played with samples that aren't scheduled, such as those of sample packs, is
+        // offered none of the others.
+        scheduler.startSession(new int[]{100, 101});
+        assertEquals(-1, scheduler.peekDue());
+        int packAnswer = QuizUtils.getCorrectAnswerID(new SamplePool(new int[]{100, 101}),
+                scheduler, new Random(1));
+        assertTrue(packAnswer == 100 || packAnswer == 101);
+    }
+
+    @Test
+    public void flush_keepsScheduleAcrossSessions() throws IOException {
+        File directory = mFolder.newFolder();
+        ReviewScheduler scheduler = open(directory, SAMPLE_IDS);
+        scheduler.recordResult(2, true, NOW);
+        scheduler.recordResult(6, false, NOW);
+        scheduler.flush();
+
+        // Sample 7 left the catalog and sample 9 joined it.
+        ReviewScheduler reopened = open(directory, new int[]{0, 1, 2, 3, 4, 5, 6, 9});
+        assertEquals(scheduler.getDue(2), reopened.getDue(2));
+        assertEquals(scheduler.getEase(6), reopened.getEase(6), 0);
+        assertEquals(-1, reopened.getDue(7));
+        assertTrue(reopened.getDue(9) < NOW);
+        assertEquals(ReviewScheduler.INITIAL_EASE, reopened.getEase(9), 0);
+    }
+
+    @Test
+    public void setSampleIDs_followsCatalogMidGame() throws IOException {
+        ReviewScheduler scheduler = open(mFolder.newFolder(), SAMPLE_IDS);
+        scheduler.recordResult(2, true, NOW);
+        long due = scheduler.getDue(2);
+        int asked = scheduler.peekDue();
+        scheduler.park(asked);
+
+        // Sample 7 left the catalog and sample 9 joined it.
+        int[] sampleIDs = {9, 0, 1, 2, 3, 4, 5, 6};
+        scheduler.setSampleIDs(sampleIDs);
+        assertEquals(due, scheduler.getDue(2));
+        assertEquals(-1, scheduler.getDue(7));
+        assertEquals(ReviewScheduler.INITIAL_EASE, scheduler.getEase(9), 0);
+
+        // The asked sample and the new one wait for the next game.
+        HashSet<Integer> remaining = new HashSet<>();
+        for (int sampleID = scheduler.peekDue(); sampleID != -1; sampleID = scheduler.peekDue()) {
+            remaining.add(sampleID);
+            scheduler.park(sampleID);
+        }
+        assertEquals(sampleIDs.length - 2, remaining.size());
+        assertFalse(remaining.contains(asked));
+        assertFalse(remaining.contains(9));
+        assertFalse(remaining.contains(7));
+
+        scheduler.startSession(sampleIDs);
+        remaining.clear();
+        for (int sampleID = scheduler.peekDue(); sampleID != -1; sampleID = scheduler.peekDue()) {
+            remaining.add(sampleID);
+            scheduler.park(sampleID);
+        }
+        assertEquals(sampleIDs.length, remaining.size());
+    }
+
+    @Test
+    public void open_startsOverFromCorruptSchedule() throws IOException {
+        File directory = mFolder.newFolder();
+        FileOutputStream out = new FileOutputStream(new File(directory, "review_schedule"));
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+
+        ReviewScheduler scheduler = open(directory, SAMPLE_IDS);
+        for (int sampleID : SAMPLE_IDS) {
+            assertEquals(ReviewScheduler.INITIAL_EASE, scheduler.getEase(sampleID), 0);
+        }
+    }
+
+    private static ReviewScheduler open(File directory, int[] sampleIDs) {
+        return new ReviewScheduler(directory, sampleIDs, DIRECT, new Random(1));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.android.classicalmusicquiz;
+
+import android.content.res.AssetManager;
+import android.util.JsonReader;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the binary catalog generated by the build decodes to the same samples as the
+ * JSON manifest it was compiled from, and that manifests layered over it are applied as deltas.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SampleCatalogTest {
+
+    private static final String MANIFEST = "media.exolist.json";
+    private static final String BINARY_CATALOG = "media.exolist.scat";
+    private static final String STORAGE_MANIFEST = "file:///sdcard/catalogs/a.exolist.json";
+
+    @Test
+    public void binaryCatalog_matchesJsonManifest() throws Exception {
+        AssetManager assetManager = RuntimeEnvironment.application.getAssets();
+        ArrayList<Sample> expected = SampleCatalog.readManifest(assetManager, MANIFEST);
+        BinarySampleCatalog actual = SampleCatalog.readBinaryCatalog(assetManager, BINARY_CATALOG);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameSample(expected.get(i), actual.readSample(i));
+            assertEquals(expected.get(i).getSampleID(), actual.getSampleID(i));
+        }
+    }
+
+    @Test
+    public void catalogs_resolveSameIDs() throws Exception {
+        AssetManager assetManager = RuntimeEnvironment.application.getAssets();
+        SampleCatalog json = SampleCatalog.fromSamples(
+                SampleCatalog.readManifest(assetManager, MANIFEST));
+        SampleCatalog binary = SampleCatalog.fromBinaryCatalog(
+                SampleCatalog.readBinaryCatalog(assetManager, BINARY_CATALOG));
+
+        assertArrayEquals(json.getSampleIDs(), binary.getSampleIDs());
+        for (int sampleID : json.getSampleIDs()) {
+            assertSameSample(json.getSample(sampleID), binary.getSample(sampleID));
+        }
+        assertNull(binary.getSample(-1));
+        assertNull(binary.getSample(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void withManifest_overridesAndAddsSamples() throws Exception {
+        SampleCatalog bundled = readBinaryCatalog();
+        int[] bundledIDs = bundled.getSampleIDs();
+        Sample original = bundled.getSample(bundledIDs[0]);
+        Sample changed = new Sample(bundledIDs[0], original.getComposer(), original.getEra(),
+                "Changed", "file:///changed.mp3", original.getAlbumArtID());
+        Sample other = bundled.getSample(bundledIDs[1]);
+        Sample added = new Sample(1000, other.getComposer(), other.getEra(), "New",
+                "file:///new.mp3", null);
+
+        SampleCatalog layered = bundled.withManifest(STORAGE_MANIFEST,
+                Arrays.asList(changed, added));
+
+        assertEquals(bundled.size() + 1, layered.size());
+        assertEquals(bundledIDs[0], layered.getSampleIDs()[0]);
+        assertSame(changed, layered.getSample(bundledIDs[0]));
+        assertSame(added, layered.getSample(1000));
+        assertSameSample(other, layered.getSample(bundledIDs[1]));
+
+        // The catalog it was made from is left as it was.
+        assertEquals("file:///changed.mp3", layered.getSample(bundledIDs[0]).getUri());
+        assertEquals(original.getUri(), bundled.getSample(bundledIDs[0]).getUri());
+        assertNull(bundled.getSample(1000));
+
+        // The same composer and era get the same keys in the bundled and the layered samples.
+        DistractorIndex index = layered.getDistractorIndex();
+        assertEquals(index.getComposer(bundledIDs[1]), index.getComposer(1000));
+        assertEquals(index.getEra(index.getComposer(bundledIDs[1])),
+                index.getEra(index.getComposer(1000)));
+    }
+
+    @Test
+    public void withManifest_appliesOnlyTheDelta() throws Exception {
+        SampleCatalog bundled = readBinaryCatalog();
+        int bundledID = bundled.getSampleIDs()[0];
+        Sample original = bundled.getSample(bundledID);
+        Sample first = new Sample(1000, "A", "B", "First", "file:///first.mp3", null);
+        Sample second = new Sample(1001, "A", "B", "Second", "file:///second.mp3", null);
+        Sample override = new Sample(bundledID, "A", "B", "Override", "file:///o.mp3", null);
+        SampleCatalog layered = bundled.withManifest(STORAGE_MANIFEST,
+                Arrays.asList(first, override, second));
+
+        // Rewriting the manifest with the same samples doesn't make a new catalog.
+        SampleCatalog same = layered.withManifest(STORAGE_MANIFEST, Arrays.asList(
+                new Sample(1000, "A", "B", "First", "file:///first.mp3", null), override,
+                second));
+        assertSame(layered, same);
+
+        // Dropping entries brings back the samples they overrode.
+        SampleCatalog dropped = layered.withManifest(STORAGE_MANIFEST, Arrays.asList(second));
+        assertNull(dropped.getSample(1000));
+        assertSame(second, dropped.getSample(1001));
+        assertSameSample(original, dropped.getSample(bundledID));
+        assertEquals(bundled.size() + 1, dropped.size());
+
+        // Removing the manifest leaves the bundled catalog.
+        assertSame(bundled, layered.withoutManifest(STORAGE_MANIFEST));
+    }
+
+    @Test
+    public void withManifest_laterManifestsWin() throws Exception {
+        SampleCatalog bundled = readBinaryCatalog();
+        Sample fromAssets = new Sample(1000, "A", "B", "Assets", "asset:///a.mp3", null);
+        Sample fromStorage = new Sample(1000, "A", "B", "Storage", "file:///a.mp3", null);
+
+        SampleCatalog layered = bundled
+                .withManifest(STORAGE_MANIFEST, Arrays.asList(fromStorage))
+                .withManifest("asset:///extra.exolist.json", Arrays.asList(fromAssets));
+        assertSame(fromStorage, layered.getSample(1000));
+        assertSame(fromAssets,
+                layered.withoutManifest(STORAGE_MANIFEST).getSample(1000));
+    }
+
+    @Test
+    public void readEntry_parsesOptionalClipRange() throws Exception {
+        Sample clipped = Sample.readEntry(new JsonReader(new StringReader(
+                "{\"id\":1,\"uri\":\"asset:///a.mp3\",\"clipStartMs\":5000,"
+                        + "\"clipEndMs\":35000}")));
+        assertTrue(clipped.isClipped());
+        assertEquals(5000, clipped.getClipStartMs());
+        assertEquals(35000, clipped.getClipEndMs());
+
+        Sample whole = Sample.readEntry(new JsonReader(new StringReader(
+                "{\"id\":2,\"uri\":\"asset:///b.mp3\"}")));
+        assertFalse(whole.isClipped());
+        assertEquals(0, whole.getClipStartMs());
+        assertEquals(Sample.END_OF_SAMPLE, whole.getClipEndMs());
+    }
+
+    @Test
+    public void findEntries_matchesFullParse() throws Exception {
+        AssetManager assetManager = RuntimeEnvironment.application.getAssets();
+        ArrayList<Sample> samples = SampleCatalog.readManifest(assetManager, MANIFEST);
+        int[] sampleIDs = {samples.get(samples.size() - 1).getSampleID(), -1,
+                samples.get(0).getSampleID(), samples.get(samples.size() / 2).getSampleID()};
+
+        JsonReader reader = new JsonReader(
+                new InputStreamReader(assetManager.open(MANIFEST), "UTF-8"));
+        Sample[] found;
+        try {
+            found = Sample.findEntries(reader, sampleIDs);
+        } finally {
+            reader.close();
+        }
+
+        assertSameSample(samples.get(samples.size() - 1), found[0]);
+        assertNull(found[1]);
+        assertSameSample(samples.get(0), found[2]);
+        assertSameSample(samples.get(samples.size() / 2), found[3]);
+    }
+
+    private static SampleCatalog readBinaryCatalog() throws Exception {
+        return SampleCatalog.fromBinaryCatalog(SampleCatalog.readBinaryCatalog(
+                RuntimeEnvironment.application.getAssets(), BINARY_CATALOG));
+    }
+
+    private static void assertSameSample(Sample expected, Sample actual) {
+        assertEquals(expected.getSampleID(), actual.getSampleID());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getComposer(), actual.getComposer());
+        assertEquals(expected.getEra(), actual.getEra());
+        assertEquals(expected.getUri(), actual.getUri());
+        assertEquals(expected.getAlbumArtID(), actual.getAlbumArtID());
+        assertEquals(expected.getClipStartMs(), actual.getClipStartMs());
+        assertEquals(expected.getClipEndMs(), actual.getClipEndMs());
+    }
+}
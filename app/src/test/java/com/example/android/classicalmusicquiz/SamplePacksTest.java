@@ -0,0 +1,144 @@
+package com.example.android.classicalmusicquiz;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SamplePacksTest {
+
+    @Test
+    public void readIndex_findsPacksByIDRange() throws Exception {
+        SamplePacks.Pack[] packs = SamplePacks.readIndex(index(
+                new SamplePacks.Pack("baroque", 3, 100, 105, 1, new String[]{"Bach", "Vivaldi"}),
+                new SamplePacks.Pack("romantic", 2, 200, 201, 2, new String[]{"Chopin"})));
+        SamplePacks samplePacks = new SamplePacks(null, packs);
+
+        assertEquals(2, packs.length);
+        assertArrayEquals(new String[]{"Bach", "Vivaldi"}, packs[0].composers);
+        assertEquals("baroque", samplePacks.findPack(100).name);
+        assertEquals("baroque", samplePacks.findPack(103).name);
+        assertEquals("romantic", samplePacks.findPack(201).name);
+        assertNull(samplePacks.findPack(99));
+        assertNull(samplePacks.findPack(150));
+        assertNull(samplePacks.findPack(202));
+    }
+
+    @Test(expected = IOException.class)
+    public void readIndex_rejectsOverlappingPacks() throws Exception {
+        SamplePacks.readIndex(index(
+                new SamplePacks.Pack("baroque", 3, 100, 200, 1, new String[0]),
+                new SamplePacks.Pack("romantic", 2, 200, 201, 2, new String[0])));
+    }
+
+    @Test
+    public void retainKnown_dropsRemovedPacks() throws Exception {
+        SamplePacks samplePacks = new SamplePacks(null, new SamplePacks.Pack[]{
+                new SamplePacks.Pack("baroque", 3, 100, 102, 1, new String[]{"Bach"}),
+                new SamplePacks.Pack("romantic", 2, 200, 201, 2, new String[]{"Chopin"})});
+
+        assertArrayEquals(new String[]{"baroque", "romantic"},
+                samplePacks.retainKnown("baroque", "removed", "romantic"));
+        assertArrayEquals(new String[0], samplePacks.retainKnown("removed"));
+    }
+
+    @Test
+    public void getSelectedPacks_clearsSelectionOfRemovedPacks() {
+        Context context = RuntimeEnvironment.application;
+        SamplePacks.setSelectedPacks(context, "removed");
+
+        // The whole catalog is played again rather than a game with no samples.
+        assertArrayEquals(new String[0], SamplePacks.getSelectedPacks(context));
+        assertTrue(context.getSharedPreferences(context.getString(R.string.preference_file_key),
+                Context.MODE_PRIVATE).getStringSet("selected_packs", null).isEmpty());
+    }
+
+    @Test
+    public void packs_areLoadedWhenSelectedAndUnusedOnesEvictedOnTrim() throws Exception {
+        final SamplePacks.Pack baroque = new SamplePacks.Pack("baroque", 2, 100, 101, 1,
+                new String[]{"Bach"});
+        final SamplePacks.Pack romantic = new SamplePacks.Pack("romantic", 1, 200, 200, 2,
+                new String[]{"Chopin"});
+        SamplePacks samplePacks = new SamplePacks(null,
+                new SamplePacks.Pack[]{baroque, romantic}) {
+            @Override
+            List<Sample> readPack(Pack pack) {
+                ArrayList<Sample> samples = new ArrayList<>();
+                for (int id = pack.firstSampleID; id <= pack.lastSampleID; id++) {
+                    samples.add(new Sample(id, pack.composers[0], pack.name, "Sample " + id,
+                            "asset:///" + id + ".mp3", null));
+                }
+                return samples;
+            }
+        };
+        SampleCatalog bundled = SampleCatalog.fromSamples(Arrays.asList(
+                new Sample(1, "Mozart", "classical", "Sample 1", "asset:///1.mp3", null)));
+
+        // Nothing is loaded until a game selects a pack.
+        assertEquals(0, samplePacks.getLoadCount());
+        assertFalse(samplePacks.isLoaded(baroque));
+
+        SampleCatalog catalog = samplePacks.withPacks(bundled, "baroque", "unknown");
+        assertArrayEquals(new int[]{100, 101}, samplePacks.getSampleIDs("baroque"));
+        assertEquals(1, samplePacks.getLoadCount());
+        assertEquals(3, catalog.size());
+        assertEquals("Bach", catalog.getSample(101).getComposer());
+        assertTrue(samplePacks.isLoaded(baroque));
+        assertFalse(samplePacks.isLoaded(romantic));
+
+        // Only unused packs are dropped, even when memory is critical or in the background.
+        samplePacks.getSampleIDs("romantic");
+        samplePacks.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertTrue(samplePacks.isLoaded(romantic));
+        samplePacks.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertTrue(samplePacks.isLoaded(baroque));
+        assertFalse(samplePacks.isLoaded(romantic));
+        samplePacks.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        samplePacks.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertTrue(samplePacks.isLoaded(baroque));
+        assertEquals("Bach", catalog.getSample(100).getComposer());
+
+        // Selecting other packs releases the previous ones.
+        samplePacks.withPacks(bundled, "romantic");
+        assertEquals(3, samplePacks.getLoadCount());
+        samplePacks.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertFalse(samplePacks.isLoaded(baroque));
+        assertTrue(samplePacks.isLoaded(romantic));
+    }
+
+    private static ByteArrayInputStream index(SamplePacks.Pack... packs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SamplePacks.MAGIC);
+        out.writeInt(SamplePacks.VERSION);
+        out.writeInt(packs.length);
+        for (SamplePacks.Pack pack : packs) {
+            out.writeUTF(pack.name);
+            out.writeInt(pack.sampleCount);
+            out.writeInt(pack.firstSampleID);
+            out.writeInt(pack.lastSampleID);
+            out.writeInt(pack.contentHash);
+            out.writeInt(pack.composers.length);
+            for (String composer : pack.composers) {
+                out.writeUTF(composer);
+            }
+        }
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+}
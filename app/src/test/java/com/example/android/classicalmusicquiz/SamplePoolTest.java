@@ -0,0 +1,64 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SamplePool}, with dense and sparse sample IDs.
+ */
+public class SamplePoolTest {
+
+    private static final int[] DENSE_IDS = {0, 1, 2, 3, 4, 5, 6, 7};
+    private static final int[] SPARSE_IDS = {-3, 1000, 42, 99999, 7};
+
+    @Test
+    public void remove_takesSampleOut() {
+        for (int[] sampleIDs : new int[][]{DENSE_IDS, SPARSE_IDS}) {
+            SamplePool pool = new SamplePool(sampleIDs);
+            assertTrue(pool.remove(sampleIDs[1]));
+            assertFalse(pool.contains(sampleIDs[1]));
+            assertFalse(pool.remove(sampleIDs[1]));
+            assertEquals(sampleIDs.length - 1, pool.size());
+            for (int i = 0; i < sampleIDs.length; i++) {
+                assertEquals(i != 1, pool.contains(sampleIDs[i]));
+            }
+        }
+    }
+
+    @Test
+    public void remove_unknownSample() {
+        SamplePool pool = new SamplePool(DENSE_IDS);
+        assertFalse(pool.remove(-1));
+        assertFalse(pool.remove(DENSE_IDS.length));
+        assertEquals(DENSE_IDS.length, pool.size());
+    }
+
+    @Test
+    public void pick_returnsRemainingSample() {
+        Random random = new Random(1);
+        for (int[] sampleIDs : new int[][]{DENSE_IDS, SPARSE_IDS}) {
+            SamplePool pool = new SamplePool(sampleIDs);
+            pool.remove(sampleIDs[0]);
+            for (int round = 0; round < 100; round++) {
+                int sampleID = pool.pick(random);
+                assertTrue(pool.contains(sampleID));
+                assertNotEquals(sampleIDs[0], sampleID);
+            }
+            assertEquals(sampleIDs.length - 1, pool.size());
+        }
+    }
+
+    @Test
+    public void toArray_holdsRemainingSamples() {
+        SamplePool pool = new SamplePool(DENSE_IDS);
+        pool.remove(2);
+        pool.remove(5);
+        int[] remaining = pool.toArray();
+        Arrays.sort(remaining);
+        assertArrayEquals(new int[]{0, 1, 3, 4, 6, 7}, remaining);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ScoreStore}, with an in-memory persistence and an executor whose
+ * writes are run by hand, so a crash can be simulated by dropping the writes still queued.
+ */
+public class ScoreStoreTest {
+
+    /**
+     * Keeps the last written scores, like storage that survives a crash.
+     */
+    static class MemoryPersistence implements ScoreStore.Persistence {
+        volatile int[] mStored = {0, 0};
+        volatile int mWrites;
+
+        @Override
+        public int[] read() {
+            return mStored.clone();
+        }
+
+        @Override
+        public void write(int currentScore, int highScore) {
+            mStored = new int[]{currentScore, highScore};
+            mWrites++;
+        }
+    }
+
+    /**
+     * Queues the writes until they are run.
+     */
+    static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> mQueue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            while (!mQueue.isEmpty()) {
+                mQueue.poll().run();
+            }
+        }
+    }
+
+    private final MemoryPersistence mPersistence = new MemoryPersistence();
+    private final ManualExecutor mExecutor = new ManualExecutor();
+
+    @Test
+    public void setScores_onlyWritesOnFlush() {
+        ScoreStore store = new ScoreStore(mPersistence, mExecutor);
+        store.setScores(1, 1);
+        store.setCurrentScore(2);
+        store.setHighScore(2);
+        mExecutor.runAll();
+        assertEquals(0, mPersistence.mWrites);
+        assertEquals(2, store.getCurrentScore());
+        assertEquals(2, store.getHighScore());
+
+        store.flush();
+        mExecutor.runAll();
+        assertEquals(1, mPersistence.mWrites);
+        assertArrayEquals(new int[]{2, 2}, mPersistence.mStored);
+    }
+
+    @Test
+    public void flush_coalescesQueuedWrites() {
+        ScoreStore store = new ScoreStore(mPersistence, mExecutor);
+        for (int score = 1; score <= 10; score++) {
+            store.setScores(score, score);
+            store.flush();
+        }
+        assertEquals(1, mExecutor.mQueue.size());
+        mExecutor.runAll();
+        assertEquals(1, store.getWriteCount());
+        assertArrayEquals(new int[]{10, 10}, mPersistence.mStored);
+    }
+
+    @Test
+    public void flush_skipsUnchangedScores() {
+        mPersistence.mStored = new int[]{3, 5};
+        ScoreStore store = new ScoreStore(mPersistence, mExecutor);
+        store.flush();
+        store.setScores(3, 5);
+        store.flush();
+        mExecutor.runAll();
+        assertEquals(0, mPersistence.mWrites);
+    }
+
+    @Test
+    public void crash_leavesLastCompleteFlush() {
+        ScoreStore store = new ScoreStore(mPersistence, mExecutor);
+        ArrayList<int[]> flushed = new ArrayList<>();
+        flushed.add(new int[]{0, 0});
+
+        // Play a game, flushing every few answers, and only some flushes get to run.
+        int highScore = 0;
+        for (int score = 1; score <= 20; score++) {
+            highScore = Math.max(highScore, score);
+            store.setScores(score, highScore);
+            if (score % 3 == 0) {
+                store.flush();
+            }
+            if (score % 6 == 0) {
+                mExecutor.runAll();
+                flushed.add(new int[]{store.getCurrentScore(), store.getHighScore()});
+            }
+        }
+
+        // Crash: the queued flush is lost along with everything in memory.
+        store.flush();
+        mExecutor.mQueue.clear();
+        ScoreStore restarted = new ScoreStore(mPersistence, new ManualExecutor());
+
+        int[] last = flushed.get(flushed.size() - 1);
+        assertEquals(last[0], restarted.getCurrentScore());
+        assertEquals(last[1], restarted.getHighScore());
+        assertTrue(restarted.getHighScore() >= restarted.getCurrentScore());
+    }
+
+    @Test
+    public void awaitFlush_waitsForBackgroundWrite() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ScoreStore store = new ScoreStore(mPersistence, executor);
+            store.setScores(4, 7);
+            store.flush();
+            store.awaitFlush();
+            assertArrayEquals(new int[]{4, 7}, mPersistence.mStored);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link StartupPipeline}.
+ */
+public class StartupPipelineTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void start_runsStagesAfterTheirDependencies() {
+        final List<String> order = new ArrayList<>();
+        RecordingListener listener = new RecordingListener();
+        StartupPipeline pipeline = new StartupPipeline(listener);
+        StartupPipeline.Stage a = pipeline.addStage("a", DIRECT, record(order, "a"));
+        StartupPipeline.Stage b = pipeline.addStage("b", DIRECT, record(order, "b"), a);
+        StartupPipeline.Stage c = pipeline.addStage("c", DIRECT, record(order, "c"));
+        pipeline.addStage("d", DIRECT, record(order, "d"), b, c);
+        pipeline.start();
+
+        assertEquals("[a, b, c, d]", order.toString());
+        assertTrue(pipeline.isFinished());
+        assertTrue(listener.mFinished);
+        assertEquals(4, pipeline.getStageMillis().size());
+        assertTrue(pipeline.getStageMillis("d") >= 0);
+        assertEquals(-1, pipeline.getStageMillis("e"));
+    }
+
+    @Test
+    public void start_runsIndependentStagesConcurrently() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        StartupPipeline.Work meet = new StartupPipeline.Work() {
+            @Override
+            public void run() throws Exception {
+                // Each stage waits for the other, which only works if they overlap.
+                bothRunning.countDown();
+                if (!bothRunning.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("The stages didn't run together");
+                }
+            }
+        };
+        final CountDownLatch done = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onFinished(long millis) {
+                super.onFinished(millis);
+                done.countDown();
+            }
+        };
+        StartupPipeline pipeline = new StartupPipeline(listener);
+        pipeline.addStage("left", executor, meet);
+        pipeline.addStage("right", executor, meet);
+        pipeline.start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNull(listener.mFailedStage);
+        executor.shutdown();
+    }
+
+    @Test
+    public void start_skipsDependentsOfFailedStage() {
+        final List<String> order = new ArrayList<>();
+        RecordingListener listener = new RecordingListener();
+        StartupPipeline pipeline = new StartupPipeline(listener);
+        StartupPipeline.Stage catalog = pipeline.addStage("catalog", DIRECT,
+                new StartupPipeline.Work() {
+                    @Override
+                    public void run() throws Exception {
+                        throw new IOException("No catalog");
+                    }
+                });
+        pipeline.addStage("bind", DIRECT, record(order, "bind"), catalog);
+        pipeline.start();
+
+        assertTrue(order.isEmpty());
+        assertEquals("catalog", listener.mFailedStage);
+        assertFalse(listener.mFinished);
+        assertFalse(pipeline.isFinished());
+    }
+
+    @Test
+    public void cancel_skipsStagesNotStarted() {
+        final List<String> order = new ArrayList<>();
+        final List<Runnable> queued = new ArrayList<>();
+        Executor queue = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        };
+        StartupPipeline pipeline = new StartupPipeline(new RecordingListener());
+        StartupPipeline.Stage load = pipeline.addStage("load", DIRECT, record(order, "load"));
+        pipeline.addStage("bind", queue, record(order, "bind"), load);
+        pipeline.start();
+        assertEquals(1, queued.size());
+
+        // The activity is destroyed before the main thread gets to the stage.
+        pipeline.cancel();
+        queued.get(0).run();
+        assertEquals(Collections.singletonList("load"), order);
+        assertEquals(-1, pipeline.getStageMillis("bind"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addStage_failsOnceStarted() {
+        StartupPipeline pipeline = new StartupPipeline(new RecordingListener());
+        pipeline.start();
+        pipeline.addStage("late", DIRECT, record(new ArrayList<String>(), "late"));
+    }
+
+    private static StartupPipeline.Work record(final List<String> order, final String name) {
+        return new StartupPipeline.Work() {
+            @Override
+            public void run() {
+                synchronized (order) {
+                    order.add(name);
+                }
+            }
+        };
+    }
+
+    private static class RecordingListener implements StartupPipeline.Listener {
+        volatile String mFailedStage;
+        volatile boolean mFinished;
+
+        @Override
+        public void onStageFinished(String name, long millis) {
+            assertTrue(millis >= 0);
+        }
+
+        @Override
+        public void onStageFailed(String name, Exception error) {
+            mFailedStage = name;
+        }
+
+        @Override
+        public void onFinished(long millis) {
+            mFinished = true;
+        }
+    }
+}
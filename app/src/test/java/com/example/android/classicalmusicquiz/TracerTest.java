@@ -0,0 +1,102 @@
+package com.example.android.classicalmusicquiz;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Tracer} and {@link SpanStats}.
+ */
+public class TracerTest {
+
+    @After
+    public void disableTracing() {
+        Tracer.disable();
+    }
+
+    @Test
+    public void end_recordsNothingWhileDisabled() {
+        long start = Tracer.begin();
+        assertEquals(0, start);
+        Tracer.end("catalog.load", start);
+        assertNull(Tracer.getInstance());
+
+        // A span begun before tracing was enabled isn't recorded either.
+        Tracer.enable();
+        Tracer.end("catalog.load", start);
+        assertTrue(Tracer.getInstance().getSpans().isEmpty());
+
+        start = Tracer.begin();
+        Tracer.end("catalog.load", start);
+        List<Tracer.Span> spans = Tracer.getInstance().getSpans();
+        assertEquals(1, spans.size());
+        assertEquals("catalog.load", spans.get(0).name);
+        assertTrue(spans.get(0).durationNanos >= 0);
+    }
+
+    @Test
+    public void record_keepsMostRecentSpans() {
+        Tracer tracer = new Tracer(3);
+        for (int i = 0; i < 5; i++) {
+            tracer.record("span" + i, i * 100, i);
+        }
+        List<Tracer.Span> spans = tracer.getSpans();
+        assertEquals(3, spans.size());
+        assertEquals("span2", spans.get(0).name);
+        assertEquals("span4", spans.get(2).name);
+        assertEquals(400, spans.get(2).startNanos);
+
+        tracer.clear();
+        assertTrue(tracer.getSpans().isEmpty());
+    }
+
+    @Test
+    public void dump_isReadBackBySpanStats() throws Exception {
+        Tracer tracer = new Tracer(8);
+        tracer.record("main.inflate", 10, 2000000);
+        tracer.record("catalog.load", 20, 5000000);
+        tracer.record("main.inflate", 30, 4000000);
+        StringWriter dump = new StringWriter();
+        tracer.dump(dump);
+        assertTrue(dump.toString().startsWith(Tracer.DUMP_HEADER + "\n"));
+
+        SpanStats stats = new SpanStats();
+        stats.readDump(new StringReader(dump.toString()));
+        assertEquals("[main.inflate, catalog.load]", stats.getNames().toString());
+        assertEquals(2, stats.getCount("main.inflate"));
+        assertEquals(4000000, stats.getPercentile("main.inflate", 99));
+        assertEquals(5000000, stats.getPercentile("catalog.load", 50));
+    }
+
+    @Test
+    public void getPercentile_usesNearestRank() {
+        SpanStats stats = new SpanStats();
+
+        // Add 1 to 100 out of order, across the growth of the buffer.
+        for (int i = 0; i < 100; i++) {
+            stats.add("run", (i * 37) % 100 + 1);
+        }
+        assertEquals(100, stats.getCount("run"));
+        assertEquals(50, stats.getPercentile("run", 50));
+        assertEquals(95, stats.getPercentile("run", 95));
+        assertEquals(99, stats.getPercentile("run", 99));
+        assertEquals(100, stats.getPercentile("run", 100));
+        assertEquals(-1, stats.getPercentile("missing", 50));
+
+        stats.add("single", 7);
+        assertEquals(7, stats.getPercentile("single", 1));
+        assertEquals(7, stats.getPercentile("single", 99));
+        assertTrue(stats.format().contains("single"));
+    }
+
+    @Test(expected = IOException.class)
+    public void readDump_rejectsMalformedLines() throws Exception {
+        new SpanStats().readDump(new StringReader("catalog.load\t10\n"));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.android.classicalmusicquiz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link AnswerHistory} with a long history: opening it from the snapshot and by replaying
+ * the whole log, as it is after a crash before the first snapshot, the statistics queries, and
+ * recording a batch of answers, which appends them to the log and rewrites the snapshot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnswerHistoryBenchmark {
+
+    private static final int ANSWERS = 300000;
+    private static final int SAMPLES = 1000;
+    private static final int COMPOSERS = 100;
+    private static final int ERAS = 5;
+
+    private static final String LOG_FILE = "answer_history.log";
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Random mRandom = new Random(1);
+    private DistractorIndex mIndex;
+    private File mDirectory;
+    private File mLogOnlyDirectory;
+    private File mRecordDirectory;
+    private AnswerHistory mHistory;
+    private AnswerHistory mRecordHistory;
+    private int mQuery;
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] sampleIDs = new int[SAMPLES];
+        int[] composerKeys = new int[SAMPLES];
+        int[] eraKeys = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            sampleIDs[i] = i;
+            composerKeys[i] = i % COMPOSERS;
+            eraKeys[i] = i % ERAS;
+        }
+        mIndex = new DistractorIndex(sampleIDs, composerKeys, eraKeys);
+
+        mDirectory = Files.createTempDirectory("history").toFile();
+        AnswerHistory history = new AnswerHistory(mDirectory, mIndex, DIRECT);
+        for (int i = 0; i < ANSWERS; i++) {
+            record(history, i);
+        }
+        history.flush();
+
+        // The same log, without the snapshot.
+        mLogOnlyDirectory = Files.createTempDirectory("history").toFile();
+        Files.copy(new File(mDirectory, LOG_FILE).toPath(),
+                new File(mLogOnlyDirectory, LOG_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        mHistory = new AnswerHistory(mDirectory, mIndex, DIRECT);
+        AnswerHistory fromLog = new AnswerHistory(mLogOnlyDirectory, mIndex, DIRECT);
+        if (mHistory.getAnswerCount() != ANSWERS
+                || mHistory.getCorrectCount() != fromLog.getCorrectCount()
+                || mHistory.getHardestComposer(1) != fromLog.getHardestComposer(1)) {
+            throw new IllegalStateException("The snapshot doesn't match the log");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        deleteHistory(mDirectory);
+        deleteHistory(mLogOnlyDirectory);
+    }
+
+    /**
+     * Starts recording into an empty history for every iteration, so the log doesn't keep
+     * growing for the whole run.
+     */
+    @Setup(Level.Iteration)
+    public void setUpRecording() throws IOException {
+        mRecordDirectory = Files.createTempDirectory("history").toFile();
+        mRecordHistory = new AnswerHistory(mRecordDirectory, mIndex, DIRECT);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownRecording() {
+        deleteHistory(mRecordDirectory);
+    }
+
+    @Benchmark
+    public AnswerHistory loadFromSnapshot() {
+        return new AnswerHistory(mDirectory, mIndex, DIRECT);
+    }
+
+    @Benchmark
+    public AnswerHistory loadByReplayingLog() {
+        return new AnswerHistory(mLogOnlyDirectory, mIndex, DIRECT);
+    }
+
+    @Benchmark
+    public float queryStatistics() {
+        int query = mQuery++;
+        return mHistory.getMissRate(query % SAMPLES)
+                + mHistory.getComposerAccuracy(query % COMPOSERS)
+                + mHistory.getAccuracy();
+    }
+
+    @Benchmark
+    public int getHardestComposer() {
+        return mHistory.getHardestComposer(1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AnswerHistory.BATCH_SIZE)
+    public int recordBatch() {
+        for (int i = 0; i < AnswerHistory.BATCH_SIZE; i++) {
+            record(mRecordHistory, i);
+        }
+        return mRecordHistory.getAnswerCount();
+    }
+
+    /**
+     * Records an answer to a random sample, a quarter of them missed.
+     */
+    private void record(AnswerHistory history, long timestamp) {
+        int sampleID = mRandom.nextInt(SAMPLES);
+        history.record(sampleID, mRandom.nextInt(4) == 0 ? mRandom.nextInt(SAMPLES) : sampleID,
+                mRandom.nextInt(10000), timestamp);
+    }
+
+    private static void deleteHistory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.classicalmusicquiz;
+
+import android.util.JsonReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the sample catalog: parsing the whole JSON manifest with {@link Sample#readEntry},
+ * opening the compiled binary catalog, and looking up a question's answers in the manifest
+ * without parsing the rest of it. Both loads build the distractor index, as the quiz needs it
+ * for the first question. The answer lookups are compared with reading every entry into a
+ * Sample until the match, and with streaming the manifest once per answer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private String mManifest;
+    private ByteBuffer mBinaryCatalog;
+    private int[] mAnswerIDs;
+
+    @Setup
+    public void setUp() throws IOException {
+        mManifest = Catalogs.manifest(size);
+        mBinaryCatalog = Catalogs.binaryCatalog(size);
+
+        // A question's answers, spread over the catalog.
+        mAnswerIDs = new int[]{size / 8, size / 3, size / 2, size - 1};
+    }
+
+    @Benchmark
+    public DistractorIndex parseManifest() throws IOException {
+        ArrayList<Sample> samples = new ArrayList<>();
+        JsonReader reader = new JsonReader(new StringReader(mManifest));
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                samples.add(Sample.readEntry(reader));
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+        return SampleCatalog.fromSamples(samples).getDistractorIndex();
+    }
+
+    @Benchmark
+    public DistractorIndex openBinaryCatalog() throws IOException {
+        BinarySampleCatalog binaryCatalog = BinarySampleCatalog.wrap(mBinaryCatalog.duplicate());
+        return SampleCatalog.fromBinaryCatalog(binaryCatalog).getDistractorIndex();
+    }
+
+    @Benchmark
+    public void findAnswersByParsing(Blackhole blackhole) throws IOException {
+        for (int sampleID : mAnswerIDs) {
+            JsonReader reader = new JsonReader(new StringReader(mManifest));
+            try {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Sample sample = Sample.readEntry(reader);
+                    if (sample.getSampleID() == sampleID) {
+                        blackhole.consume(sample);
+                        break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public void findAnswersOneByOne(Blackhole blackhole) throws IOException {
+        for (int sampleID : mAnswerIDs) {
+            JsonReader reader = new JsonReader(new StringReader(mManifest));
+            try {
+                blackhole.consume(Sample.findEntries(reader, sampleID));
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public Sample[] findAnswersInManifest() throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(mManifest));
+        try {
+            return Sample.findEntries(reader, mAnswerIDs);
+        } finally {
+            reader.close();
+        }
+    }
+}
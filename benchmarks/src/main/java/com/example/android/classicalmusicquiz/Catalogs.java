@@ -0,0 +1,123 @@
+package com.example.android.classicalmusicquiz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+/**
+ * Synthetic catalogs for the benchmarks: a given number of samples, a few per composer and a
+ * few composers per era, as a JSON manifest, as a compiled binary catalog, and as the keys of a
+ * {@link DistractorIndex}.
+ */
+class Catalogs {
+
+    static final int SAMPLES_PER_COMPOSER = 4;
+    static final int COMPOSERS_PER_ERA = 10;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Catalogs() {
+    }
+
+    /**
+     * @param size The number of samples.
+     * @return The IDs of the samples, from 0.
+     */
+    static int[] sampleIDs(int size) {
+        int[] sampleIDs = new int[size];
+        for (int i = 0; i < size; i++) {
+            sampleIDs[i] = i;
+        }
+        return sampleIDs;
+    }
+
+    /**
+     * @param size The number of samples.
+     * @return The index of the samples by composer and era.
+     */
+    static DistractorIndex distractorIndex(int size) {
+        int[] composerKeys = new int[size];
+        int[] eraKeys = new int[size];
+        for (int i = 0; i < size; i++) {
+            composerKeys[i] = i / SAMPLES_PER_COMPOSER;
+            eraKeys[i] = composerKeys[i] / COMPOSERS_PER_ERA;
+        }
+        return new DistractorIndex(sampleIDs(size), composerKeys, eraKeys);
+    }
+
+    /**
+     * Builds a manifest in the format of media.exolist.json.
+     * @param size The number of samples.
+     * @return The manifest.
+     */
+    static String manifest(int size) {
+        StringBuilder manifest = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            int composer = i / SAMPLES_PER_COMPOSER;
+            if (i > 0) {
+                manifest.append(',');
+            }
+            manifest.append("{\"name\":\"Sample ").append(i)
+                    .append("\",\"id\":").append(i)
+                    .append(",\"uri\":\"asset:///sample_").append(i)
+                    .append(".mp3\",\"composer\":\"Composer ").append(composer)
+                    .append("\",\"era\":\"Era ").append(composer / COMPOSERS_PER_ERA)
+                    .append("\",\"albumArtID\":\"composer_").append(composer).append("\"}");
+        }
+        return manifest.append(']').toString();
+    }
+
+    /**
+     * Compiles a catalog the way the compileSampleCatalog build task does, into the format
+     * read by {@link BinarySampleCatalog}.
+     * @param size The number of samples.
+     * @return The compiled catalog.
+     */
+    static ByteBuffer binaryCatalog(int size) throws IOException {
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        HashMap<String, Integer> stringOffsets = new HashMap<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordsOut = new DataOutputStream(records);
+        for (int i = 0; i < size; i++) {
+            int composer = i / SAMPLES_PER_COMPOSER;
+            recordsOut.writeInt(i);
+            recordsOut.writeInt(intern("Sample " + i, strings, stringOffsets));
+            recordsOut.writeInt(intern("asset:///sample_" + i + ".mp3", strings, stringOffsets));
+            recordsOut.writeInt(intern("Composer " + composer, strings, stringOffsets));
+            recordsOut.writeInt(intern("composer_" + composer, strings, stringOffsets));
+            recordsOut.writeInt(intern("Era " + composer / COMPOSERS_PER_ERA, strings,
+                    stringOffsets));
+            recordsOut.writeInt(0);
+            recordsOut.writeInt((int) Sample.END_OF_SAMPLE);
+        }
+
+        ByteArrayOutputStream catalog = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(catalog);
+        out.writeInt(BinarySampleCatalog.MAGIC);
+        out.writeInt(BinarySampleCatalog.VERSION);
+        out.writeInt(size);
+        out.writeInt(0);
+        out.writeInt(BinarySampleCatalog.HEADER_SIZE + size * BinarySampleCatalog.RECORD_SIZE);
+        out.writeInt(strings.size());
+        records.writeTo(out);
+        strings.writeTo(out);
+        return ByteBuffer.wrap(catalog.toByteArray());
+    }
+
+    private static int intern(String value, ByteArrayOutputStream strings,
+                              HashMap<String, Integer> stringOffsets) {
+        Integer offset = stringOffsets.get(value);
+        if (offset == null) {
+            byte[] bytes = value.getBytes(UTF_8);
+            offset = strings.size();
+            strings.write(bytes.length >>> 8);
+            strings.write(bytes.length & 0xFF);
+            strings.write(bytes, 0, bytes.length);
+            stringOffsets.put(value, offset);
+        }
+        return offset;
+    }
+}
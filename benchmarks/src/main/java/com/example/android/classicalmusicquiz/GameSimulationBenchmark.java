@@ -0,0 +1,285 @@
+package com.example.android.classicalmusicquiz;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole games played through {@link QuizGame}, with no activity: the answers chosen by the
+ * {@link ReviewScheduler}, the distractors picked by the {@link EraDistractorStrategy}, the
+ * scores and the high score. Simulated players play a number of games each, a day apart, and
+ * answer correctly with a chance that goes down as the distractors get harder. The players are
+ * split across cores with fork/join, and every player has their own seeded random number
+ * generator, so the results don't depend on the split, which is checked before measuring.
+ *
+ * The score is in games per second; run with -prof gc for the allocations per game. What the
+ * players scored is reported with it (see {@link Scores}), and the number of games per final
+ * score is written out at the end of the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameSimulationBenchmark {
+
+    private static final int CATALOG_SIZE = 12;
+    private static final int SAMPLES_PER_COMPOSER = 2;
+    private static final int COMPOSERS_PER_ERA = 2;
+    private static final int GAMES_PER_PLAYER = 10;
+    private static final int PLAYERS = 1000;
+    private static final long SEED = 1;
+
+    // Players simulated by one fork/join task, without splitting it further.
+    private static final int PLAYERS_PER_TASK = 256;
+
+    // Players answer correctly this often against the easiest distractors, and a fifth less
+    // often against the hardest ones.
+    private static final float MIN_SKILL = 0.4f;
+    private static final float MAX_SKILL = 0.95f;
+    private static final float HARDEST_PENALTY = 0.2f;
+
+    private static final long ANSWER_MILLIS = 10 * 1000;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File mDirectory;
+    private Catalog mCatalog;
+    private ForkJoinPool mPool;
+    private Result mResult;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("simulation").toFile();
+        mCatalog = new Catalog(mDirectory);
+        mPool = new ForkJoinPool();
+
+        Result sequential = new Simulation(mCatalog, SEED, 0, PLAYERS).compute();
+        Result parallel = mPool.invoke(new Simulation(mCatalog, SEED, 0, PLAYERS));
+        if (!sequential.isSameAs(parallel)) {
+            throw new IllegalStateException("The simulation depends on how it is split");
+        }
+        mResult = sequential;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mPool.shutdown();
+        mDirectory.delete();
+
+        // Every invocation plays the same games, so they all end with these scores.
+        System.out.println("Games per final score, out of " + mResult.games + ":");
+        for (int score = 0; score < mResult.scores.length; score++) {
+            System.out.println("  " + score + ": " + mResult.scores[score]);
+        }
+        System.out.println("High score beaten in " + mResult.highScores + " games");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PLAYERS * GAMES_PER_PLAYER)
+    public long playGames(Scores scores) {
+        Result result = mPool.invoke(new Simulation(mCatalog, SEED, 0, PLAYERS));
+        if (result.games != PLAYERS * GAMES_PER_PLAYER) {
+            throw new IllegalStateException("Played " + result.games + " games");
+        }
+        scores.add(result);
+        return result.questions;
+    }
+
+    /**
+     * The secondary results, in results.json next to the score: the games in which the high
+     * score was beaten, and the games whose final score was in each quarter of the best possible
+     * one. JMH reports them per second like the score, so divided by it they are the share of
+     * games.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class Scores {
+        public long highScores;
+        public long firstQuarterScores;
+        public long secondQuarterScores;
+        public long thirdQuarterScores;
+        public long lastQuarterScores;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            highScores = 0;
+            firstQuarterScores = 0;
+            secondQuarterScores = 0;
+            thirdQuarterScores = 0;
+            lastQuarterScores = 0;
+        }
+
+        void add(Result result) {
+            highScores += result.highScores;
+            for (int score = 0; score < result.scores.length; score++) {
+                long games = result.scores[score];
+                switch (score * 4 / result.scores.length) {
+                    case 0:
+                        firstQuarterScores += games;
+                        break;
+                    case 1:
+                        secondQuarterScores += games;
+                        break;
+                    case 2:
+                        thirdQuarterScores += games;
+                        break;
+                    default:
+                        lastQuarterScores += games;
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The samples, composers and eras of a simulated catalog.
+     */
+    private static class Catalog {
+        final File directory;
+        final int[] sampleIDs = new int[CATALOG_SIZE];
+        final DistractorIndex index;
+
+        Catalog(File directory) {
+            this.directory = directory;
+            int[] composerKeys = new int[CATALOG_SIZE];
+            int[] eraKeys = new int[CATALOG_SIZE];
+            for (int i = 0; i < CATALOG_SIZE; i++) {
+                sampleIDs[i] = i;
+                composerKeys[i] = i / SAMPLES_PER_COMPOSER;
+                eraKeys[i] = composerKeys[i] / COMPOSERS_PER_ERA;
+            }
+            index = new DistractorIndex(sampleIDs, composerKeys, eraKeys);
+        }
+    }
+
+    /**
+     * What a range of players did: the number of games and questions, the number of games in
+     * which the high score was beaten, and the number of games per final score. A game asks
+     * every sample but the last one, so the final score is less than the catalog size.
+     */
+    private static class Result {
+        long games;
+        long questions;
+        long highScores;
+        final long[] scores = new long[CATALOG_SIZE];
+
+        void add(Result other) {
+            games += other.games;
+            questions += other.questions;
+            highScores += other.highScores;
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] += other.scores[i];
+            }
+        }
+
+        boolean isSameAs(Result other) {
+            return games == other.games && questions == other.questions
+                    && highScores == other.highScores && Arrays.equals(scores, other.scores);
+        }
+    }
+
+    /**
+     * Simulates a range of players, splitting it in two until it is small enough.
+     */
+    private static class Simulation extends RecursiveTask<Result> {
+        private final Catalog mCatalog;
+        private final long mSeed;
+        private final int mFrom;
+        private final int mTo;
+
+        Simulation(Catalog catalog, long seed, int from, int to) {
+            mCatalog = catalog;
+            mSeed = seed;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (mTo - mFrom > PLAYERS_PER_TASK) {
+                int middle = (mFrom + mTo) >>> 1;
+                Simulation first = new Simulation(mCatalog, mSeed, mFrom, middle);
+                first.fork();
+                Result result = new Simulation(mCatalog, mSeed, middle, mTo).compute();
+                result.add(first.join());
+                return result;
+            }
+
+            Result result = new Result();
+            for (int player = mFrom; player < mTo; player++) {
+                play(player, result);
+            }
+            return result;
+        }
+
+        /**
+         * Plays all the games of a player, with their own schedule, skill and high score.
+         */
+        private void play(int player, Result result) {
+            Random random = new Random(mSeed * 0x9E3779B97F4A7C15L + player);
+            float skill = MIN_SKILL + random.nextFloat() * (MAX_SKILL - MIN_SKILL);
+            ReviewScheduler scheduler = new ReviewScheduler(mCatalog.directory,
+                    mCatalog.sampleIDs, DIRECT, random);
+            EraDistractorStrategy strategy = new EraDistractorStrategy();
+            int highScore = 0;
+            long now = 0;
+            for (int g = 0; g < GAMES_PER_PLAYER; g++) {
+                QuizGame game = new QuizGame(mCatalog.sampleIDs, 0, highScore, scheduler,
+                        mCatalog.index, strategy, random);
+                while (game.nextQuestion()) {
+                    float chance = skill * (1 - HARDEST_PENALTY * game.getDifficulty());
+                    game.submitAnswer(random.nextFloat() < chance
+                            ? game.getAnswerSampleID()
+                            : pickWrongAnswer(game.getQuestionSampleIDs(),
+                                    game.getAnswerSampleID(), random), now);
+                    now += ANSWER_MILLIS;
+                    result.questions++;
+                }
+                result.games++;
+                result.scores[game.getCurrentScore()]++;
+                if (game.getHighScore() > highScore) {
+                    result.highScores++;
+                    highScore = game.getHighScore();
+                }
+                now += ReviewScheduler.DAY_MILLIS;
+            }
+        }
+
+        private static int pickWrongAnswer(int[] sampleIDs, int answerSampleID, Random random) {
+            if (sampleIDs.length < 2) {
+                return -1;
+            }
+            int pick = random.nextInt(sampleIDs.length - 1);
+            return sampleIDs[pick] != answerSampleID ? sampleIDs[pick]
+                    : sampleIDs[sampleIDs.length - 1];
+        }
+    }
+}
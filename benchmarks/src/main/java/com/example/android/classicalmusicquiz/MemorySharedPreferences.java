@@ -0,0 +1,193 @@
+package com.example.android.classicalmusicquiz;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shared preferences kept in a map, so the benchmarks measure the cost of the score code and of
+ * the editors rather than of the disk.
+ */
+class MemorySharedPreferences implements SharedPreferences {
+
+    private final HashMap<String, Object> mValues = new HashMap<>();
+    private final ArrayList<OnSharedPreferenceChangeListener> mListeners = new ArrayList<>();
+    private int mCommitCount;
+
+    /**
+     * @return The number of edits committed or applied.
+     */
+    synchronized int getCommitCount() {
+        return mCommitCount;
+    }
+
+    @Override
+    public synchronized Map<String, ?> getAll() {
+        return new HashMap<>(mValues);
+    }
+
+    @Override
+    public synchronized String getString(String key, String defValue) {
+        Object value = mValues.get(key);
+        return value != null ? (String) value : defValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized Set<String> getStringSet(String key, Set<String> defValues) {
+        Object value = mValues.get(key);
+        return value != null ? (Set<String>) value : defValues;
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        Object value = mValues.get(key);
+        return value != null ? (Integer) value : defValue;
+    }
+
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        Object value = mValues.get(key);
+        return value != null ? (Long) value : defValue;
+    }
+
+    @Override
+    public synchronized float getFloat(String key, float defValue) {
+        Object value = mValues.get(key);
+        return value != null ? (Float) value : defValue;
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        Object value = mValues.get(key);
+        return value != null ? (Boolean) value : defValue;
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return mValues.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+        return new MemoryEditor();
+    }
+
+    @Override
+    public synchronized void registerOnSharedPreferenceChangeListener(
+            OnSharedPreferenceChangeListener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    @Override
+    public synchronized void unregisterOnSharedPreferenceChangeListener(
+            OnSharedPreferenceChangeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Collects the changes, and applies them to the map all at once. As with the framework's
+     * preferences, the listeners are told about every key whose value changed, on the thread that
+     * committed the changes.
+     */
+    private class MemoryEditor implements Editor {
+
+        private final HashMap<String, Object> mChanges = new HashMap<>();
+        private final Set<String> mRemovals = new HashSet<>();
+        private boolean mClear;
+
+        @Override
+        public Editor putString(String key, String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            return put(key, values != null ? new HashSet<>(values) : null);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            mChanges.remove(key);
+            mRemovals.add(key);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            mClear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            ArrayList<String> changedKeys = new ArrayList<>();
+            ArrayList<OnSharedPreferenceChangeListener> listeners;
+            synchronized (MemorySharedPreferences.this) {
+                if (mClear) {
+                    mValues.clear();
+                }
+                for (String key : mRemovals) {
+                    if (mValues.remove(key) != null) {
+                        changedKeys.add(key);
+                    }
+                }
+                for (Map.Entry<String, Object> change : mChanges.entrySet()) {
+                    Object previous = mValues.put(change.getKey(), change.getValue());
+                    if (!change.getValue().equals(previous)) {
+                        changedKeys.add(change.getKey());
+                    }
+                }
+                mCommitCount++;
+                listeners = new ArrayList<>(mListeners);
+            }
+
+            for (String key : changedKeys) {
+                for (OnSharedPreferenceChangeListener listener : listeners) {
+                    listener.onSharedPreferenceChanged(MemorySharedPreferences.this, key);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void apply() {
+            commit();
+        }
+
+        private Editor put(String key, Object value) {
+            if (value == null) {
+                return remove(key);
+            }
+            mRemovals.remove(key);
+            mChanges.put(key, value);
+            return this;
+        }
+    }
+}
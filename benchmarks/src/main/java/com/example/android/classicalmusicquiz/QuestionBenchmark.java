@@ -0,0 +1,163 @@
+package com.example.android.classicalmusicquiz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating questions: picking the distractors for an answer with
+ * {@link QuizUtils#generateQuestion}, with each strategy, and choosing the next answer with
+ * {@link QuizUtils#getCorrectAnswerID}, which is then taken out of the remaining samples and
+ * rescheduled as the quiz does. A new game is started whenever the remaining samples run out,
+ * so that part of every game is included too.
+ *
+ * The playGame benchmarks play whole games of up to fifty questions, and are scored per game:
+ * the way the quiz used to do it, copying and shuffling an ArrayList of boxed IDs for every
+ * question, and with {@link SamplePool} and each strategy, including setting up the remaining
+ * samples and starting the scheduler's session.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuestionBenchmark {
+
+    private static final float DIFFICULTY = 0.5f;
+    private static final int NUM_ANSWERS = 4;
+    private static final int QUESTIONS_PER_GAME = 50;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private final Random mRandom = new Random(1);
+    private final DistractorStrategy mEraStrategy = new EraDistractorStrategy();
+    private final DistractorStrategy mRandomStrategy = new RandomDistractorStrategy();
+    private int[] mSampleIDs;
+    private DistractorIndex mIndex;
+    private File mDirectory;
+    private ReviewScheduler mScheduler;
+    private SamplePool mRemaining;
+    private long mNow;
+
+    @Setup
+    public void setUp() throws IOException {
+        mSampleIDs = Catalogs.sampleIDs(size);
+        mIndex = Catalogs.distractorIndex(size);
+        mDirectory = Files.createTempDirectory("schedule").toFile();
+        mScheduler = new ReviewScheduler(mDirectory, mSampleIDs, DIRECT, mRandom);
+        startGame();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public int[] generateQuestionByEra() {
+        return QuizUtils.generateQuestion(mSampleIDs[mRandom.nextInt(size)], mIndex,
+                mEraStrategy, DIFFICULTY, mRandom);
+    }
+
+    @Benchmark
+    public int[] generateQuestionAtRandom() {
+        return QuizUtils.generateQuestion(mSampleIDs[mRandom.nextInt(size)], mIndex,
+                mRandomStrategy, DIFFICULTY, mRandom);
+    }
+
+    @Benchmark
+    public int getCorrectAnswerID() {
+        if (mRemaining.size() < 2) {
+            startGame();
+        }
+        int answer = QuizUtils.getCorrectAnswerID(mRemaining, mScheduler, mRandom);
+        mRemaining.remove(answer);
+        mScheduler.park(answer);
+        mScheduler.recordResult(answer, mRandom.nextBoolean(), mNow);
+        mNow += ReviewScheduler.RELEARN_INTERVAL;
+        return answer;
+    }
+
+    @Benchmark
+    public int playGameShuffled() {
+        ArrayList<Integer> remaining = new ArrayList<>(size);
+        for (int sampleID : mSampleIDs) {
+            remaining.add(sampleID);
+        }
+        int checksum = 0;
+        for (int q = 0; q < QUESTIONS_PER_GAME && remaining.size() > 1; q++) {
+            ArrayList<Integer> shuffled = new ArrayList<>(remaining);
+            Collections.shuffle(shuffled, mRandom);
+            ArrayList<Integer> answers = new ArrayList<>();
+            for (int i = 0; i < NUM_ANSWERS && i < shuffled.size(); i++) {
+                answers.add(shuffled.get(i));
+            }
+            int answer = answers.get(mRandom.nextInt(answers.size()));
+            remaining.remove(Integer.valueOf(answer));
+            checksum += answer;
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public int playGameByEra() {
+        return playGame(mEraStrategy);
+    }
+
+    @Benchmark
+    public int playGameAtRandom() {
+        return playGame(mRandomStrategy);
+    }
+
+    /**
+     * Plays a game as the quiz does, a simulated day after the previous one so that the
+     * schedule keeps changing. Half the answers are taken as correct.
+     */
+    private int playGame(DistractorStrategy strategy) {
+        startGame();
+        int checksum = 0;
+        for (int q = 0; q < QUESTIONS_PER_GAME && mRemaining.size() > 1; q++) {
+            int answer = QuizUtils.getCorrectAnswerID(mRemaining, mScheduler, mRandom);
+            int[] answers = QuizUtils.generateQuestion(answer, mIndex, strategy,
+                    q / (float) QUESTIONS_PER_GAME, mRandom);
+            mRemaining.remove(answer);
+            mScheduler.park(answer);
+            mScheduler.recordResult(answer, mRandom.nextBoolean(), mNow + q);
+            checksum += answer + answers.length;
+        }
+        mNow += ReviewScheduler.DAY_MILLIS;
+        return checksum;
+    }
+
+    private void startGame() {
+        mRemaining = new SamplePool(mSampleIDs);
+        mScheduler.startSession(mSampleIDs);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.android.classicalmusicquiz;
+
+import android.content.SharedPreferences;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persisting the scores: opening a {@link ScoreStore}, which reads both scores, and a game's
+ * worth of answers written through the store, which batches them into one write, compared with
+ * editing the preferences for every score as the quiz used to. The preferences are kept in
+ * memory, so this measures the score code and the editors, not the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreBenchmark {
+
+    // The number of questions answered in a game, each one setting the scores.
+    private static final int QUESTIONS_PER_GAME = 10;
+
+    private static final String CURRENT_SCORE_KEY = "current_score";
+    private static final String HIGH_SCORE_KEY = "high_score";
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private MemorySharedPreferences mPreferences;
+    private ScoreStore mStore;
+
+    @Setup
+    public void setUp() {
+        mPreferences = new MemorySharedPreferences();
+        mPreferences.edit().putInt(CURRENT_SCORE_KEY, 3).putInt(HIGH_SCORE_KEY, 7).commit();
+        mStore = new ScoreStore(new ScoreStore.PreferencesPersistence(mPreferences), DIRECT);
+    }
+
+    @Benchmark
+    public ScoreStore openStore() {
+        return new ScoreStore(new ScoreStore.PreferencesPersistence(mPreferences), DIRECT);
+    }
+
+    @Benchmark
+    public int playGameWithStore() {
+        int highScore = mStore.getHighScore();
+        for (int score = 1; score <= QUESTIONS_PER_GAME; score++) {
+            mStore.setScores(score, Math.max(score, highScore));
+        }
+        mStore.flush();
+        mStore.setScores(0, highScore);
+        mStore.flush();
+        return mStore.getWriteCount();
+    }
+
+    @Benchmark
+    public int playGameWithEveryScoreWritten() {
+        int highScore = mPreferences.getInt(HIGH_SCORE_KEY, 0);
+        for (int score = 1; score <= QUESTIONS_PER_GAME; score++) {
+            writeScore(CURRENT_SCORE_KEY, score);
+            if (score > highScore) {
+                writeScore(HIGH_SCORE_KEY, score);
+            }
+        }
+        writeScore(CURRENT_SCORE_KEY, 0);
+        writeScore(HIGH_SCORE_KEY, highScore);
+        return mPreferences.getCommitCount();
+    }
+
+    private void writeScore(String key, int score) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putInt(key, score);
+        editor.apply();
+    }
+}
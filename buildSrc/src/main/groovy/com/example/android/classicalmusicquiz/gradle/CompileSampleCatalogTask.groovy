@@ -0,0 +1,130 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.gradle
+
+import groovy.json.JsonSlurper
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.TaskAction
+
+import java.util.zip.CRC32
+
+/**
+ * Compiles a sample manifest (*.exolist.json) into the binary catalog format read by
+ * BinarySampleCatalog in the app: a version header, fixed-width id/offset/clip records in
+ * manifest order, and a de-duplicated UTF-8 string table.
+ */
+class CompileSampleCatalogTask extends DefaultTask {
+
+    static final int MAGIC = 0x53434154
+    static final int VERSION = 3
+    static final int HEADER_SIZE = 24
+    static final int RECORD_SIZE = 32
+    static final int MAX_STRING_LENGTH = 0xFFFF
+
+    @InputFile
+    File manifest
+
+    @OutputFile
+    File catalog
+
+    @TaskAction
+    void compile() {
+        byte[] source = manifest.bytes
+        def entries = new JsonSlurper().parse(new InputStreamReader(
+                new ByteArrayInputStream(source), 'UTF-8'))
+        if (!(entries instanceof List)) {
+            throw new GradleException("${manifest.name} is not a JSON array of samples")
+        }
+
+        def strings = new ByteArrayOutputStream()
+        def stringOffsets = [:]
+        def intern = { String value ->
+            if (value == null) {
+                return -1
+            }
+            Integer offset = stringOffsets[value]
+            if (offset == null) {
+                byte[] bytes = value.getBytes('UTF-8')
+                if (bytes.length > MAX_STRING_LENGTH) {
+                    throw new GradleException("String too long in ${manifest.name}: ${value}")
+                }
+                offset = strings.size()
+                strings.write(bytes.length >>> 8)
+                strings.write(bytes.length & 0xFF)
+                strings.write(bytes)
+                stringOffsets[value] = offset
+            }
+            return offset
+        }
+
+        def records = new ByteArrayOutputStream()
+        def recordsOut = new DataOutputStream(records)
+        def ids = new HashSet<Integer>()
+        entries.each { entry ->
+            if (!(entry.id instanceof Number)) {
+                throw new GradleException("Sample without a numeric id in ${manifest.name}")
+            }
+            int id = entry.id as int
+            if (!ids.add(id)) {
+                throw new GradleException("Duplicate sample id ${id} in ${manifest.name}")
+            }
+            recordsOut.writeInt(id)
+            recordsOut.writeInt(intern(entry.name as String))
+            recordsOut.writeInt(intern(entry.uri as String))
+            recordsOut.writeInt(intern(entry.composer as String))
+            recordsOut.writeInt(intern(entry.albumArtID as String))
+            recordsOut.writeInt(intern(entry.era as String))
+
+            int clipStartMs = clipMillis(entry.clipStartMs, 0, id)
+            int clipEndMs = clipMillis(entry.clipEndMs, -1, id)
+            if (clipStartMs < 0 || (clipEndMs != -1 && clipEndMs <= clipStartMs)) {
+                throw new GradleException("Invalid clip of sample ${id} in ${manifest.name}")
+            }
+            recordsOut.writeInt(clipStartMs)
+            recordsOut.writeInt(clipEndMs)
+        }
+        recordsOut.flush()
+
+        def crc = new CRC32()
+        crc.update(source)
+
+        catalog.parentFile.mkdirs()
+        catalog.withDataOutputStream { out ->
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+            out.writeInt(entries.size())
+            out.writeInt((int) crc.value)
+            out.writeInt(HEADER_SIZE + entries.size() * RECORD_SIZE)
+            out.writeInt(strings.size())
+            records.writeTo(out)
+            strings.writeTo(out)
+        }
+    }
+
+    private int clipMillis(value, int missing, int id) {
+        if (value == null) {
+            return missing
+        }
+        if (!(value instanceof Number) || value > Integer.MAX_VALUE) {
+            throw new GradleException("Invalid clip of sample ${id} in ${manifest.name}")
+        }
+        return value as int
+    }
+}
@@ -0,0 +1,132 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.gradle
+
+import groovy.json.JsonSlurper
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.FileCollection
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.TaskAction
+
+import java.util.zip.CRC32
+
+/**
+ * Indexes the sample packs (*.exolist.json in the packs dir) into the header file read by
+ * SamplePacks in the app, so the app can list the packs and find the pack of a sample without
+ * parsing them. For each pack, in order of their first sample ID: its name, sample count, first
+ * and last sample ID, the CRC32 of its manifest and its composers.
+ *
+ * Fails the build if a sample ID is used twice, in the same pack, in two packs or in a pack and
+ * the main manifest, or if the ID ranges of two packs overlap, as the app finds the pack of a
+ * sample by its ID range.
+ */
+class IndexSamplePacksTask extends DefaultTask {
+
+    static final int MAGIC = 0x5350414B
+    static final int VERSION = 1
+    static final String MANIFEST_SUFFIX = '.exolist.json'
+
+    @InputFile
+    File manifest
+
+    @Internal
+    File packsDir
+
+    @OutputFile
+    File index
+
+    @InputFiles
+    FileCollection getPacks() {
+        return project.fileTree(packsDir) { include "*$MANIFEST_SUFFIX" }
+    }
+
+    @TaskAction
+    void compile() {
+        def ids = new HashSet<Integer>()
+        readEntries(manifest).each { entry ->
+            if (entry.id instanceof Number) {
+                ids.add(entry.id as int)
+            }
+        }
+
+        def headers = []
+        getPacks().files.sort { it.name }.each { File pack ->
+            def entries = readEntries(pack)
+            if (entries.isEmpty()) {
+                throw new GradleException("Sample pack ${pack.name} is empty")
+            }
+            def composers = new LinkedHashSet<String>()
+            int firstID = Integer.MAX_VALUE
+            int lastID = Integer.MIN_VALUE
+            entries.each { entry ->
+                if (!(entry.id instanceof Number)) {
+                    throw new GradleException("Sample without a numeric id in ${pack.name}")
+                }
+                int id = entry.id as int
+                if (!ids.add(id)) {
+                    throw new GradleException("Sample id ${id} in ${pack.name} is already used")
+                }
+                firstID = Math.min(firstID, id)
+                lastID = Math.max(lastID, id)
+                if (entry.composer != null) {
+                    composers.add(entry.composer as String)
+                }
+            }
+            def crc = new CRC32()
+            crc.update(pack.bytes)
+            headers << [name: pack.name - MANIFEST_SUFFIX, count: entries.size(),
+                        firstID: firstID, lastID: lastID, crc: (int) crc.value,
+                        composers: composers]
+        }
+
+        headers.sort { it.firstID }
+        for (int i = 1; i < headers.size(); i++) {
+            if (headers[i].firstID <= headers[i - 1].lastID) {
+                throw new GradleException("The sample ids of packs ${headers[i - 1].name} and "
+                        + "${headers[i].name} overlap")
+            }
+        }
+
+        index.parentFile.mkdirs()
+        index.withDataOutputStream { out ->
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+            out.writeInt(headers.size())
+            headers.each { header ->
+                out.writeUTF(header.name as String)
+                out.writeInt(header.count as int)
+                out.writeInt(header.firstID as int)
+                out.writeInt(header.lastID as int)
+                out.writeInt(header.crc as int)
+                out.writeInt(header.composers.size())
+                header.composers.each { out.writeUTF(it as String) }
+            }
+        }
+    }
+
+    protected static List readEntries(File file) {
+        def entries = new JsonSlurper().parse(file, 'UTF-8')
+        if (!(entries instanceof List)) {
+            throw new GradleException("${file.name} is not a JSON array of samples")
+        }
+        return entries as List
+    }
+}
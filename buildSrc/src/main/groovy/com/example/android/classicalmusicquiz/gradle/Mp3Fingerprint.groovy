@@ -0,0 +1,227 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.gradle
+
+import groovy.transform.CompileStatic
+
+import java.security.MessageDigest
+
+/**
+ * Compact fingerprint of an MP3 file, computed without decoding it. The global gain of each
+ * granule in the Layer III side info follows the loudness of the audio, so it is summed over
+ * blocks of about 100 ms, and each bit of the fingerprint says whether the next block is louder.
+ * The blocks overlap, a new one starting every quarter block, so that copies which were cut at
+ * different points still line up.
+ * Two encodes of the same recording give nearly the same bits, even at different bitrates, while
+ * unrelated recordings agree on about half of them.
+ *
+ * The digest only covers the audio frames, so re-tagged copies of a file have the same digest.
+ */
+@CompileStatic
+class Mp3Fingerprint {
+
+    static final int BLOCK_MS = 100
+    static final int HOPS_PER_BLOCK = 4
+
+    // Up to 5 seconds of leading silence or trimming between two copies of a recording.
+    static final int MAX_SHIFT_MS = 5000
+    static final int MIN_OVERLAP_BITS = 256
+
+    private static final int[] MPEG1_BITRATES =
+            [0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320] as int[]
+    private static final int[] MPEG2_BITRATES =
+            [0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160] as int[]
+    private static final int[] MPEG1_SAMPLE_RATES = [44100, 48000, 32000] as int[]
+
+    final long durationMs
+    final String digest
+    final BitSet bits
+    final int bitCount
+    final long hopUs
+
+    private Mp3Fingerprint(long durationMs, String digest, BitSet bits, int bitCount, long hopUs) {
+        this.durationMs = durationMs
+        this.digest = digest
+        this.bits = bits
+        this.bitCount = bitCount
+        this.hopUs = hopUs
+    }
+
+    /**
+     * Reads the MP3 frames of a file.
+     * @param file The file.
+     * @return The fingerprint, or null if the file holds no MPEG Layer III frames.
+     */
+    static Mp3Fingerprint read(File file) {
+        byte[] data = file.bytes
+        MessageDigest sha1 = MessageDigest.getInstance('SHA-1')
+        List<Integer> gains = []
+        long samples = 0
+        int sampleRate = 0
+        int frames = 0
+
+        int position = skipId3v2(data)
+        while (position + 4 <= data.length) {
+            int header = readInt(data, position)
+            int frameLength = frameLength(header)
+            if (frameLength <= 0 || position + frameLength > data.length) {
+                // Lost sync, or the end of the file: look for the next frame.
+                position++
+                continue
+            }
+
+            int version = (header >>> 19) & 3
+            boolean mpeg1 = version == 3
+            int channels = ((header >>> 6) & 3) == 3 ? 1 : 2
+            int granules = mpeg1 ? 2 : 1
+            if (sampleRate == 0) {
+                sampleRate = sampleRateOf(header)
+            }
+            if (frames > 0 || !isInfoFrame(data, position, frameLength)) {
+                sha1.update(data, position, frameLength)
+                samples += granules * 576
+
+                // The global gain follows part2_3_length and big_values in every granule.
+                int sideInfo = (position + 4 + (((header >>> 16) & 1) == 0 ? 2 : 0)) * 8
+                int preamble = mpeg1 ? (channels == 1 ? 18 : 20) : (channels == 1 ? 9 : 10)
+                int granuleBits = mpeg1 ? 59 : 63
+                for (int g = 0; g < granules; g++) {
+                    int gain = 0
+                    for (int c = 0; c < channels; c++) {
+                        gain += readBits(data,
+                                sideInfo + preamble + (g * channels + c) * granuleBits + 21, 8)
+                    }
+                    gains.add(gain)
+                }
+            }
+            frames++
+            position += frameLength
+        }
+        if (frames == 0) {
+            return null
+        }
+
+        // Compare each block with the next one, moving on by a quarter of a block each time.
+        int blockGranules = Math.max(HOPS_PER_BLOCK,
+                Math.round(BLOCK_MS * sampleRate / 1000f / 576f) as int)
+        int hopGranules = blockGranules.intdiv(HOPS_PER_BLOCK)
+        int[] sums = new int[gains.size() + 1]
+        for (int i = 0; i < gains.size(); i++) {
+            sums[i + 1] = sums[i] + gains[i]
+        }
+        BitSet bits = new BitSet()
+        int bitCount = 0
+        for (int start = 0; start + 2 * blockGranules <= gains.size(); start += hopGranules) {
+            int block = sums[start + blockGranules] - sums[start]
+            int next = sums[start + 2 * blockGranules] - sums[start + blockGranules]
+            bits.set(bitCount++, next > block)
+        }
+        return new Mp3Fingerprint((samples * 1000).intdiv(sampleRate) as long,
+                sha1.digest().encodeHex().toString(), bits, bitCount,
+                (hopGranules * 576000000L).intdiv(sampleRate) as long)
+    }
+
+    /**
+     * Compares two fingerprints at every shift of up to {@link #MAX_SHIFT_MS}.
+     * @param other The other fingerprint.
+     * @return The share of bits that agree at the best shift, about 0.5 for unrelated audio and
+     *         close to 1 for the same recording, or 0 if the fingerprints barely overlap or were
+     *         taken at different sample rates.
+     */
+    float similarity(Mp3Fingerprint other) {
+        if (hopUs != other.hopUs) {
+            return 0
+        }
+        int maxShift = (MAX_SHIFT_MS * 1000L).intdiv(hopUs) as int
+        float best = 0
+        for (int shift = -maxShift; shift <= maxShift; shift++) {
+            int start = Math.max(0, shift)
+            int otherStart = Math.max(0, -shift)
+            int length = Math.min(bitCount - start, other.bitCount - otherStart)
+            if (length < MIN_OVERLAP_BITS) {
+                continue
+            }
+            BitSet difference = bits.get(start, start + length) ^
+                    other.bits.get(otherStart, otherStart + length)
+            best = Math.max(best, (float) (1 - difference.cardinality() / (double) length))
+        }
+        return best
+    }
+
+    /**
+     * @return The fingerprint bits, packed little-endian and Base64 encoded.
+     */
+    String encode() {
+        return bits.toByteArray().encodeBase64().toString()
+    }
+
+    /**
+     * @return The length of the frame starting with a header, or -1 if it isn't a valid MPEG
+     *         Layer III header.
+     */
+    private static int frameLength(int header) {
+        int version = (header >>> 19) & 3
+        int layer = (header >>> 17) & 3
+        int bitrateIndex = (header >>> 12) & 15
+        int sampleRateIndex = (header >>> 10) & 3
+        if ((header >>> 21) != 0x7FF || version == 1 || layer != 1
+                || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return -1
+        }
+        int bitrate = (version == 3 ? MPEG1_BITRATES : MPEG2_BITRATES)[bitrateIndex] * 1000
+        int padding = (header >>> 9) & 1
+        return ((version == 3 ? 144 : 72) * bitrate).intdiv(sampleRateOf(header)) + padding
+    }
+
+    private static int sampleRateOf(int header) {
+        int version = (header >>> 19) & 3
+        int sampleRate = MPEG1_SAMPLE_RATES[(header >>> 10) & 3]
+        return version == 3 ? sampleRate : sampleRate.intdiv(version == 2 ? 2 : 4)
+    }
+
+    /**
+     * @return true if a frame is a Xing, Info or VBRI frame, which holds no audio.
+     */
+    private static boolean isInfoFrame(byte[] data, int position, int frameLength) {
+        String frame = new String(data, position, Math.min(frameLength, 64), 'ISO-8859-1')
+        return frame.contains('Xing') || frame.contains('Info') || frame.contains('VBRI')
+    }
+
+    private static int skipId3v2(byte[] data) {
+        if (data.length < 10 || new String(data, 0, 3, 'ISO-8859-1') != 'ID3') {
+            return 0
+        }
+        int size = ((data[6] & 0x7F) << 21) | ((data[7] & 0x7F) << 14)
+                | ((data[8] & 0x7F) << 7) | (data[9] & 0x7F)
+        boolean footer = (data[5] & 0x10) != 0
+        return 10 + size + (footer ? 10 : 0)
+    }
+
+    private static int readInt(byte[] data, int position) {
+        return ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16) |
+                ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF)
+    }
+
+    private static int readBits(byte[] data, int bitPosition, int count) {
+        int value = 0
+        for (int i = 0; i < count; i++) {
+            int bit = bitPosition + i
+            value = (value << 1) | ((data[bit >>> 3] >>> (7 - (bit & 7))) & 1)
+        }
+        return value
+    }
+}
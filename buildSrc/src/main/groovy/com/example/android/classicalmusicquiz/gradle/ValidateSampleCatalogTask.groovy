@@ -0,0 +1,243 @@
+/*
+* Copyright (C) 2017 The Android Open Source Project
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*  	http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package com.example.android.classicalmusicquiz.gradle
+
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputDirectory
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.TaskAction
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Checks that every sample in a sample manifest (*.exolist.json) points at playable audio, and
+ * looks for duplicate recordings. Bundled assets and local files are read and fingerprinted with
+ * {@link Mp3Fingerprint}; remote URIs are only checked with a HEAD request if checkRemote is set.
+ * Samples are read and compared in parallel, on one thread per core.
+ *
+ * The result is written to a JSON index with the status, size, duration, digest and fingerprint
+ * of every sample, and the pairs of samples that are the same or nearly the same recording.
+ */
+class ValidateSampleCatalogTask extends DefaultTask {
+
+    static final String STATUS_OK = 'ok'
+    static final String STATUS_MISSING = 'missing'
+    static final String STATUS_UNREADABLE = 'unreadable'
+    static final String STATUS_UNREACHABLE = 'unreachable'
+    static final String STATUS_UNCHECKED = 'unchecked'
+
+    // Unrelated recordings agree on about half of the fingerprint bits.
+    static final float NEAR_DUPLICATE_SIMILARITY = 0.85f
+
+    // Copies of a recording are within 10% or the maximum shift of each other's length.
+    static final float MAX_DURATION_DIFFERENCE = 0.1f
+
+    static final int REMOTE_TIMEOUT_MS = 5000
+
+    @InputFile
+    File manifest
+
+    @InputDirectory
+    File assetsDir
+
+    @OutputFile
+    File index
+
+    @Input
+    boolean checkRemote = false
+
+    @Input
+    boolean failOnError = true
+
+    ValidateSampleCatalogTask() {
+        // Remote samples can go away without any input changing.
+        outputs.upToDateWhen { !checkRemote }
+    }
+
+    @TaskAction
+    void validate() {
+        def entries = new JsonSlurper().parse(manifest, 'UTF-8')
+        if (!(entries instanceof List)) {
+            throw new GradleException("${manifest.name} is not a JSON array of samples")
+        }
+
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Runtime.runtime.availableProcessors())
+        List<SampleReport> reports
+        List<Map> duplicates
+        try {
+            reports = entries.collect { entry ->
+                executor.submit({ check(entry as Map) } as Callable<SampleReport>)
+            }*.get()
+            duplicates = findDuplicates(reports, executor)
+        } finally {
+            executor.shutdownNow()
+        }
+
+        index.parentFile.mkdirs()
+        index.setText(JsonOutput.prettyPrint(JsonOutput.toJson([
+                manifest  : manifest.name,
+                samples   : reports*.toMap(),
+                duplicates: duplicates])), 'UTF-8')
+
+        def errors = []
+        reports.findAll { it.status in [STATUS_MISSING, STATUS_UNREADABLE, STATUS_UNREACHABLE] }
+                .each { errors << "Sample ${it.id} is ${it.status}: ${it.uri}" }
+        duplicates.each { duplicate ->
+            String message = "Samples ${duplicate.ids.join(' and ')} are " +
+                    (duplicate.exact ? 'the same audio' : "nearly the same recording " +
+                            "(${duplicate.similarity})")
+            if (duplicate.exact) {
+                errors << message
+            } else {
+                logger.warn(message)
+            }
+        }
+        errors.each { logger.warn(it as String) }
+        if (failOnError && !errors.isEmpty()) {
+            throw new GradleException("${errors.size()} problems in ${manifest.name}, " +
+                    "see ${index}")
+        }
+    }
+
+    /**
+     * Checks that the audio of a sample is there, and fingerprints it if it can be read.
+     */
+    protected SampleReport check(Map entry) {
+        def report = new SampleReport(id: entry.id as Integer, uri: entry.uri as String)
+        URI uri
+        try {
+            uri = new URI(report.uri ?: '')
+        } catch (URISyntaxException ignored) {
+            report.status = STATUS_UNREADABLE
+            return report
+        }
+
+        File file = null
+        if (uri.scheme == 'asset' && uri.path) {
+            file = new File(assetsDir, uri.path.substring(1))
+        } else if (uri.scheme == 'file') {
+            file = new File(uri)
+        } else if (uri.scheme in ['http', 'https']) {
+            report.status = checkRemote ? requestHead(uri) : STATUS_UNCHECKED
+            return report
+        } else {
+            report.status = STATUS_UNREADABLE
+            return report
+        }
+
+        if (!file.isFile()) {
+            report.status = STATUS_MISSING
+            return report
+        }
+        report.bytes = file.length()
+        report.fingerprint = Mp3Fingerprint.read(file)
+        report.status = report.fingerprint != null ? STATUS_OK : STATUS_UNREADABLE
+        return report
+    }
+
+    private static String requestHead(URI uri) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection()
+            connection.requestMethod = 'HEAD'
+            connection.connectTimeout = REMOTE_TIMEOUT_MS
+            connection.readTimeout = REMOTE_TIMEOUT_MS
+            try {
+                return connection.responseCode < 400 ? STATUS_OK : STATUS_UNREACHABLE
+            } finally {
+                connection.disconnect()
+            }
+        } catch (IOException ignored) {
+            return STATUS_UNREACHABLE
+        }
+    }
+
+    /**
+     * Finds the samples that share a URI or the same audio, and the pairs of fingerprinted
+     * samples that are nearly the same recording. Only samples of about the same length are
+     * compared, so each sample is compared to its neighbours in length order.
+     */
+    private static List<Map> findDuplicates(List<SampleReport> reports, ExecutorService executor) {
+        def duplicates = []
+        reports.findAll { it.uri != null }.groupBy { it.uri }.values()
+                .findAll { it.size() > 1 }
+                .each { duplicates << [ids: it*.id, exact: true, similarity: 1f] }
+
+        List<SampleReport> fingerprinted = reports.findAll { it.fingerprint != null }
+                .sort { it.fingerprint.durationMs }
+        def comparisons = (0..<fingerprinted.size()).collect { int i ->
+            executor.submit({
+                def pairs = []
+                SampleReport report = fingerprinted[i]
+                long duration = report.fingerprint.durationMs
+                long maxDifference = Math.max(Mp3Fingerprint.MAX_SHIFT_MS,
+                        (long) (duration * MAX_DURATION_DIFFERENCE))
+                for (int j = i + 1; j < fingerprinted.size()
+                        && fingerprinted[j].fingerprint.durationMs - duration <= maxDifference;
+                        j++) {
+                    SampleReport other = fingerprinted[j]
+                    if (report.uri == other.uri) {
+                        continue
+                    }
+                    if (report.fingerprint.digest == other.fingerprint.digest) {
+                        pairs << [ids: [report.id, other.id], exact: true, similarity: 1f]
+                        continue
+                    }
+                    float similarity = report.fingerprint.similarity(other.fingerprint)
+                    if (similarity >= NEAR_DUPLICATE_SIMILARITY) {
+                        pairs << [ids: [report.id, other.id], exact: false,
+                                  similarity: Math.round(similarity * 1000) / 1000f]
+                    }
+                }
+                return pairs
+            } as Callable<List<Map>>)
+        }
+        comparisons.each { duplicates.addAll(it.get()) }
+        return duplicates
+    }
+
+    /**
+     * What the task found out about one sample.
+     */
+    static class SampleReport {
+        Integer id
+        String uri
+        String status
+        Long bytes
+        Mp3Fingerprint fingerprint
+
+        Map toMap() {
+            def map = [id: id, uri: uri, status: status]
+            if (bytes != null) {
+                map.bytes = bytes
+            }
+            if (fingerprint != null) {
+                map.durationMs = fingerprint.durationMs
+                map.sha1 = fingerprint.digest
+                map.fingerprint = fingerprint.encode()
+            }
+            return map
+        }
+    }
+}